@@ -0,0 +1,48 @@
+package bustabit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the crash multiplier generation.
+ * 
+ * @author FICHEKK
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CrashGenerationBenchmark {
+	
+	/** Input of the rounding benchmark; not a constant, so it can not be folded. */
+	private double value = 2.4681357;
+	
+	/** Input of the fixed-point mapping benchmark. */
+	private double uniform = 0.6180339;
+	
+	@Benchmark
+	public double generateCrashMultiplier() {
+		return GameManager.generateCrashMultiplier();
+	}
+	
+	@Benchmark
+	public double roundToNDecimals() {
+		return GameManager.roundToNDecimals(value, 3);
+	}
+	
+	@Benchmark
+	public long crashMilli() {
+		return GameManager.crashMilli(uniform);
+	}
+}
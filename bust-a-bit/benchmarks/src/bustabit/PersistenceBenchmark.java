@@ -0,0 +1,80 @@
+package bustabit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of saving the rounds and the properties. Every trial works on
+ * a fresh set of save files in a temporary directory, never on the player's.
+ * The measured time is the time the game thread spends handing the data
+ * over; the writes themselves happen on the persistence thread, which
+ * pushes back once its queue is full.
+ * 
+ * @author FICHEKK
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+	
+	/** The durability setting of the data manager. */
+	@Param({"interval:1000", "write"})
+	private String durability;
+	
+	private Path directory;
+	
+	private DataManager dataManager;
+	
+	private Round round = new Round(3000, 1226, 1649);
+	
+	/** The next bet to store, so that every update changes the property. */
+	private long bet;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("bustabit-benchmark");
+		Files.write(directory.resolve("player.dat"), "bankroll=1000\r\nbet=100\r\nautoCashOut=2.0\r\n".getBytes(StandardCharsets.UTF_8));
+		dataManager = new DataManager(directory, durability);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		dataManager.close();
+		
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+	
+	@Benchmark
+	public void saveRound() {
+		dataManager.saveRound(round);
+	}
+	
+	@Benchmark
+	public void updateProperty() {
+		dataManager.updateProperty("bet", String.valueOf(++bet));
+	}
+}
@@ -0,0 +1,99 @@
+package bustabit;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of a whole headless round: placing the bets, ticking the
+ * engine every 10 ms of simulated time until the crash, and settling the
+ * manual and the automatic cash-outs along the way. The clock is simulated,
+ * so the round runs as fast as the engine allows.
+ * 
+ * @author FICHEKK
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoundBenchmark {
+	
+	/** The time between two ticks. */
+	private static final long TICK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	/** The crash of every benchmarked round, x5.000. */
+	private static final long CRASH_MILLI = 5_000;
+	
+	/** The number of players in the round. */
+	@Param({"1", "1000"})
+	private int players;
+	
+	/** The auto cash-outs of the players; every fourth player has none. */
+	private long[] autoCashOuts;
+	
+	private RoundEngine engine;
+	
+	private Blackhole blackhole;
+	
+	@Setup
+	public void setUp(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		
+		SplittableRandom random = new SplittableRandom(42);
+		autoCashOuts = new long[players];
+		for(int i = 0; i < players; i++) {
+			autoCashOuts[i] = i % 4 == 0 ? 0 : 1_001 + random.nextLong(10_000);
+		}
+		
+		engine = new RoundEngine(players, new RoundEngine.Listener() {
+			
+			@Override
+			public void cashedOut(int slot, long bet, long multiplierMilli, long payout) {
+				RoundBenchmark.this.blackhole.consume(payout);
+			}
+			
+			@Override
+			public void crashed(long crashMilli) {
+				RoundBenchmark.this.blackhole.consume(crashMilli);
+			}
+		});
+	}
+	
+	@Benchmark
+	public int round() {
+		engine.reset();
+		for(int i = 0; i < players; i++) {
+			engine.placeBet(1000, autoCashOuts[i]);
+		}
+		
+		long start = System.nanoTime();
+		engine.start(CRASH_MILLI, start);
+		
+		// The players without an auto cash-out cash out manually, right away.
+		for(int slot = 0; slot < players; slot += 4) {
+			engine.requestCashOut(slot);
+		}
+		
+		int ticks = 0;
+		long now = start;
+		while(engine.tick(now)) {
+			now += TICK_INTERVAL;
+			ticks++;
+		}
+		return ticks;
+	}
+}
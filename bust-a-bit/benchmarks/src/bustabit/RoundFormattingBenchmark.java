@@ -0,0 +1,58 @@
+package bustabit;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the textual round formats.
+ * 
+ * @author FICHEKK
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoundFormattingBenchmark {
+	
+	private Round won = new Round(3000, 1226, 1649);
+	
+	private Round lost = new Round(100000, 0, 1573);
+	
+	/** Reusable buffer that the rounds are encoded into. */
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(RoundEncoder.MAX_ASCII_SIZE);
+	
+	@Benchmark
+	public String toStringCompressedWon() {
+		return won.toStringCompressed();
+	}
+	
+	@Benchmark
+	public String toStringCompressedLost() {
+		return lost.toStringCompressed();
+	}
+	
+	@Benchmark
+	public int encodeAscii() {
+		buffer.clear();
+		return RoundEncoder.encodeAscii(won, buffer);
+	}
+	
+	@Benchmark
+	public int encodeBinary() {
+		buffer.clear();
+		RoundEncoder.encodeBinary(won, buffer);
+		return buffer.position();
+	}
+}
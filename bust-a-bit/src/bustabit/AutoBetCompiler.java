@@ -0,0 +1,240 @@
+package bustabit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles {@link AutoBetScript}s to bytecode in memory, with the compiler
+ * of the running JDK, and loads them into their own class loader. The
+ * scripts thus run as fast as the rest of the game; nothing is interpreted.
+ * <p>
+ * A script is either the source of a Java class implementing
+ * {@link AutoBetScript}, or a pair of expressions for the bet and the auto
+ * cash-out target of the next round, for example a martingale:
+ * <pre>
+ * bet:    won || rounds == 0 ? 10 : lastBet * 2
+ * target: 2000
+ * </pre>
+ * The expressions are Java expressions of the type {@code long}; they can
+ * use {@code bankroll}, {@code rounds}, {@code lastBet},
+ * {@code lastCashOut}, {@code lastCrash} (multipliers in thousandths, the
+ * cash-out is 0 for a loss), {@code won} and {@code streak} (positive for
+ * wins, negative for losses).
+ * 
+ * @author FICHEKK
+ */
+public final class AutoBetCompiler {
+	
+	/** The name of the class that the expressions are compiled into. */
+	private static final String EXPRESSION_CLASS = "ExpressionScript";
+	
+	/** The class that the expressions are compiled into, formatted with the bet and the target. */
+	private static final String EXPRESSION_TEMPLATE = String.join("\n",
+		"import bustabit.AutoBetContext;",
+		"import bustabit.AutoBetScript;",
+		"public class ExpressionScript implements AutoBetScript {",
+		"	private long rounds, lastBet, lastCashOut, lastCrash, streak;",
+		"	private boolean won;",
+		"	public void onRoundStart(AutoBetContext context) {",
+		"		long bankroll = context.getBankroll();",
+		"		context.bet((long) (%1$s), (long) (%2$s));",
+		"	}",
+		"	public void onCrash(AutoBetContext context, long crashMilli) {",
+		"		rounds++;",
+		"		lastBet = context.getBet();",
+		"		lastCashOut = context.getCashOutMilli();",
+		"		lastCrash = crashMilli;",
+		"		won = lastCashOut > 0;",
+		"		streak = won ? Math.max(streak, 0) + 1 : Math.min(streak, 0) - 1;",
+		"	}",
+		"}");
+	
+	/** Finds the package declaration of a source. */
+	private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+	
+	/** Utility class, no instances. */
+	private AutoBetCompiler() {
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Compiles the Java source file at the given path; the class is named
+	 * after the file, as usual.
+	 * 
+	 * @param path the path of the source file
+	 * @return a new instance of the script
+	 * @throws IOException if the file could not be read
+	 * @throws IllegalArgumentException if the source does not compile or is not a script
+	 * @throws IllegalStateException if the runtime has no Java compiler
+	 */
+	public static AutoBetScript compileFile(Path path) throws IOException {
+		String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		String simpleName = path.getFileName().toString().replaceFirst("\\.java$", "");
+		
+		Matcher matcher = PACKAGE.matcher(source);
+		String className = matcher.find() ? matcher.group(1) + "." + simpleName : simpleName;
+		return compile(className, source);
+	}
+	
+	/**
+	 * Compiles the expressions of the bet and the auto cash-out target.
+	 * 
+	 * @param bet the expression of the bet
+	 * @param target the expression of the auto cash-out target in thousandths
+	 * @return a new instance of the script
+	 * @throws IllegalArgumentException if the expressions do not compile
+	 * @throws IllegalStateException if the runtime has no Java compiler
+	 */
+	public static AutoBetScript compileExpressions(String bet, String target) {
+		String source = String.format(EXPRESSION_TEMPLATE, bet, target);
+		return compile(EXPRESSION_CLASS, source);
+	}
+	
+	/**
+	 * Compiles the source of the given class, which must implement
+	 * {@link AutoBetScript} and have a public no-argument constructor.
+	 * 
+	 * @param className the fully qualified name of the class
+	 * @param source the source of the class
+	 * @return a new instance of the script
+	 * @throws IllegalArgumentException if the source does not compile or is not a script
+	 * @throws IllegalStateException if the runtime has no Java compiler
+	 */
+	public static AutoBetScript compile(String className, String source) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null) throw new IllegalStateException("Scripts need a JDK; this runtime has no Java compiler.");
+		
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8));
+		
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"));
+		List<JavaFileObject> units = Arrays.asList(new SourceFile(className, source));
+		
+		if(!compiler.getTask(null, fileManager, diagnostics, options, null, units).call()) {
+			StringBuilder sb = new StringBuilder("The script does not compile:");
+			for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				sb.append("\r\n  line ").append(diagnostic.getLineNumber()).append(": ").append(diagnostic.getMessage(null));
+			}
+			throw new IllegalArgumentException(sb.toString());
+		}
+		
+		try {
+			Class<?> type = new MemoryClassLoader(fileManager.classes).loadClass(className);
+			if(!AutoBetScript.class.isAssignableFrom(type)) {
+				throw new IllegalArgumentException(className + " does not implement AutoBetScript.");
+			}
+			return (AutoBetScript) type.getConstructor().newInstance();
+			
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Could not create the script " + className + ": " + e);
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							IN-MEMORY FILES
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * A source file held in memory.
+	 */
+	private static class SourceFile extends SimpleJavaFileObject {
+		
+		private final String source;
+		
+		SourceFile(String className, String source) {
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.source = source;
+		}
+		
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+	
+	/**
+	 * A class file written to memory.
+	 */
+	private static class ClassFile extends SimpleJavaFileObject {
+		
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		ClassFile(String className) {
+			super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+		}
+		
+		@Override
+		public OutputStream openOutputStream() {
+			return bytes;
+		}
+	}
+	
+	/**
+	 * Reads the sources and the libraries from the standard file manager,
+	 * but writes the compiled classes to memory.
+	 */
+	private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+		
+		private final Map<String, ClassFile> classes = new HashMap<>();
+		
+		MemoryFileManager(StandardJavaFileManager fileManager) {
+			super(fileManager);
+		}
+		
+		@Override
+		public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String className,
+												   JavaFileObject.Kind kind, FileObject sibling) {
+			ClassFile file = new ClassFile(className);
+			classes.put(className, file);
+			return file;
+		}
+	}
+	
+	/**
+	 * Defines the compiled classes of a single script; the classes of the
+	 * game come from the parent loader.
+	 */
+	private static class MemoryClassLoader extends ClassLoader {
+		
+		private final Map<String, ClassFile> classes;
+		
+		MemoryClassLoader(Map<String, ClassFile> classes) {
+			super(AutoBetScript.class.getClassLoader());
+			this.classes = classes;
+		}
+		
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			ClassFile file = classes.get(name);
+			if(file == null) throw new ClassNotFoundException(name);
+			
+			byte[] bytes = file.bytes.toByteArray();
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package bustabit;
+
+/**
+ * The game as seen by an {@link AutoBetScript}: the player's state and
+ * the actions the script can take. A context is only used on the tick
+ * thread, by the callbacks of its script.
+ * 
+ * @author FICHEKK
+ */
+public final class AutoBetContext {
+	
+	/** The game that the script plays. */
+	private final Game game;
+	
+	/** The runner of the script. */
+	private final AutoBetRunner runner;
+	
+	/** Whether the script is inside {@link AutoBetScript#onRoundStart(AutoBetContext)}. */
+	private boolean betting;
+	
+	/** The bet placed by the script for the next round, or 0. */
+	private long nextBet;
+	
+	/** The auto cash-out target (in thousandths) of the next round, or 0. */
+	private long nextCashOutMilli;
+	
+	/** Whether the script requested a cash-out in the current round. */
+	private boolean cashOutRequested;
+	
+	/**
+	 * Constructs the context of the script run by the given runner.
+	 * 
+	 * @param game the game that the script plays
+	 * @param runner the runner of the script
+	 */
+	AutoBetContext(Game game, AutoBetRunner runner) {
+		this.game = game;
+		this.runner = runner;
+	}
+	
+	//-----------------------------------------------------------------------
+	//								ACTIONS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Bets on the next round. Only allowed in
+	 * {@link AutoBetScript#onRoundStart(AutoBetContext)}; the last bet wins.
+	 * 
+	 * @param bet the bet, at most the bankroll
+	 * @param autoCashOutMilli the auto cash-out target in thousandths, or 0
+	 * 		  if the script cashes out on its own
+	 * @throws IllegalStateException if called outside of the round start
+	 * @throws IllegalArgumentException if the bet or the target is invalid
+	 */
+	public void bet(long bet, long autoCashOutMilli) {
+		if(!betting) throw new IllegalStateException("Bets are only placed at the round start.");
+		if(bet <= 0 || bet > game.getBankroll()) throw new IllegalArgumentException("Invalid bet " + bet + ".");
+		if(autoCashOutMilli != 0 && autoCashOutMilli <= FixedPoint.SCALE) {
+			throw new IllegalArgumentException("Auto cash-out must be higher than x1.000");
+		}
+		if(autoCashOutMilli > AutoCashOutIndex.MAX_THRESHOLD) throw new IllegalArgumentException("Auto cash-out is too high.");
+		
+		nextBet = bet;
+		nextCashOutMilli = autoCashOutMilli;
+	}
+	
+	/**
+	 * Cashes out at the current multiplier. Does nothing if the player is
+	 * not in a running round or has already cashed out.
+	 */
+	public void cashOut() {
+		if(cashOutRequested || !game.isRoundRunning() || game.getPlayerCashOutMilli() > 0) return;
+		
+		cashOutRequested = true;
+		game.cashOut();
+	}
+	
+	/**
+	 * Stops the script; no more callbacks are made. A running round is
+	 * played out with its auto cash-out.
+	 */
+	public void stop() {
+		runner.stop();
+	}
+	
+	//-----------------------------------------------------------------------
+	//								GETTERS
+	//-----------------------------------------------------------------------
+	
+	/** @return the player's bankroll */
+	public long getBankroll() {
+		return game.getBankroll();
+	}
+	
+	/** @return the multiplier of the current round in thousandths */
+	public long getMultiplierMilli() {
+		return game.getMultiplierMilli();
+	}
+	
+	/** @return the bet of the current (or the last) round */
+	public long getBet() {
+		return game.getBet();
+	}
+	
+	/** @return the player's cash-out multiplier in thousandths, or 0 if the player did not cash out */
+	public long getCashOutMilli() {
+		return game.getPlayerCashOutMilli();
+	}
+	
+	/** @return the number of rounds the script has bet on */
+	public long getRounds() {
+		return runner.getRounds();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							RUNNER INTERFACE
+	//-----------------------------------------------------------------------
+	
+	/** Prepares the context for the round start callback. */
+	void beginBetting() {
+		betting = true;
+		nextBet = 0;
+		nextCashOutMilli = 0;
+		cashOutRequested = false;
+	}
+	
+	/** Ends the round start callback. */
+	void endBetting() {
+		betting = false;
+	}
+	
+	/** @return the bet placed for the next round, or 0 */
+	long getNextBet() {
+		return nextBet;
+	}
+	
+	/** @return the auto cash-out target (in thousandths) of the next round, or 0 */
+	long getNextCashOutMilli() {
+		return nextCashOutMilli;
+	}
+}
@@ -0,0 +1,295 @@
+package bustabit;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an {@link AutoBetScript} on the tick thread of a local game, under
+ * a per-callback time budget. Every callback is timed; the time it takes
+ * over the budget is counted as an overrun and becomes a debt, which the
+ * script pays back by having its next tick callbacks skipped, a budget per
+ * skipped tick. A script therefore never takes more than its budget of any
+ * tick on average, and one that overruns {@link #MAX_OVERRUNS} times is
+ * stopped, as is one that throws.
+ * <p>
+ * The tick thread can not be preempted, so a single callback that never
+ * returns still stalls the game; the budget bounds the scripts that are
+ * merely slow.
+ * 
+ * @author FICHEKK
+ */
+public class AutoBetRunner {
+	
+	/** The default time budget of a callback in microseconds. */
+	public static final long DEFAULT_BUDGET_MICROS = 500;
+	
+	/** The number of overruns after which the script is stopped. */
+	public static final int MAX_OVERRUNS = 100;
+	
+	/** The pause between two rounds of the script. */
+	private static final long PAUSE = TimeUnit.SECONDS.toNanos(2);
+	
+	/** The game that the script plays. */
+	private final GameManager game;
+	
+	/** The script. */
+	private final AutoBetScript script;
+	
+	/** The game as seen by the script. */
+	private final AutoBetContext context;
+	
+	/** The time budget of a callback in nanoseconds. */
+	private final long budgetNanos;
+	
+	/** Whether the script was stopped. */
+	private volatile boolean stopped;
+	
+	/** Whether the script bet on the current round. */
+	private boolean playing;
+	
+	/** The time over the budget that the script has not yet paid back by skipped ticks. */
+	private long debtNanos;
+	
+	/** The number of rounds the script has bet on. */
+	private volatile long rounds;
+	
+	/** The number of callbacks. */
+	private volatile long callbacks;
+	
+	/** The number of callbacks that overran the budget. */
+	private volatile long overruns;
+	
+	/** The total time of the callbacks over the budget, in nanoseconds. */
+	private volatile long overrunNanos;
+	
+	/** The number of tick callbacks that were skipped to pay back the overruns. */
+	private volatile long skippedTicks;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a runner of the given script; the script starts with {@link #start()}.
+	 * 
+	 * @param game the local game that the script plays
+	 * @param script the script
+	 * @param budgetNanos the time budget of a callback in nanoseconds
+	 */
+	public AutoBetRunner(GameManager game, AutoBetScript script, long budgetNanos) {
+		if(budgetNanos <= 0) throw new IllegalArgumentException("Budget must be positive.");
+		
+		this.game = game;
+		this.script = script;
+		this.context = new AutoBetContext(game, this);
+		this.budgetNanos = budgetNanos;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Creates the runner of the script configured by the system properties:
+	 * {@code bustabit.autobet} names a Java source file of a script, while
+	 * {@code bustabit.autobet.bet} and {@code bustabit.autobet.target} are
+	 * the expressions of a script (see {@link AutoBetCompiler}). The budget
+	 * of a callback is {@code bustabit.autobet.budget} microseconds.
+	 * 
+	 * @param game the local game that the script plays
+	 * @return the runner, or {@code null} if there is no script or it could not be compiled
+	 */
+	public static AutoBetRunner configured(GameManager game) {
+		String file = System.getProperty("bustabit.autobet");
+		String bet = System.getProperty("bustabit.autobet.bet");
+		String target = System.getProperty("bustabit.autobet.target", "0");
+		if(file == null && bet == null) return null;
+		
+		long budget = TimeUnit.MICROSECONDS.toNanos(Long.getLong("bustabit.autobet.budget", DEFAULT_BUDGET_MICROS));
+		
+		try {
+			AutoBetScript script = file != null
+								 ? AutoBetCompiler.compileFile(Paths.get(file))
+								 : AutoBetCompiler.compileExpressions(bet, target);
+			return new AutoBetRunner(game, script, budget);
+			
+		} catch (IOException e) {
+			System.err.println("Could not read the auto-bet script '" + file + "'.");
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			System.err.println(e.getMessage());
+		}
+		return null;
+	}
+	
+	/**
+	 * Starts the script: it is attached to the game and asked for the bet
+	 * of the next round on the tick thread.
+	 */
+	public void start() {
+		game.setAutoBet(this);
+		RoundScheduler.scheduleAt(this::startRound, System.nanoTime());
+	}
+	
+	/**
+	 * Stops the script; may be called from any thread. A running round is
+	 * played out with its auto cash-out.
+	 */
+	public void stop() {
+		if(stopped) return;
+		
+		stopped = true;
+		System.out.println(this);
+	}
+	
+	/** @return whether the script still runs */
+	public boolean isRunning() {
+		return !stopped;
+	}
+	
+	/** @return the number of rounds the script has bet on */
+	public long getRounds() {
+		return rounds;
+	}
+	
+	/** @return the number of callbacks that overran the budget */
+	public long getOverruns() {
+		return overruns;
+	}
+	
+	/** @return the total time of the callbacks over the budget, in nanoseconds */
+	public long getOverrunNanos() {
+		return overrunNanos;
+	}
+	
+	/** @return the number of tick callbacks that were skipped to pay back the overruns */
+	public long getSkippedTicks() {
+		return skippedTicks;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("Auto-bet script %s after %,d rounds: %,d of %,d callbacks over the %d us budget by %.3f ms in total, %,d ticks skipped.",
+							 stopped ? "stopped" : "running", rounds, overruns, callbacks,
+							 TimeUnit.NANOSECONDS.toMicros(budgetNanos), overrunNanos / 1e6, skippedTicks);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							GAME INTERFACE
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Called by the game on the tick thread, on every tick of a running round.
+	 * 
+	 * @param multiplierMilli the current multiplier in thousandths
+	 */
+	void tick(long multiplierMilli) {
+		if(stopped || !playing || game.getPlayerCashOutMilli() > 0) return;
+		
+		if(debtNanos > 0) {
+			debtNanos -= budgetNanos;
+			skippedTicks++;
+			return;
+		}
+		
+		long start = System.nanoTime();
+		try {
+			script.onTick(context, multiplierMilli);
+		} catch (RuntimeException e) {
+			fail("tick", e);
+		}
+		account(start);
+	}
+	
+	/**
+	 * Called by the game on the tick thread, when the round crashes.
+	 * 
+	 * @param crashMilli the crash multiplier in thousandths
+	 */
+	void crashed(long crashMilli) {
+		if(!playing) return;
+		playing = false;
+		if(stopped) return;
+		
+		long start = System.nanoTime();
+		try {
+			script.onCrash(context, crashMilli);
+		} catch (RuntimeException e) {
+			fail("crash", e);
+		}
+		account(start);
+		
+		if(!stopped) {
+			RoundScheduler.scheduleAt(this::startRound, System.nanoTime() + PAUSE);
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Asks the script for the bet of the next round, on the tick thread,
+	 * and starts the round if the script placed one.
+	 */
+	private void startRound() {
+		if(stopped) return;
+		
+		// The player started a round by hand; the script waits for it to end.
+		if(game.isRoundRunning()) {
+			RoundScheduler.scheduleAt(this::startRound, System.nanoTime() + PAUSE);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		context.beginBetting();
+		try {
+			script.onRoundStart(context);
+		} catch (RuntimeException e) {
+			fail("round start", e);
+		} finally {
+			context.endBetting();
+		}
+		account(start);
+		if(stopped) return;
+		
+		if(context.getNextBet() == 0) {
+			RoundScheduler.scheduleAt(this::startRound, System.nanoTime() + PAUSE);
+			return;
+		}
+		
+		try {
+			game.startRound(context.getNextBet(), context.getNextCashOutMilli());
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			System.err.println("The auto-bet script could not start the round: " + e);
+			stop();
+			return;
+		}
+		// The round ticks on this very thread, so it can not crash before it is marked as played.
+		playing = true;
+		rounds++;
+	}
+	
+	/**
+	 * Accounts for a callback that started at the given instant.
+	 */
+	private void account(long startNanos) {
+		long over = System.nanoTime() - startNanos - budgetNanos;
+		callbacks++;
+		if(over <= 0) return;
+		
+		overruns++;
+		overrunNanos += over;
+		debtNanos += over;
+		
+		if(overruns >= MAX_OVERRUNS) {
+			System.err.println("The auto-bet script overran its budget " + overruns + " times.");
+			stop();
+		}
+	}
+	
+	private void fail(String callback, RuntimeException e) {
+		System.err.println("The auto-bet script failed in the " + callback + " callback: " + e);
+		stop();
+	}
+}
@@ -0,0 +1,43 @@
+package bustabit;
+
+/**
+ * An auto-bet script, which plays the game on the player's behalf. The
+ * script is a plain Java class (or a pair of expressions, see
+ * {@link AutoBetCompiler}), compiled to bytecode when the game starts.
+ * <p>
+ * All of the callbacks run on the tick thread, under the time budget of
+ * the {@link AutoBetRunner}; a script that keeps overrunning its budget is
+ * stopped. The callbacks must therefore never block.
+ * 
+ * @author FICHEKK
+ */
+public interface AutoBetScript {
+	
+	/**
+	 * Called before every round. The script places its bet with
+	 * {@link AutoBetContext#bet(long, long)}; if it does not, it sits the
+	 * round out and is asked again a moment later.
+	 * 
+	 * @param context the game, as seen by the script
+	 */
+	void onRoundStart(AutoBetContext context);
+	
+	/**
+	 * Called on every tick of a round the script bet on, until the player
+	 * cashes out or the round crashes.
+	 * 
+	 * @param context the game, as seen by the script
+	 * @param multiplierMilli the current multiplier in thousandths
+	 */
+	default void onTick(AutoBetContext context, long multiplierMilli) {
+	}
+	
+	/**
+	 * Called when a round the script bet on crashes.
+	 * 
+	 * @param context the game, as seen by the script
+	 * @param crashMilli the crash multiplier in thousandths
+	 */
+	default void onCrash(AutoBetContext context, long crashMilli) {
+	}
+}
@@ -0,0 +1,160 @@
+package bustabit;
+
+import java.util.Arrays;
+
+/**
+ * Sorted index of the auto cash-out thresholds of a round. The thresholds
+ * (in thousandths, at most {@link #MAX_THRESHOLD}) are packed together with
+ * the players' slots into primitive longs and sorted once, when the round
+ * starts. Since the multiplier only ever grows, a cursor moves forward
+ * through the sorted thresholds, and every tick touches exactly the bets
+ * whose threshold it passed.
+ * <p>
+ * A bet that is cashed out manually is removed by replacing its entry with
+ * a tombstone, which the cursor skips.
+ * 
+ * @author FICHEKK
+ */
+public class AutoCashOutIndex {
+	
+	/**
+	 * Receives the bets whose threshold was reached.
+	 */
+	public interface Settler {
+		
+		/**
+		 * Settles a single bet at its auto cash-out threshold.
+		 * 
+		 * @param slot the player's slot
+		 * @param thresholdMilli the auto cash-out threshold in thousandths
+		 */
+		void settle(int slot, long thresholdMilli);
+	}
+	
+	/** The largest supported threshold, in thousandths. */
+	public static final long MAX_THRESHOLD = Integer.MAX_VALUE;
+	
+	/** Marks an entry that was removed. */
+	private static final long REMOVED = -1;
+	
+	/** Marks a slot that is not in the index. */
+	private static final int ABSENT = -1;
+	
+	/** The sorted entries; the threshold in the upper and the slot in the lower 32 bits. */
+	private final long[] entries;
+	
+	/** The position of every slot's entry, or {@link #ABSENT}. */
+	private final int[] positions;
+	
+	/** The number of entries. */
+	private int size;
+	
+	/** The position of the first entry that has not been passed yet. */
+	private int cursor;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs an empty index.
+	 * 
+	 * @param capacity the maximum number of players in a round
+	 */
+	public AutoCashOutIndex(int capacity) {
+		entries = new long[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, ABSENT);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Rebuilds the index from the given auto cash-out values.
+	 * 
+	 * @param autoCashOuts the auto cash-outs (in thousandths) of the slots,
+	 * 		  where 0 means that the slot has no auto cash-out
+	 * @param count the number of slots
+	 */
+	public void build(long[] autoCashOuts, int count) {
+		Arrays.fill(positions, 0, count, ABSENT);
+		size = 0;
+		cursor = 0;
+		
+		for(int slot = 0; slot < count; slot++) {
+			long threshold = autoCashOuts[slot];
+			if(threshold == 0) continue;
+			
+			entries[size++] = threshold << 32 | slot;
+		}
+		
+		Arrays.sort(entries, 0, size);
+		
+		for(int i = 0; i < size; i++) {
+			positions[slotOf(entries[i])] = i;
+		}
+	}
+	
+	/**
+	 * Settles every bet whose threshold is at or below the given multiplier,
+	 * moving the cursor past them.
+	 * 
+	 * @param multiplierMilli the current multiplier in thousandths
+	 * @param settler receives the settled bets, in the ascending order of thresholds
+	 * @return the number of settled bets
+	 */
+	public int settleUpTo(long multiplierMilli, Settler settler) {
+		int settled = 0;
+		
+		for(; cursor < size; cursor++) {
+			long entry = entries[cursor];
+			if(entry == REMOVED) continue;
+			
+			long threshold = entry >>> 32;
+			if(threshold > multiplierMilli) break;
+			
+			int slot = slotOf(entry);
+			positions[slot] = ABSENT;
+			settler.settle(slot, threshold);
+			settled++;
+		}
+		
+		return settled;
+	}
+	
+	/**
+	 * Removes the given slot's entry, for example after a manual cash-out.
+	 * 
+	 * @param slot the player's slot
+	 */
+	public void remove(int slot) {
+		int position = positions[slot];
+		if(position == ABSENT) return;
+		
+		entries[position] = REMOVED;
+		positions[slot] = ABSENT;
+	}
+	
+	/**
+	 * Returns the smallest threshold that has not been passed yet.
+	 * 
+	 * @return the next threshold in thousandths, or {@link Long#MAX_VALUE}
+	 * 		   if there is none
+	 */
+	public long nextThreshold() {
+		while(cursor < size && entries[cursor] == REMOVED) {
+			cursor++;
+		}
+		return cursor < size ? entries[cursor] >>> 32 : Long.MAX_VALUE;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private static int slotOf(long entry) {
+		return (int) entry;
+	}
+}
@@ -0,0 +1,189 @@
+package bustabit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * The outcome of a {@link Backtester} run: for every strategy, the final
+ * bankroll, the ruin probability and the drawdown over all of the paths.
+ * The outcomes are kept in primitive columns indexed by the strategy.
+ * <p>
+ * Every strategy is recorded by a single task, and the result is only read
+ * after all of the tasks were joined, so the columns need no synchronization.
+ * 
+ * @author FICHEKK
+ */
+public class BacktestResult {
+	
+	/** The backtested strategies. */
+	private final List<BettingStrategy> strategies;
+	
+	/** The number of paths every strategy played. */
+	private final int paths;
+	
+	/** The number of rounds in a path. */
+	private final int roundsPerPath;
+	
+	/** The bankroll at the start of every path. */
+	private final long bankroll;
+	
+	/** The sum of the final bankrolls of every strategy. */
+	private final double[] finalBankrollSums;
+	
+	/** The number of paths every strategy was ruined in. */
+	private final int[] ruins;
+	
+	/** The sum of the largest drawdowns of the paths of every strategy. */
+	private final double[] drawdownSums;
+	
+	/** The largest drawdown of every strategy over all of the paths. */
+	private final long[] worstDrawdowns;
+	
+	/**
+	 * Constructs an empty result.
+	 * 
+	 * @param strategies the backtested strategies
+	 * @param paths the number of paths every strategy plays
+	 * @param roundsPerPath the number of rounds in a path
+	 * @param bankroll the bankroll at the start of every path
+	 */
+	BacktestResult(List<BettingStrategy> strategies, int paths, int roundsPerPath, long bankroll) {
+		this.strategies = strategies;
+		this.paths = paths;
+		this.roundsPerPath = roundsPerPath;
+		this.bankroll = bankroll;
+		this.finalBankrollSums = new double[strategies.size()];
+		this.ruins = new int[strategies.size()];
+		this.drawdownSums = new double[strategies.size()];
+		this.worstDrawdowns = new long[strategies.size()];
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Records the outcome of a single path of a strategy.
+	 * 
+	 * @param index the index of the strategy
+	 * @param finalBankroll the bankroll at the end of the path
+	 * @param maxDrawdown the largest drop of the bankroll from a preceding peak
+	 * @param ruined whether the strategy was ruined in the path
+	 */
+	void record(int index, long finalBankroll, long maxDrawdown, boolean ruined) {
+		finalBankrollSums[index] += finalBankroll;
+		drawdownSums[index] += maxDrawdown;
+		worstDrawdowns[index] = Math.max(worstDrawdowns[index], maxDrawdown);
+		if(ruined) ruins[index]++;
+	}
+	
+	/** @return the number of backtested strategies */
+	public int size() {
+		return strategies.size();
+	}
+	
+	/**
+	 * Returns the strategy at the given index.
+	 * 
+	 * @param index the index of the strategy
+	 * @return the strategy
+	 */
+	public BettingStrategy getStrategy(int index) {
+		return strategies.get(index);
+	}
+	
+	/** @return the number of paths every strategy played */
+	public int getPaths() {
+		return paths;
+	}
+	
+	/** @return the number of rounds in a path */
+	public int getRoundsPerPath() {
+		return roundsPerPath;
+	}
+	
+	/** @return the bankroll at the start of every path */
+	public long getBankroll() {
+		return bankroll;
+	}
+	
+	/**
+	 * Returns the mean bankroll at the end of a path.
+	 * 
+	 * @param index the index of the strategy
+	 * @return the mean final bankroll
+	 */
+	public double getMeanFinalBankroll(int index) {
+		return finalBankrollSums[index] / paths;
+	}
+	
+	/**
+	 * Returns the fraction of the paths in which the strategy was ruined.
+	 * 
+	 * @param index the index of the strategy
+	 * @return the ruin probability
+	 */
+	public double getRuinProbability(int index) {
+		return (double) ruins[index] / paths;
+	}
+	
+	/**
+	 * Returns the mean of the largest drawdowns of the paths.
+	 * 
+	 * @param index the index of the strategy
+	 * @return the mean largest drawdown
+	 */
+	public double getMeanMaxDrawdown(int index) {
+		return drawdownSums[index] / paths;
+	}
+	
+	/**
+	 * Returns the largest drawdown over all of the paths.
+	 * 
+	 * @param index the index of the strategy
+	 * @return the largest drawdown
+	 */
+	public long getWorstDrawdown(int index) {
+		return worstDrawdowns[index];
+	}
+	
+	/**
+	 * Returns the indices of the strategies, the highest mean final bankroll first.
+	 * 
+	 * @return the indices of the strategies, best first
+	 */
+	public int[] ranking() {
+		return IntStream.range(0, size())
+						.boxed()
+						.sorted(Comparator.comparingDouble(this::getMeanFinalBankroll).reversed())
+						.mapToInt(Integer::intValue)
+						.toArray();
+	}
+	
+	/**
+	 * Writes the outcomes of all of the strategies as CSV, best first.
+	 * 
+	 * @param path the path of the CSV file
+	 * @throws IOException if the file could not be written
+	 */
+	public void writeCsv(Path path) throws IOException {
+		try(BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("kind,bet,target,factor,limit,meanFinalBankroll,ruinProbability,meanMaxDrawdown,worstDrawdown\r\n");
+			for(int i : ranking()) {
+				BettingStrategy s = strategies.get(i);
+				writer.write(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%d,%.2f,%.6f,%.2f,%d\r\n",
+										   s.getKind(), s.getBaseBet(), s.getBaseTargetMilli() / 1000.0,
+										   s.getFactorMilli() / 1000.0, s.getLimit(),
+										   getMeanFinalBankroll(i), getRuinProbability(i),
+										   getMeanMaxDrawdown(i), getWorstDrawdown(i)));
+			}
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package bustabit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Headless backtester of betting strategies. A grid of strategies is
+ * replayed against a crash sequence, either the recorded history or one
+ * simulated with the crash algorithm of the game, without the GUI.
+ * <p>
+ * The crash column is loaded once into a primitive array, which is shared
+ * by all of the strategies. The sequence is cut into paths of equal length,
+ * each of them played from the same starting bankroll, so that every
+ * strategy gets a ruin probability and a distribution of outcomes instead
+ * of a single one. The strategies are split across all of the cores with
+ * the fork/join framework; a task plays all of its strategies over one path
+ * before moving on to the next, so the path stays in the cache.
+ * 
+ * @author FICHEKK
+ */
+public class Backtester {
+	
+	/** The number of strategies a single task backtests without splitting. */
+	private static final int LEAF_STRATEGIES = 16;
+	
+	/** The pool that runs the backtest. */
+	private final ForkJoinPool pool;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a backtester that uses all of the available cores.
+	 */
+	public Backtester() {
+		this(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Constructs a backtester that runs in the given pool.
+	 * 
+	 * @param pool the pool that runs the backtest
+	 */
+	public Backtester(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Backtests the given strategies against the given crash sequence. The
+	 * sequence is cut into the given number of paths; rounds that do not
+	 * fill a whole path are not played.
+	 * 
+	 * @param crashes the crash multipliers in thousandths
+	 * @param paths the number of paths
+	 * @param bankroll the bankroll at the start of every path
+	 * @param strategies the strategies to be backtested
+	 * @return the outcomes of the strategies
+	 */
+	public BacktestResult run(long[] crashes, int paths, long bankroll, List<BettingStrategy> strategies) {
+		if(paths <= 0) throw new IllegalArgumentException("Number of paths must be positive.");
+		if(crashes.length < paths) throw new IllegalArgumentException("Every path needs at least one round.");
+		if(bankroll <= 0) throw new IllegalArgumentException("Bankroll must be positive.");
+		
+		BacktestResult result = new BacktestResult(new ArrayList<>(strategies), paths, crashes.length / paths, bankroll);
+		pool.invoke(new BacktestTask(crashes, result, 0, strategies.size()));
+		return result;
+	}
+	
+	/**
+	 * Loads the crash column of the history at the given path.
+	 * 
+	 * @param path the path of a round store directory, of a round journal or
+	 * 		  of a legacy text history
+	 * @return the crash multipliers in thousandths, in the order they were played
+	 * @throws IOException if the history could not be read
+	 */
+	public static long[] loadCrashes(Path path) throws IOException {
+		long[][] column = {new long[1024]};
+		long rounds = HistoryAnalyzer.analyze(path, (index, bet, cashOutMilli, crashMilli) -> {
+			if(index == column[0].length) {
+				column[0] = Arrays.copyOf(column[0], (int) Math.min(2 * index, Integer.MAX_VALUE - 8));
+			}
+			column[0][(int) index] = crashMilli;
+		});
+		return Arrays.copyOf(column[0], (int) rounds);
+	}
+	
+	/**
+	 * Simulates a crash sequence with the crash algorithm of the game.
+	 * 
+	 * @param rounds the number of rounds
+	 * @param seed the seed that the sequence is reproducible from
+	 * @return the crash multipliers in thousandths
+	 */
+	public static long[] simulateCrashes(int rounds, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		long[] crashes = new long[rounds];
+		for(int i = 0; i < rounds; i++) {
+			crashes[i] = GameManager.crashMilli(random.nextDouble());
+		}
+		return crashes;
+	}
+	
+	/**
+	 * Creates the default grid of strategies: every kind of strategy with
+	 * a range of bets, targets, factors and limits.
+	 * 
+	 * @return the strategies of the grid
+	 */
+	public static List<BettingStrategy> defaultGrid() {
+		long[] bets = {1, 10, 100};
+		long[] targets = {1_050, 1_100, 1_200, 1_300, 1_500, 1_750, 2_000, 2_500, 3_000, 4_000,
+						  5_000, 7_500, 10_000, 15_000, 20_000, 50_000, 100_000};
+		long[] betFactors = {1_500, 2_000, 2_500, 3_000};
+		long[] targetFactors = {1_250, 1_500, 2_000};
+		int[] limits = {2, 3, 5, 8};
+		
+		List<BettingStrategy> grid = new ArrayList<>();
+		for(long bet : bets) {
+			for(long target : targets) {
+				grid.add(BettingStrategy.fixed(bet, target));
+				
+				for(long factor : betFactors) {
+					grid.add(BettingStrategy.martingale(bet, target, factor));
+					for(int streak : limits) {
+						grid.add(BettingStrategy.antiMartingale(bet, target, factor, streak));
+					}
+				}
+				
+				for(long factor : targetFactors) {
+					for(int rungs : limits) {
+						grid.add(BettingStrategy.ladder(bet, target, factor, rungs));
+					}
+				}
+			}
+		}
+		return grid;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   ENTRY POINT
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Backtests the default grid of strategies from the command line and
+	 * prints the best of them.
+	 * 
+	 * @param args the crash sequence, which is either the path of a history
+	 * 		  or {@code simulate[:rounds[:seed]]} ({@code rounds} by default);
+	 * 		  the number of paths (100), the starting bankroll (10000) and
+	 * 		  optionally the path of a CSV report of all of the strategies
+	 * @throws IOException if the history could not be read or the report written
+	 */
+	public static void main(String[] args) throws IOException {
+		String source = args.length > 0 ? args[0] : "rounds";
+		int paths = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		long bankroll = args.length > 2 ? Long.parseLong(args[2].replace("_", "")) : 10_000;
+		
+		long[] crashes;
+		if(source.startsWith("simulate")) {
+			String[] parts = source.split(":");
+			int rounds = parts.length > 1 ? Integer.parseInt(parts[1].replace("_", "")) : 1_000_000;
+			long seed = parts.length > 2 ? Long.parseLong(parts[2]) : System.nanoTime();
+			crashes = simulateCrashes(rounds, seed);
+			System.out.println(String.format("Simulated %,d rounds, seed %d", rounds, seed));
+		} else {
+			crashes = loadCrashes(Paths.get(source));
+			System.out.println(String.format("Loaded %,d rounds from '%s'", crashes.length, source));
+		}
+		
+		List<BettingStrategy> grid = defaultGrid();
+		long start = System.nanoTime();
+		BacktestResult result = new Backtester().run(crashes, paths, bankroll, grid);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println(String.format("Backtested %,d strategies over %,d paths of %,d rounds in %.2f s",
+										 grid.size(), paths, result.getRoundsPerPath(), seconds));
+		
+		System.out.println();
+		System.out.println("MEAN FINAL BANKROLL | RUIN      | MEAN DRAWDOWN | WORST DRAWDOWN | STRATEGY");
+		int[] ranking = result.ranking();
+		for(int i = 0; i < Math.min(20, ranking.length); i++) {
+			int index = ranking[i];
+			System.out.println(String.format("%19.2f | %8.4f%% | %13.2f | %14d | %s",
+											 result.getMeanFinalBankroll(index),
+											 result.getRuinProbability(index) * 100,
+											 result.getMeanMaxDrawdown(index),
+											 result.getWorstDrawdown(index),
+											 result.getStrategy(index)));
+		}
+		
+		if(args.length > 3) {
+			result.writeCsv(Paths.get(args[3]));
+			System.out.println();
+			System.out.println("Report of all of the strategies written to '" + args[3] + "'.");
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							BACKTEST TASK
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Backtests a range of strategies, splitting it in half until it is
+	 * small enough to be backtested directly.
+	 */
+	@SuppressWarnings("serial")
+	private static class BacktestTask extends RecursiveAction {
+		
+		private final long[] crashes;
+		private final BacktestResult result;
+		private final int from;
+		private final int to;
+		
+		BacktestTask(long[] crashes, BacktestResult result, int from, int to) {
+			this.crashes = crashes;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= LEAF_STRATEGIES) {
+				int length = result.getRoundsPerPath();
+				for(int path = 0; path < result.getPaths(); path++) {
+					int start = path * length;
+					for(int i = from; i < to; i++) {
+						result.getStrategy(i).play(crashes, start, start + length, result.getBankroll(), result, i);
+					}
+				}
+				return;
+			}
+			
+			int half = (from + to) >>> 1;
+			invokeAll(new BacktestTask(crashes, result, from, half), new BacktestTask(crashes, result, half, to));
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package bustabit;
+
+/**
+ * An automatic betting strategy, as played by the {@link Backtester}. Every
+ * strategy starts at its base bet and auto cash-out target, and adapts the
+ * next bet or target after every round:
+ * <ul>
+ * <li>{@link Kind#FIXED}: always bets the same at the same target.</li>
+ * <li>{@link Kind#MARTINGALE}: multiplies the bet by the factor after a loss,
+ * and returns to the base bet after a win.</li>
+ * <li>{@link Kind#ANTI_MARTINGALE}: multiplies the bet by the factor after a
+ * win, and returns to the base bet after a loss or after the given number of
+ * wins in a row.</li>
+ * <li>{@link Kind#LADDER}: multiplies the target by the factor after a loss,
+ * climbing at most the given number of rungs, and returns to the base target
+ * after a win or after a loss on the top rung.</li>
+ * </ul>
+ * A bet never exceeds the bankroll; the player is ruined once the bankroll
+ * falls below the base bet.
+ * 
+ * @author FICHEKK
+ */
+public final class BettingStrategy {
+	
+	/**
+	 * The kinds of the strategies.
+	 */
+	public enum Kind {
+		FIXED, MARTINGALE, ANTI_MARTINGALE, LADDER
+	}
+	
+	/** The kind of this strategy. */
+	private final Kind kind;
+	
+	/** The first bet, to which the strategy returns. */
+	private final long baseBet;
+	
+	/** The first auto cash-out target in thousandths, to which the strategy returns. */
+	private final long baseTargetMilli;
+	
+	/** The factor (in thousandths) that the bet or the target is multiplied by. */
+	private final long factorMilli;
+	
+	/** The number of wins in a row or of rungs after which the strategy returns to the start. */
+	private final int limit;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	private BettingStrategy(Kind kind, long baseBet, long baseTargetMilli, long factorMilli, int limit) {
+		if(baseBet <= 0) throw new IllegalArgumentException("Bet must be positive.");
+		if(baseTargetMilli <= FixedPoint.SCALE) throw new IllegalArgumentException("Auto cash-out must be higher than x1.000");
+		if(factorMilli <= 0) throw new IllegalArgumentException("Factor must be positive.");
+		if(limit <= 0) throw new IllegalArgumentException("Limit must be positive.");
+		
+		this.kind = kind;
+		this.baseBet = baseBet;
+		this.baseTargetMilli = baseTargetMilli;
+		this.factorMilli = factorMilli;
+		this.limit = limit;
+	}
+	
+	/**
+	 * Creates a strategy that always bets the same at the same target.
+	 * 
+	 * @param bet the bet
+	 * @param targetMilli the auto cash-out target in thousandths
+	 * @return the strategy
+	 */
+	public static BettingStrategy fixed(long bet, long targetMilli) {
+		return new BettingStrategy(Kind.FIXED, bet, targetMilli, FixedPoint.SCALE, 1);
+	}
+	
+	/**
+	 * Creates a strategy that multiplies the bet after every loss.
+	 * 
+	 * @param bet the base bet
+	 * @param targetMilli the auto cash-out target in thousandths
+	 * @param factorMilli the factor of the bet after a loss, in thousandths
+	 * @return the strategy
+	 */
+	public static BettingStrategy martingale(long bet, long targetMilli, long factorMilli) {
+		return new BettingStrategy(Kind.MARTINGALE, bet, targetMilli, factorMilli, 1);
+	}
+	
+	/**
+	 * Creates a strategy that multiplies the bet after every win.
+	 * 
+	 * @param bet the base bet
+	 * @param targetMilli the auto cash-out target in thousandths
+	 * @param factorMilli the factor of the bet after a win, in thousandths
+	 * @param streak the number of wins in a row after which the bet returns to the base bet
+	 * @return the strategy
+	 */
+	public static BettingStrategy antiMartingale(long bet, long targetMilli, long factorMilli, int streak) {
+		return new BettingStrategy(Kind.ANTI_MARTINGALE, bet, targetMilli, factorMilli, streak);
+	}
+	
+	/**
+	 * Creates a strategy that raises the target after every loss.
+	 * 
+	 * @param bet the bet
+	 * @param targetMilli the base auto cash-out target in thousandths
+	 * @param factorMilli the factor of the target after a loss, in thousandths
+	 * @param rungs the number of times the target can be raised
+	 * @return the strategy
+	 */
+	public static BettingStrategy ladder(long bet, long targetMilli, long factorMilli, int rungs) {
+		return new BettingStrategy(Kind.LADDER, bet, targetMilli, factorMilli, rungs);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Plays the given range of crashes and records the outcome in the given
+	 * result. The loop only touches primitives, so that a grid of strategies
+	 * can replay millions of rounds each.
+	 * 
+	 * @param crashes the crash multipliers in thousandths
+	 * @param from the index of the first played round
+	 * @param to the index after the last played round
+	 * @param bankroll the starting bankroll
+	 * @param result receives the outcome
+	 * @param index the index of this strategy in the result
+	 */
+	void play(long[] crashes, int from, int to, long bankroll, BacktestResult result, int index) {
+		Kind kind = this.kind;
+		long bet = baseBet;
+		long target = baseTargetMilli;
+		int step = 0;
+		
+		long peak = bankroll;
+		long maxDrawdown = 0;
+		
+		for(int i = from; i < to && bankroll >= baseBet; i++) {
+			long stake = Math.min(bet, bankroll);
+			boolean won = crashes[i] >= target;
+			
+			if(won) {
+				bankroll = FixedPoint.addSaturated(bankroll, FixedPoint.multiplySaturated(stake, target) - stake);
+				peak = Math.max(peak, bankroll);
+			} else {
+				bankroll -= stake;
+				maxDrawdown = Math.max(maxDrawdown, peak - bankroll);
+			}
+			
+			switch(kind) {
+				case FIXED:
+					break;
+				
+				case MARTINGALE:
+					bet = won ? baseBet : FixedPoint.multiplySaturated(bet, factorMilli);
+					break;
+				
+				case ANTI_MARTINGALE:
+					if(won && ++step < limit) {
+						bet = FixedPoint.multiplySaturated(bet, factorMilli);
+					} else {
+						step = 0;
+						bet = baseBet;
+					}
+					break;
+				
+				case LADDER:
+					if(!won && step < limit) {
+						step++;
+						target = FixedPoint.multiplySaturated(target, factorMilli);
+					} else {
+						step = 0;
+						target = baseTargetMilli;
+					}
+					break;
+			}
+		}
+		
+		result.record(index, bankroll, maxDrawdown, bankroll < baseBet);
+	}
+	
+	/** @return the kind of this strategy */
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/** @return the first bet, to which the strategy returns */
+	public long getBaseBet() {
+		return baseBet;
+	}
+	
+	/** @return the first auto cash-out target in thousandths */
+	public long getBaseTargetMilli() {
+		return baseTargetMilli;
+	}
+	
+	/** @return the factor (in thousandths) that the bet or the target is multiplied by */
+	public long getFactorMilli() {
+		return factorMilli;
+	}
+	
+	/** @return the number of wins in a row or of rungs after which the strategy returns to the start */
+	public int getLimit() {
+		return limit;
+	}
+	
+	@Override
+	public String toString() {
+		String base = kind.name().toLowerCase() + " " + baseBet + " @ x" + String.format("%.3f", baseTargetMilli / 1000.0);
+		switch(kind) {
+			case MARTINGALE:	  return base + String.format(" *%.3f", factorMilli / 1000.0);
+			case ANTI_MARTINGALE: return base + String.format(" *%.3f up to %d wins", factorMilli / 1000.0, limit);
+			case LADDER:		  return base + String.format(" *%.3f up to %d rungs", factorMilli / 1000.0, limit);
+			default:			  return base;
+		}
+	}
+}
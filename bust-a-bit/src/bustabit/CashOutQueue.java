@@ -0,0 +1,132 @@
+package bustabit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer queue of cash-out
+ * requests. Any thread may submit a request; only the tick thread polls
+ * them. Every request holds the player's slot and the
+ * {@link System#nanoTime()} instant at which it was made, stored in
+ * preallocated primitive arrays, so submitting allocates nothing.
+ * <p>
+ * Producers claim a cell by advancing the shared tail with a CAS, and
+ * publish it through the cell's sequence number; the consumer releases a
+ * cell by moving its sequence one lap ahead.
+ * 
+ * @author FICHEKK
+ */
+public class CashOutQueue {
+	
+	/** The number of cells minus one; the capacity is a power of two. */
+	private final int mask;
+	
+	/** Per-cell sequence numbers that hand the cells over between the threads. */
+	private final AtomicLongArray sequences;
+	
+	/** The player slots of the requests. */
+	private final int[] slots;
+	
+	/** The instants at which the requests were made. */
+	private final long[] times;
+	
+	/** The position that the next producer claims. */
+	private final AtomicLong tail = new AtomicLong();
+	
+	/** The position that the consumer reads next; only touched by the consumer. */
+	private long head;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new queue that can hold at least the given number of requests.
+	 * 
+	 * @param capacity the minimum capacity of the queue
+	 */
+	public CashOutQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		
+		mask = size - 1;
+		sequences = new AtomicLongArray(size);
+		slots = new int[size];
+		times = new long[size];
+		
+		for(int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   PRODUCERS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Submits a cash-out request. Safe to call from any thread.
+	 * 
+	 * @param slot the slot of the player that cashes out
+	 * @param timeNanos the {@link System#nanoTime()} instant of the request
+	 * @return {@code true} if the request was queued, {@code false} if the queue is full
+	 */
+	public boolean offer(int slot, long timeNanos) {
+		while(true) {
+			long position = tail.get();
+			int index = (int) position & mask;
+			long sequence = sequences.get(index);
+			
+			if(sequence == position) {
+				if(tail.compareAndSet(position, position + 1)) {
+					slots[index] = slot;
+					times[index] = timeNanos;
+					sequences.lazySet(index, position + 1);
+					return true;
+				}
+			} else if(sequence < position) {
+				return false;
+			}
+			// Otherwise another producer claimed the cell first; try again.
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   CONSUMER
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Polls all of the published requests. Must only be called by the consumer thread.
+	 * 
+	 * @param handler receives the requests, in the order they were claimed
+	 * @return the number of polled requests
+	 */
+	public int drain(RequestHandler handler) {
+		int count = 0;
+		
+		while(true) {
+			int index = (int) head & mask;
+			if(sequences.get(index) != head + 1) return count;
+			
+			int slot = slots[index];
+			long time = times[index];
+			sequences.lazySet(index, head + mask + 1);
+			head++;
+			count++;
+			
+			handler.handle(slot, time);
+		}
+	}
+	
+	/**
+	 * Receives the polled cash-out requests.
+	 */
+	public interface RequestHandler {
+		
+		/**
+		 * Handles a single cash-out request.
+		 * 
+		 * @param slot the slot of the player that cashes out
+		 * @param timeNanos the {@link System#nanoTime()} instant of the request
+		 */
+		void handle(int slot, long timeNanos);
+	}
+}
@@ -0,0 +1,420 @@
+package bustabit;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.text.DecimalFormatSymbols;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JPanel;
+
+/**
+ * Live chart of the multiplier curve, with a strip of the latest crash
+ * values underneath it.
+ * <p>
+ * The chart is drawn in two cached off-screen layers. The background layer
+ * holds the axes and the crash history; it is only redrawn when the scale of
+ * the axes changes, when a round crashes or when the panel is resized. The
+ * curve layer is transparent and only ever gets the newest segment of the
+ * curve drawn onto it, so a frame costs the same no matter how long the
+ * round has been running. Painting the panel is then a matter of blitting
+ * the two layers, clipped to the region that changed.
+ * <p>
+ * Since the curve depends only on the elapsed time (see
+ * {@link MultiplierCurve}), a rescale redraws the whole curve from its
+ * table, at one point per pixel column, instead of keeping the points.
+ * <p>
+ * All of the methods must be called on the event dispatch thread.
+ * 
+ * @author FICHEKK
+ */
+@SuppressWarnings("serial")
+public class CrashChartPanel extends JPanel {
+	
+	/** The time shown by the x-axis at the start of a round. */
+	private static final long INITIAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+	
+	/** The multiplier shown at the top of the y-axis at the start of a round. */
+	private static final double INITIAL_MULTIPLIER = 2.0;
+	
+	/** The number of grid lines on each of the axes. */
+	private static final int GRID_LINES = 4;
+	
+	/** Space left of the plot, for the multiplier labels. */
+	private static final int LEFT_MARGIN = 50;
+	
+	/** Space above and right of the plot. */
+	private static final int MARGIN = 10;
+	
+	/** Space below the plot, for the time labels. */
+	private static final int AXIS_HEIGHT = 20;
+	
+	/** Height of the crash history strip. */
+	private static final int HISTORY_HEIGHT = 26;
+	
+	/** Multipliers at or above this value are shown as wins in the history. */
+	private static final long WIN_THRESHOLD = 2000;
+	
+	private static final Color BACKGROUND_COLOR = new Color(20, 144, 245);
+	private static final Color GRID_COLOR = new Color(255, 255, 255, 60);
+	private static final Color AXIS_COLOR = Color.WHITE;
+	private static final Color RUNNING_COLOR = Color.ORANGE;
+	private static final Color CRASHED_COLOR = Color.RED;
+	private static final Color WIN_COLOR = new Color(40, 180, 70);
+	private static final Color LOSS_COLOR = new Color(200, 50, 50);
+	
+	/** The stroke of the curve. */
+	private static final BasicStroke CURVE_STROKE = new BasicStroke(3f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+	
+	/** The latest crash values in thousandths, as a ring buffer. */
+	private final long[] history;
+	
+	/** The number of crash values in the history. */
+	private int historySize;
+	
+	/** The position of the oldest crash value in the history. */
+	private int historyStart;
+	
+	/** The separators used in the labels. */
+	private final char groupingSeparator;
+	private final char decimalSeparator;
+	
+	/** Reusable buffer that the labels are built in. */
+	private final StringBuilder label = new StringBuilder(16);
+	
+	/** Cached layer with the axes and the crash history. */
+	private BufferedImage background;
+	
+	/** Cached transparent layer with the curve drawn so far. */
+	private BufferedImage curve;
+	
+	/** Graphics that draws onto {@link #curve}; kept between the frames. */
+	private Graphics2D curveGraphics;
+	
+	/** The time at the end of the x-axis. */
+	private long maxNanos = INITIAL_NANOS;
+	
+	/** The multiplier at the top of the y-axis. */
+	private double maxMultiplier = INITIAL_MULTIPLIER;
+	
+	/** The latest multiplier drawn, in thousandths. */
+	private long multiplierMilli = 1000;
+	
+	/** Flag that indicates if the round has crashed. */
+	private boolean crashed;
+	
+	/** The pixel coordinates of the end of the curve. */
+	private int lastX;
+	private int lastY;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new chart.
+	 * 
+	 * @param historyLength the number of latest crash values shown
+	 * @param symbols the symbols used to format the multipliers
+	 */
+	public CrashChartPanel(int historyLength, DecimalFormatSymbols symbols) {
+		this.history = new long[historyLength];
+		this.groupingSeparator = symbols.getGroupingSeparator();
+		this.decimalSeparator = symbols.getDecimalSeparator();
+		setOpaque(true);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Clears the curve and resets the scale for a new round.
+	 */
+	public void startRound() {
+		boolean rescaled = maxNanos != INITIAL_NANOS || maxMultiplier != INITIAL_MULTIPLIER;
+		
+		maxNanos = INITIAL_NANOS;
+		maxMultiplier = INITIAL_MULTIPLIER;
+		multiplierMilli = 1000;
+		crashed = false;
+		
+		if(!ensureLayers()) return;
+		if(rescaled) drawBackground();
+		redrawCurve();
+		repaint();
+	}
+	
+	/**
+	 * Extends the curve up to the given multiplier. Only the new segment is
+	 * drawn, unless the curve left the visible range, in which case the
+	 * scale is doubled and the chart is redrawn once.
+	 * 
+	 * @param multiplierMilli the current multiplier in thousandths
+	 */
+	public void update(long multiplierMilli) {
+		if(crashed || multiplierMilli <= this.multiplierMilli) return;
+		this.multiplierMilli = multiplierMilli;
+		
+		if(!ensureLayers()) return;
+		
+		if(rescale(multiplierMilli)) {
+			drawBackground();
+			redrawCurve();
+			repaint();
+			return;
+		}
+		
+		int x = toX(MultiplierCurve.nanosToReach(multiplierMilli));
+		int y = toY(multiplierMilli);
+		curveGraphics.drawLine(lastX, lastY, x, y);
+		
+		int pad = (int) Math.ceil(CURVE_STROKE.getLineWidth());
+		repaint(Math.min(lastX, x) - pad, Math.min(lastY, y) - pad,
+				Math.abs(x - lastX) + 2 * pad + 1, Math.abs(y - lastY) + 2 * pad + 1);
+		
+		lastX = x;
+		lastY = y;
+	}
+	
+	/**
+	 * Finishes the curve at the crash multiplier and adds it to the history.
+	 * 
+	 * @param crashMilli the crash multiplier in thousandths
+	 */
+	public void crash(long crashMilli) {
+		update(crashMilli);
+		crashed = true;
+		addToHistory(crashMilli);
+		
+		// The history already redrew the background; recolor the curve.
+		if(!ensureLayers()) return;
+		redrawCurve();
+		repaint();
+	}
+	
+	/**
+	 * Adds a crash value to the history without touching the curve; used to
+	 * show the rounds that were played before.
+	 * 
+	 * @param crashMilli the crash multiplier in thousandths
+	 */
+	public void addToHistory(long crashMilli) {
+		if(history.length == 0) return;
+		
+		if(historySize < history.length) {
+			history[(historyStart + historySize++) % history.length] = crashMilli;
+		} else {
+			history[historyStart] = crashMilli;
+			historyStart = (historyStart + 1) % history.length;
+		}
+		
+		if(background != null) {
+			drawBackground();
+			repaint();
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   PAINTING
+	//-----------------------------------------------------------------------
+	
+	@Override
+	protected void paintComponent(Graphics g) {
+		if(!ensureLayers()) return;
+		
+		g.drawImage(background, 0, 0, null);
+		g.drawImage(curve, 0, 0, null);
+	}
+	
+	/**
+	 * Makes sure that the layers exist and match the size of the panel.
+	 * 
+	 * @return {@code false} if the panel has no area to draw on yet
+	 */
+	private boolean ensureLayers() {
+		int width = getWidth();
+		int height = getHeight();
+		if(width <= 0 || height <= 0) return false;
+		
+		if(background != null && background.getWidth() == width && background.getHeight() == height) {
+			return true;
+		}
+		
+		if(curveGraphics != null) curveGraphics.dispose();
+		
+		background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		curve = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		curveGraphics = curve.createGraphics();
+		curveGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		curveGraphics.setStroke(CURVE_STROKE);
+		
+		rescale(multiplierMilli);
+		drawBackground();
+		redrawCurve();
+		return true;
+	}
+	
+	/**
+	 * Doubles the ranges of the axes until the given multiplier fits.
+	 * 
+	 * @return {@code true} if the scale changed
+	 */
+	private boolean rescale(long multiplierMilli) {
+		double multiplier = multiplierMilli / 1000.0;
+		long nanos = MultiplierCurve.nanosToReach(multiplierMilli);
+		boolean changed = false;
+		
+		while(nanos > maxNanos) {
+			maxNanos *= 2;
+			changed = true;
+		}
+		while(multiplier > maxMultiplier) {
+			maxMultiplier = 1 + (maxMultiplier - 1) * 2;
+			changed = true;
+		}
+		return changed;
+	}
+	
+	/**
+	 * Redraws the background layer: the plot area, the grid with its labels
+	 * and the crash history.
+	 */
+	private void drawBackground() {
+		int width = background.getWidth();
+		int height = background.getHeight();
+		Graphics2D g = background.createGraphics();
+		
+		try {
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setColor(BACKGROUND_COLOR);
+			g.fillRect(0, 0, width, height);
+			
+			Font font = getFont().deriveFont(11f);
+			g.setFont(font);
+			FontMetrics metrics = g.getFontMetrics();
+			
+			int left = LEFT_MARGIN;
+			int right = width - MARGIN;
+			int top = MARGIN;
+			int bottom = plotBottom();
+			
+			for(int i = 0; i <= GRID_LINES; i++) {
+				// Horizontal grid line with its multiplier.
+				long milli = 1000 + Math.round((maxMultiplier - 1) * 1000 * i / GRID_LINES);
+				int y = toY(milli);
+				g.setColor(i == 0 ? AXIS_COLOR : GRID_COLOR);
+				g.drawLine(left, y, right, y);
+				
+				label.setLength(0);
+				label.append('x');
+				appendMultiplier(milli);
+				g.setColor(AXIS_COLOR);
+				g.drawString(label.toString(), left - 6 - metrics.stringWidth(label.toString()), y + metrics.getAscent() / 2);
+				
+				// Vertical grid line with its time.
+				long nanos = maxNanos * i / GRID_LINES;
+				int x = toX(nanos);
+				g.setColor(i == 0 ? AXIS_COLOR : GRID_COLOR);
+				g.drawLine(x, top, x, bottom);
+				
+				label.setLength(0);
+				label.append(TimeUnit.NANOSECONDS.toSeconds(nanos)).append('s');
+				g.setColor(AXIS_COLOR);
+				g.drawString(label.toString(), x - metrics.stringWidth(label.toString()) / 2, bottom + metrics.getAscent() + 4);
+			}
+			
+			drawHistory(g, metrics, width, height);
+			
+		} finally {
+			g.dispose();
+		}
+	}
+	
+	/**
+	 * Draws the crash history strip, the newest crash being on the right.
+	 */
+	private void drawHistory(Graphics2D g, FontMetrics metrics, int width, int height) {
+		if(history.length == 0) return;
+		
+		int top = height - HISTORY_HEIGHT;
+		int cellWidth = (width - 2 * MARGIN) / history.length;
+		
+		for(int i = 0; i < historySize; i++) {
+			long crashMilli = history[(historyStart + i) % history.length];
+			int x = width - MARGIN - (historySize - i) * cellWidth;
+			
+			g.setColor(crashMilli >= WIN_THRESHOLD ? WIN_COLOR : LOSS_COLOR);
+			g.fillRect(x + 1, top + 2, cellWidth - 2, HISTORY_HEIGHT - 4);
+			
+			label.setLength(0);
+			appendMultiplier(crashMilli);
+			g.setColor(Color.WHITE);
+			g.drawString(label.toString(), x + (cellWidth - metrics.stringWidth(label.toString())) / 2,
+						 top + (HISTORY_HEIGHT + metrics.getAscent()) / 2 - 2);
+		}
+	}
+	
+	/**
+	 * Clears the curve layer and draws the curve from the start of the round
+	 * up to the current multiplier, one point per pixel column.
+	 */
+	private void redrawCurve() {
+		curveGraphics.setComposite(AlphaComposite.Clear);
+		curveGraphics.fillRect(0, 0, curve.getWidth(), curve.getHeight());
+		curveGraphics.setComposite(AlphaComposite.SrcOver);
+		curveGraphics.setColor(crashed ? CRASHED_COLOR : RUNNING_COLOR);
+		
+		long endNanos = MultiplierCurve.nanosToReach(multiplierMilli);
+		int endX = toX(endNanos);
+		
+		lastX = LEFT_MARGIN;
+		lastY = toY(1000);
+		
+		for(int x = LEFT_MARGIN + 1; x < endX; x++) {
+			long nanos = maxNanos * (x - LEFT_MARGIN) / plotWidth();
+			int y = toY(MultiplierCurve.milliAt(nanos));
+			curveGraphics.drawLine(lastX, lastY, x, y);
+			lastX = x;
+			lastY = y;
+		}
+		
+		int y = toY(multiplierMilli);
+		curveGraphics.drawLine(lastX, lastY, endX, y);
+		lastX = endX;
+		lastY = y;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private void appendMultiplier(long milli) {
+		// Two decimals are plenty for the labels.
+		FastFormat.appendMilli(label, milli, groupingSeparator, decimalSeparator);
+		label.setLength(label.length() - 1);
+	}
+	
+	private int plotWidth() {
+		return Math.max(1, getWidth() - LEFT_MARGIN - MARGIN);
+	}
+	
+	private int plotBottom() {
+		return getHeight() - HISTORY_HEIGHT - AXIS_HEIGHT;
+	}
+	
+	private int toX(long nanos) {
+		return LEFT_MARGIN + (int) (plotWidth() * (double) nanos / maxNanos);
+	}
+	
+	private int toY(long milli) {
+		int plotHeight = Math.max(1, plotBottom() - MARGIN);
+		return plotBottom() - (int) (plotHeight * (milli / 1000.0 - 1) / (maxMultiplier - 1));
+	}
+}
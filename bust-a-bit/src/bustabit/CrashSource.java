@@ -0,0 +1,57 @@
+package bustabit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * Supplies the crash multipliers of the rounds, in the order the rounds
+ * are played.
+ * 
+ * @author FICHEKK
+ */
+public interface CrashSource {
+	
+	/**
+	 * Returns the crash multiplier of the next round.
+	 * 
+	 * @return the crash multiplier in thousandths
+	 * @throws IllegalStateException if the source has no more rounds
+	 */
+	long nextCrashMilli();
+	
+	/**
+	 * Creates the source of the crash multipliers of the game. If the
+	 * {@code bustabit.chain} system property names a hash chain file, the
+	 * rounds are provably fair; otherwise the multipliers are drawn at
+	 * random. If the hash chain fails (for example, it is exhausted), the
+	 * multiplier of that round is drawn at random instead.
+	 * 
+	 * @return the crash source that never fails
+	 */
+	static CrashSource configured() {
+		CrashSource random = () -> GameManager.crashMilli(Math.random());
+		
+		String chain = System.getProperty("bustabit.chain");
+		if(chain == null) return random;
+		
+		HashChain hashChain;
+		try {
+			hashChain = new HashChain(Paths.get(chain));
+			System.out.println("Playing the hash chain '" + chain + "', " + hashChain.remaining() + " rounds remaining.");
+			
+		} catch (IOException e) {
+			System.err.println("Could not open the hash chain '" + chain + "'. Crashes will be random.");
+			return random;
+		}
+		
+		return () -> {
+			try {
+				return hashChain.nextCrashMilli();
+			} catch (IllegalStateException | UncheckedIOException e) {
+				System.err.println(e.getMessage() + " The crash is random.");
+				return random.nextCrashMilli();
+			}
+		};
+	}
+}
@@ -1,14 +1,11 @@
 package bustabit;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * A layer between the application and the persistent memory.
@@ -18,63 +15,131 @@ import java.util.Map;
  */
 public class DataManager {
 	
-	/** The singleton instance. */
-	private static final DataManager dm = new DataManager();
-	
-	/** Holds all of the properties. */
-	private final Map<String, String> propertyMap = new HashMap<>();
+	/**
+	 * Holds the singleton instance, which is only created on first use, so
+	 * that merely loading this class never opens the player's save files.
+	 */
+	private static class Holder {
+		
+		/** The singleton instance. */
+		private static final DataManager dm = new DataManager(Paths.get(""), System.getProperty("bustabit.durability", "interval:1000"));
+	}
 	
 	/** Path to the player data file. */
-	private final Path playerDataPath = Paths.get("player.dat");
+	private final Path playerDataPath;
 	
-	/** Path to the rounds data file. */
-	private final Path roundsDataPath = Paths.get("rounds.dat");
+	/** Holds all of the properties; the in-memory copy is authoritative. */
+	private final PropertyStore propertyStore;
 	
-	/** Private constructor, we don't want any more instances. */
-	private DataManager() {
-		initializeProperties(playerDataPath);
-	}
+	/** Path to the legacy (text) rounds data file. */
+	private final Path roundsDataPath;
+	
+	/** Path to the binary round journal, which the segmented store replaced. */
+	private final Path roundsJournalPath;
+	
+	/** Path to the directory of the segmented round store. */
+	private final Path roundsStorePath;
+	
+	/** Path to the checkpoint of the statistics of the round history. */
+	private final Path statisticsPath;
+	
+	/** The store that the rounds are appended to. */
+	private SegmentedRoundStore roundStore;
+	
+	/** The aggregates over all of the rounds in the store. */
+	private final RoundStatistics statistics;
+	
+	/** The background pipeline that performs all of the writes. */
+	private final PersistenceQueue persistenceQueue;
 	
 	/**
-	 * Initializes the player data.
+	 * Constructs a data manager whose save files are in the given directory.
+	 * The game only ever uses the singleton; other instances exist for the
+	 * benchmarks, which must not touch the player's save files.
 	 * 
-	 * @param source the source of the property data
+	 * @param directory the directory of the save files
+	 * @param durability the durability setting, see {@link #createPersistenceQueue(String)}
+	 */
+	DataManager(Path directory, String durability) {
+		playerDataPath = directory.resolve("player.dat");
+		roundsDataPath = directory.resolve("rounds.dat");
+		roundsJournalPath = directory.resolve("rounds.bin");
+		roundsStorePath = directory.resolve("rounds");
+		statisticsPath = directory.resolve("rounds.stats");
+		
+		propertyStore = new PropertyStore(playerDataPath, PropertyStore.DEFAULT_COMPACTION_THRESHOLD);
+		initializeRoundStore();
+		statistics = roundStore != null ? HistoryTail.loadStatistics(roundStore, statisticsPath) : new RoundStatistics();
+		
+		persistenceQueue = createPersistenceQueue(durability);
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "persistence-shutdown"));
+	}
+	
+	/**
+	 * Opens the round store. If the store does not exist yet, but an older
+	 * history does, the history is migrated to the store first: the legacy
+	 * text history to the journal, and the journal to the store.
 	 */
-	private void initializeProperties(Path source) {
+	private void initializeRoundStore() {
 		try {
-			for(String line : Files.readAllLines(source)) {
-				if(line.isBlank()) {
-					System.err.println("Line '" + line + "' is blank.");
-					continue;
+			if(!Files.exists(roundsStorePath)) {
+				if(!Files.exists(roundsJournalPath) && Files.exists(roundsDataPath)) {
+					long migrated = RoundJournal.migrate(roundsDataPath, roundsJournalPath);
+					System.out.println("Migrated " + migrated + " rounds from '" + roundsDataPath + "' to '" + roundsJournalPath + "'.");
 				}
 				
-				if(!line.contains("=")) {
-					System.err.println("Expected separator '=' in line '" + line + "'.");
-					continue;
-				}
-				
-				String[] parts = line.split("=");
-				
-				if(parts.length != 2) {
-					System.err.println("Multiple separators '=' in line '" + line + "'.");
-					continue;
+				if(Files.exists(roundsJournalPath)) {
+					long migrated = SegmentedRoundStore.migrate(roundsJournalPath, roundsStorePath);
+					System.out.println("Migrated " + migrated + " rounds from '" + roundsJournalPath + "' to '" + roundsStorePath
+									 + "'. The journal is no longer used and can be deleted.");
 				}
-				
-				System.out.println("Loading property: " + parts[0] + " = " + parts[1]);
-				propertyMap.put(parts[0], parts[1]);
 			}
+			
+			roundStore = new SegmentedRoundStore(roundsStorePath);
+			
 		} catch (IOException e) {
-			System.err.println("Could not load the property data.");
+			System.err.println("Could not open the round store. Rounds will not be saved.");
 		}
 	}
 
+	/**
+	 * Creates the persistence queue with the given durability setting, which
+	 * is one of {@code write}, {@code interval:<milliseconds>} or {@code shutdown}.
+	 * 
+	 * @param durability the durability setting
+	 * @return the persistence queue
+	 */
+	private PersistenceQueue createPersistenceQueue(String durability) {
+		PersistenceQueue.Durability mode = PersistenceQueue.Durability.INTERVAL;
+		long syncIntervalMillis = 1000;
+		
+		if(durability.equals("write")) {
+			mode = PersistenceQueue.Durability.EVERY_WRITE;
+			
+		} else if(durability.equals("shutdown")) {
+			mode = PersistenceQueue.Durability.ON_SHUTDOWN;
+			
+		} else if(durability.startsWith("interval:")) {
+			try {
+				syncIntervalMillis = Long.parseLong(durability.substring("interval:".length()));
+			} catch (NumberFormatException e) {
+				System.err.println("Invalid sync interval in '" + durability + "', using " + syncIntervalMillis + " ms.");
+			}
+			
+		} else {
+			System.err.println("Unknown durability '" + durability + "', using '" + mode + "'.");
+		}
+		
+		return new PersistenceQueue(new Writer(), mode, syncIntervalMillis, PersistenceQueue.DEFAULT_CAPACITY);
+	}
+	
 	/**
 	 * Returns the {@code PlayerDataManager} singleton instance.
 	 * 
 	 * @return the {@code DataManager} singleton instance
 	 */
 	public static final DataManager getInstance() {
-		return dm;
+		return Holder.dm;
 	}
 	
 	/**
@@ -83,18 +148,18 @@ public class DataManager {
 	 * @return the specified property, or {@code null} if it does not exist
 	 */
 	public String getProperty(String property) {
-		return propertyMap.get(property);
+		return propertyStore.get(property);
 	}
 	
 	/**
-	 * Updates the value of the property and saves it to the
-	 * persistent memory.
+	 * Updates the value of the property. The change is visible immediately
+	 * and is saved to the persistent memory in the background.
 	 * 
 	 * @param property the property to be updated
 	 * @param newValue the new value of the property
 	 */
 	public void updateProperty(String property, String newValue) {
-		String currentValue = propertyMap.get(property);
+		String currentValue = propertyStore.get(property);
 		
 		if(currentValue == null) {
 			System.err.println("Could not save property '" + property + "' as it does not exist.");
@@ -106,22 +171,10 @@ public class DataManager {
 			return;
 		}
 		
-		try {
-			List<String> lines = Files.readAllLines(playerDataPath, StandardCharsets.UTF_8);
-			
-			for(int i = 0, len = lines.size(); i < len; i++) {
-				if(lines.get(i).trim().startsWith(property)) {
-					lines.set(i, property + "=" + newValue);
-					break;
-				}
-			}
-			
-			Files.write(playerDataPath, lines, StandardCharsets.UTF_8);
-			
-		} catch (IOException e) {
-			System.err.println("Property '" + property + "' was not saved. The save might be deleted or corrupted.");
-			return;
-		}
+		long start = System.nanoTime();
+		propertyStore.set(property, newValue);
+		persistenceQueue.submitPropertiesChanged();
+		Metrics.recordPersistenceSubmit(start);
 	}
 	
 	/**
@@ -130,15 +183,99 @@ public class DataManager {
 	 * @param round the round to be saved
 	 */
 	public void saveRound(Round round) {
+		if(roundStore == null) {
+			System.err.println("Could not save the round. The round store is not available.");
+			return;
+		}
+		
+		long start = System.nanoTime();
+		persistenceQueue.submitRound(round);
+		statistics.record(round.getBet(), round.getCashOutMilli(), round.getCrashMilli());
+		Metrics.recordPersistenceSubmit(start);
+	}
+	
+	/**
+	 * Returns the latest saved rounds, read from the end of the round
+	 * store; the rounds that are still being written are not included.
+	 * 
+	 * @param count the maximum number of rounds
+	 * @return the latest rounds, oldest first
+	 */
+	public List<Round> getLastRounds(int count) {
+		if(roundStore == null) return new ArrayList<>();
+		
 		try {
-			if(!Files.exists(roundsDataPath)) {
-				Files.write(roundsDataPath, "BET | CASH-OUT | CRASH | PROFIT\r\n".getBytes(), StandardOpenOption.CREATE);
-			}
-		    Files.write(roundsDataPath, round.toStringCompressed().getBytes(), StandardOpenOption.APPEND);
-		    
+			return HistoryTail.lastRounds(roundStore, count);
+		} catch (IOException e) {
+			System.err.println("Could not read the latest rounds.");
+			return new ArrayList<>();
+		}
+	}
+	
+	/** @return the aggregates over all of the saved rounds, kept up to date round by round */
+	public RoundStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Writes out all of the pending data, forces it to the storage device
+	 * and closes the save files. Called automatically when the application exits.
+	 */
+	public void close() {
+		persistenceQueue.close();
+		
+		try {
+			propertyStore.close();
 		} catch (IOException e) {
-		    System.err.println("Could not save the round. The save file might be deleted or corrupted.");
-		    return;
+			System.err.println("Could not save the properties. The save might be deleted or corrupted.");
+		}
+		
+		if(roundStore != null) {
+			HistoryTail.saveStatistics(roundStore, statisticsPath, statistics);
+			
+			try {
+				roundStore.close();
+			} catch (IOException e) {
+				System.err.println("Could not close the round store.");
+			}
+		}
+	}
+	
+	/** @return the store of the saved rounds, or {@code null} if it could not be opened */
+	public SegmentedRoundStore getRoundStore() {
+		return roundStore;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							BACKGROUND WRITER
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Performs the batched writes on behalf of the persistence queue.
+	 */
+	private class Writer implements PersistenceQueue.Sink {
+		
+		@Override
+		public void write(List<Round> rounds, boolean propertiesChanged) throws IOException {
+			long start = System.nanoTime();
+			if(!rounds.isEmpty()) {
+				roundStore.append(rounds);
+			}
+			
+			if(propertiesChanged) {
+				propertyStore.flush();
+			}
+			Metrics.recordPersistenceWrite(start);
+		}
+		
+		@Override
+		public void sync() throws IOException {
+			long start = System.nanoTime();
+			if(roundStore != null) {
+				roundStore.sync();
+			}
+			propertyStore.sync();
+			Metrics.recordPersistenceSync(start);
 		}
 	}
-}
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A shard: a single thread with a non-blocking selector loop that drives
+ * any number of {@link GameRoom}s. It selects on the channels of all of
+ * its rooms at once, hands their events over to them and, between two
+ * selects, advances the round of every room whose deadline has come.
+ * <p>
+ * The rooms of a loop are only ever touched by its thread, so they need no
+ * locks, and two loops share nothing. The other threads talk to a loop by
+ * handing it commands through a lock-free queue, which the loop runs at the
+ * start of its next iteration; that is how the rooms are attached,
+ * detached (to be moved to another loop) and closed.
+ * 
+ * @author FICHEKK
+ */
+public class EventLoop implements Closeable {
+	
+	/**
+	 * Handles the events of a channel registered with the selector of a
+	 * loop; the attachment of every key is its handler.
+	 */
+	interface Handler {
+		
+		/**
+		 * Handles a ready key.
+		 * 
+		 * @param key the key of the channel
+		 */
+		void handle(SelectionKey key);
+	}
+	
+	/** Waits for the network events. */
+	private final Selector selector;
+	
+	/** The rooms driven by the loop. */
+	private final List<GameRoom> rooms = new ArrayList<>();
+	
+	/** The commands handed over by the other threads. */
+	private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+	
+	/** The metrics of the loop. */
+	private final ShardMetrics metrics;
+	
+	/** Flag that indicates if the loop was asked to stop. */
+	private volatile boolean closed;
+	
+	/** Flag that indicates if the loop is running, in which case the loop releases the resources. */
+	private volatile boolean running;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new loop with no rooms.
+	 * 
+	 * @param name the name of the loop, which its metrics are published under
+	 * @throws IOException if the selector could not be opened
+	 */
+	public EventLoop(String name) throws IOException {
+		this.selector = Selector.open();
+		this.metrics = new ShardMetrics(name);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Runs the loop on the calling thread until it is closed.
+	 * 
+	 * @throws IOException if the selector fails
+	 */
+	public void run() throws IOException {
+		running = true;
+		try {
+			while(!closed) {
+				runCommands();
+				
+				long timeout = nextDeadline() - System.nanoTime();
+				if(rooms.isEmpty()) {
+					selector.select();
+				} else if(timeout > 0) {
+					// Zero would mean "forever", so sub-millisecond waits are rounded up.
+					selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout)));
+				} else {
+					selector.selectNow();
+				}
+				long start = System.nanoTime();
+				
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					((Handler) key.attachment()).handle(key);
+				}
+				
+				long now = System.nanoTime();
+				for(int i = 0, n = rooms.size(); i < n; i++) {
+					GameRoom room = rooms.get(i);
+					room.advance(now);
+					room.flushDirty();
+				}
+				metrics.recordIteration(System.nanoTime() - start);
+			}
+			
+		} finally {
+			running = false;
+			release();
+		}
+	}
+	
+	/**
+	 * Attaches a room to the loop. The room is attached by the thread of the
+	 * loop; if the loop is closed before that, the room is closed.
+	 * 
+	 * @param room the room, which must not be attached to any loop
+	 * @return the future that completes once the room is attached
+	 */
+	public CompletableFuture<Void> attach(GameRoom room) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		execute(() -> {
+			try {
+				boolean migration = room.isStarted();
+				room.attach(this, selector, metrics);
+				rooms.add(room);
+				metrics.addRoom(1, migration);
+				future.complete(null);
+				
+			} catch (IOException | RuntimeException e) {
+				closeQuietly(room);
+				future.completeExceptionally(e);
+			}
+		}, future);
+		return future;
+	}
+	
+	/**
+	 * Detaches a room from the loop, to be attached to another one. Its round
+	 * is not ticked in between, but its multiplier keeps following the clock.
+	 * 
+	 * @param room the room attached to this loop
+	 * @return the future that completes once the room is detached
+	 */
+	public CompletableFuture<Void> detach(GameRoom room) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		execute(() -> {
+			if(!rooms.remove(room)) {
+				future.completeExceptionally(new IllegalStateException(room.getName() + " is not attached to this loop."));
+				return;
+			}
+			
+			room.detach();
+			metrics.addRoom(-1, true);
+			try {
+				// Deregisters the cancelled keys, so the room can come back to this loop right away.
+				selector.selectNow();
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Could not deregister " + room.getName() + ": " + e.getMessage());
+			}
+			future.complete(null);
+		}, future);
+		return future;
+	}
+	
+	/**
+	 * Detaches a room from the loop and closes it.
+	 * 
+	 * @param room the room attached to this loop
+	 * @return the future that completes once the room is closed
+	 */
+	public CompletableFuture<Void> close(GameRoom room) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		execute(() -> {
+			if(rooms.remove(room)) {
+				room.detach();
+				metrics.addRoom(-1, false);
+			}
+			closeQuietly(room);
+			future.complete(null);
+		}, future);
+		return future;
+	}
+	
+	/**
+	 * Stops the loop and closes all of its rooms. May be called from any
+	 * thread; a running loop is woken up and closes them itself, so they are
+	 * never closed under its hands.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		selector.wakeup();
+		if(!running) release();
+	}
+	
+	/** @return the metrics of the loop */
+	public ShardMetrics getMetrics() {
+		return metrics;
+	}
+	
+	@Override
+	public String toString() {
+		return metrics.getName();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Hands a command over to the thread of the loop and wakes it up.
+	 * 
+	 * @param command the command
+	 * @param future the future of the command, failed if the loop is closed
+	 */
+	private void execute(Runnable command, CompletableFuture<?> future) {
+		if(closed) {
+			future.completeExceptionally(new RejectedExecutionException(this + " is closed."));
+			return;
+		}
+		
+		commands.add(command);
+		selector.wakeup();
+		if(closed && !running) {
+			// Closed in the meantime, maybe after the commands were run for the last time.
+			try {
+				release();
+			} catch (IOException ignorable) {
+			}
+		}
+	}
+	
+	/**
+	 * Runs all of the commands handed over so far.
+	 */
+	private void runCommands() {
+		Runnable command;
+		while((command = commands.poll()) != null) {
+			command.run();
+		}
+	}
+	
+	/** @return the earliest instant at which a room has to be advanced */
+	private long nextDeadline() {
+		long deadline = Long.MAX_VALUE;
+		for(int i = 0, n = rooms.size(); i < n; i++) {
+			deadline = Math.min(deadline, rooms.get(i).nextDeadline());
+		}
+		return deadline;
+	}
+	
+	/**
+	 * Closes the selector and all of the rooms; closing twice does no harm.
+	 * The commands still waiting are run on the closed selector, so they fail
+	 * and close the rooms they were given.
+	 */
+	private synchronized void release() throws IOException {
+		selector.close();
+		for(GameRoom room : rooms) {
+			closeQuietly(room);
+		}
+		rooms.clear();
+		runCommands();
+	}
+	
+	private static void closeQuietly(GameRoom room) {
+		try {
+			room.close();
+		} catch (IOException e) {
+			System.err.println("Could not close " + room.getName() + ": " + e.getMessage());
+		}
+	}
+}
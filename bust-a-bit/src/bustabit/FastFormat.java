@@ -0,0 +1,97 @@
+package bustabit;
+
+/**
+ * Allocation-free number formatting into reusable {@link StringBuilder}s.
+ * Produces the same text as the GUI's {@code ###,###} and {@code ###,###.000}
+ * decimal formats, for the given grouping and decimal separators.
+ * 
+ * @author FICHEKK
+ */
+public final class FastFormat {
+	
+	/** Utility class, no instances. */
+	private FastFormat() {
+	}
+	
+	/**
+	 * Appends the given value with the digits grouped by three.
+	 * 
+	 * @param target the builder to append to
+	 * @param value the value to be appended
+	 * @param groupingSeparator the separator of the digit groups
+	 * @return the given builder
+	 */
+	public static StringBuilder appendGrouped(StringBuilder target, long value, char groupingSeparator) {
+		if(value < 0) {
+			target.append('-');
+			if(value == Long.MIN_VALUE) {
+				// The magnitude does not fit into a long; print the first digit separately.
+				appendGrouped(target, -(value / 10), groupingSeparator);
+				return target.append(-(value % 10));
+			}
+			value = -value;
+		}
+		
+		int start = target.length();
+		int digits = 0;
+		
+		do {
+			if(digits > 0 && digits % 3 == 0) {
+				target.append(groupingSeparator);
+			}
+			target.append((char) ('0' + value % 10));
+			value /= 10;
+			digits++;
+		} while(value != 0);
+		
+		reverse(target, start, target.length() - 1);
+		return target;
+	}
+	
+	/**
+	 * Appends the given fixed-point value (in thousandths) with the whole
+	 * part grouped by three and exactly three decimal places.
+	 * 
+	 * @param target the builder to append to
+	 * @param milli the value in thousandths, not negative
+	 * @param groupingSeparator the separator of the digit groups
+	 * @param decimalSeparator the decimal separator
+	 * @return the given builder
+	 */
+	public static StringBuilder appendMilli(StringBuilder target, long milli, char groupingSeparator, char decimalSeparator) {
+		appendGrouped(target, milli / 1000, groupingSeparator);
+		target.append(decimalSeparator);
+		appendFraction(target, milli);
+		return target;
+	}
+	
+	/**
+	 * Appends the given fixed-point value (in thousandths) with exactly
+	 * three decimal places and no digit grouping.
+	 * 
+	 * @param target the builder to append to
+	 * @param milli the value in thousandths, not negative
+	 * @param decimalSeparator the decimal separator
+	 * @return the given builder
+	 */
+	public static StringBuilder appendMilli(StringBuilder target, long milli, char decimalSeparator) {
+		target.append(milli / 1000).append(decimalSeparator);
+		appendFraction(target, milli);
+		return target;
+	}
+	
+	private static void appendFraction(StringBuilder target, long milli) {
+		int fraction = (int) (milli % 1000);
+		target.append((char) ('0' + fraction / 100));
+		target.append((char) ('0' + fraction / 10 % 10));
+		target.append((char) ('0' + fraction % 10));
+	}
+	
+	private static void reverse(StringBuilder target, int from, int to) {
+		for(; from < to; from++, to--) {
+			char c = target.charAt(from);
+			target.setCharAt(from, target.charAt(to));
+			target.setCharAt(to, c);
+		}
+	}
+}
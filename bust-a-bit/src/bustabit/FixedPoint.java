@@ -0,0 +1,93 @@
+package bustabit;
+
+/**
+ * Exact integer arithmetic on money and fixed-point multipliers. Amounts
+ * are whole units held in longs, multipliers are held in thousandths
+ * ({@code x1.226} is {@code 1226}). Every operation rounds down, so a
+ * player is never paid a fraction of a unit that the multiplier did not
+ * earn, and every overflow is detected instead of silently wrapping.
+ * 
+ * @author FICHEKK
+ */
+public final class FixedPoint {
+	
+	/** The scale of the fixed-point multipliers. */
+	public static final long SCALE = 1000;
+	
+	/** Utility class, no instances. */
+	private FixedPoint() {
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Multiplies the amount by the multiplier, rounding down. The product is
+	 * split as {@code amount * whole + amount * fraction / 1000}, and the
+	 * second part as well, so no intermediate value is larger than the result
+	 * and the result is exact whenever it fits into a long.
+	 * 
+	 * @param amount the amount, not negative
+	 * @param multiplierMilli the multiplier in thousandths, not negative
+	 * @return {@code floor(amount * multiplierMilli / 1000)}
+	 * @throws ArithmeticException if the result does not fit into a long
+	 */
+	public static long multiply(long amount, long multiplierMilli) {
+		long whole = multiplierMilli / SCALE;
+		long fraction = multiplierMilli % SCALE;
+		
+		// amount * fraction / 1000 == (amount / 1000) * fraction + (amount % 1000) * fraction / 1000
+		long fractional = (amount / SCALE) * fraction + (amount % SCALE) * fraction / SCALE;
+		return Math.addExact(Math.multiplyExact(amount, whole), fractional);
+	}
+	
+	/**
+	 * Multiplies the amount by the multiplier like {@link #multiply(long, long)},
+	 * but returns {@link Long#MAX_VALUE} if the result does not fit into a long.
+	 * 
+	 * @param amount the amount, not negative
+	 * @param multiplierMilli the multiplier in thousandths, not negative
+	 * @return {@code floor(amount * multiplierMilli / 1000)}, saturated
+	 */
+	public static long multiplySaturated(long amount, long multiplierMilli) {
+		try {
+			return multiply(amount, multiplierMilli);
+		} catch (ArithmeticException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+	
+	/**
+	 * Adds the two amounts, returning {@link Long#MAX_VALUE} or
+	 * {@link Long#MIN_VALUE} if the sum does not fit into a long.
+	 * 
+	 * @param a the first amount
+	 * @param b the second amount
+	 * @return the saturated sum
+	 */
+	public static long addSaturated(long a, long b) {
+		long sum = a + b;
+		
+		// The sum overflowed if both operands have a sign that the sum does not have.
+		if(((a ^ sum) & (b ^ sum)) < 0) {
+			return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+		return sum;
+	}
+	
+	/**
+	 * Returns the profit of a bet that was cashed out at the given multiplier.
+	 * The payout saturates like it does when the bet is settled, so the
+	 * profit of any settled round can be computed.
+	 * 
+	 * @param bet the player's bet
+	 * @param cashOutMilli the cash-out multiplier in thousandths, or 0 if the
+	 * 		  player did not cash out
+	 * @return the profit, which is {@code -bet} if the player did not cash out
+	 */
+	public static long profit(long bet, long cashOutMilli) {
+		if(cashOutMilli <= 0) return -bet;
+		return multiplySaturated(bet, cashOutMilli) - bet;
+	}
+}
@@ -0,0 +1,81 @@
+package bustabit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.Timer;
+
+/**
+ * Frame-capped, coalescing renderer. Any thread may request a frame as
+ * often as it likes; the requests only raise a flag. A Swing timer running
+ * at the configured frame rate checks the flag on the event dispatch thread
+ * and renders the latest state at most once per frame, so the event queue
+ * never fills up with stale updates and the number of events per second
+ * does not depend on how fast the game ticks.
+ * 
+ * @author FICHEKK
+ */
+public class FrameRenderer {
+	
+	/** Renders a single frame; always called on the event dispatch thread. */
+	private final Runnable frame;
+	
+	/** The timer that drives the frames. */
+	private final Timer timer;
+	
+	/** Flag that indicates if a frame was requested since the last render. */
+	private final AtomicBoolean requested = new AtomicBoolean();
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new renderer.
+	 * 
+	 * @param framesPerSecond the maximum number of frames per second
+	 * @param frame renders a single frame, called on the event dispatch thread
+	 */
+	public FrameRenderer(int framesPerSecond, Runnable frame) {
+		if(framesPerSecond <= 0) throw new IllegalArgumentException("Frame rate must be positive.");
+		
+		this.frame = frame;
+		this.timer = new Timer(Math.max(1, 1000 / framesPerSecond), e -> renderIfRequested());
+		this.timer.setCoalesce(true);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Requests a frame; the latest state is rendered on the next frame.
+	 * Safe to call from any thread, does not allocate.
+	 */
+	public void request() {
+		requested.lazySet(true);
+	}
+	
+	/** Starts producing frames. */
+	public void start() {
+		timer.start();
+	}
+	
+	/**
+	 * Stops producing frames, rendering the last requested frame first.
+	 * Must be called on the event dispatch thread.
+	 */
+	public void stop() {
+		timer.stop();
+		renderIfRequested();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private void renderIfRequested() {
+		if(requested.getAndSet(false)) {
+			frame.run();
+		}
+	}
+}
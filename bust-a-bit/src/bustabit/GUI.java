@@ -6,6 +6,7 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
@@ -27,11 +28,17 @@ import javax.swing.SwingUtilities;
  * @author FICHEKK
  */
 @SuppressWarnings("serial")
-public class GUI extends JFrame {
+public class GUI extends JFrame implements GameListener {
 	
 	/** Displays the player's current bank-roll. */
 	private JLabel bankrollLabel;
 	
+	/** Displays the statistics of all of the player's rounds. */
+	private JLabel statisticsLabel;
+	
+	/** The auto-bet script that plays the game, or {@code null}. */
+	private AutoBetRunner autoBet;
+	
 	/** Displays the game's current multiplier. */
 	private JLabel multiplierLabel;
 	
@@ -47,8 +54,23 @@ public class GUI extends JFrame {
 	/** Round control button. */
 	private JButton roundControlButton;
 	
-	/** Reference to the game manager that performs the game logic. */
-	private GameManager gameManager;
+	/** Reference to the game that performs the game logic, local or on a server. */
+	private Game game;
+	
+	/** Draws the multiplier curve and the latest crashes. */
+	private CrashChartPanel chart;
+	
+	/** Renders the multiplier and the cash-out value at a capped frame rate. */
+	private FrameRenderer renderer;
+	
+	/** The multiplier (in thousandths) that is currently displayed. */
+	private long displayedMultiplier = -1;
+	
+	/** The cash-out value that is currently displayed. */
+	private long displayedCashOutValue = -1;
+	
+	/** Reusable buffer that the per-frame texts are built in. */
+	private final StringBuilder frameText = new StringBuilder(32);
 	
 	/** A custom font used by the GUI. */
 	private static final String FONT_NAME = "BebasNeue-Bold.ttf";
@@ -83,20 +105,43 @@ public class GUI extends JFrame {
 		formatterDouble = new DecimalFormat("###,###.000", symbols);
 	}
 	
+	/** The maximum number of multiplier updates per second. */
+	private static final int FRAMES_PER_SECOND = Integer.getInteger("bustabit.fps", 60);
+	
+	/** The number of latest crashes shown under the chart. */
+	private static final int CHART_HISTORY = 10;
+	
 	//-----------------------------------------------------------------------
 	//							  CONSTRUCTOR
 	//-----------------------------------------------------------------------
 	
-	/** Constructs a new GUI for the game. */
+	/**
+	 * Constructs a new GUI for the game. If the {@code bustabit.server}
+	 * system property holds the address of a {@link GameServer}, the game is
+	 * played on that server; otherwise it is played locally. A local game
+	 * can be played by an auto-bet script, see {@link AutoBetRunner#configured(GameManager)}.
+	 */
 	public GUI() {
-		gameManager = new GameManager(this);
+		game = createGame(System.getProperty("bustabit.server"));
+		renderer = new FrameRenderer(FRAMES_PER_SECOND, this::renderFrame);
 		
 		setDefaultCloseOperation(EXIT_ON_CLOSE);
-		setSize(600, 400);
+		setSize(600, 650);
 		setTitle("Bust-a-bit");
 		setResizable(false);
 
 		initGUI();
+		
+		if(game instanceof GameManager) {
+			autoBet = AutoBetRunner.configured((GameManager) game);
+		} else if(System.getProperty("bustabit.autobet") != null || System.getProperty("bustabit.autobet.bet") != null) {
+			System.err.println("Auto-bet scripts only play local games.");
+		}
+		
+		if(autoBet != null) {
+			roundControlButton.setText("Stop auto-bet");
+			autoBet.start();
+		}
 	}
 	
 	//-----------------------------------------------------------------------
@@ -109,24 +154,38 @@ public class GUI extends JFrame {
 		//---------------------------------------------------
 		// 				  Bank-roll display
 		//---------------------------------------------------
+		JPanel headerPanel = new JPanel(new GridLayout(2, 1));
 		bankrollLabel = new JLabel("", SwingConstants.CENTER);
 			bankrollLabel.setFont(font18);
-			bankrollLabel.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 0));
+			bankrollLabel.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0));
+			headerPanel.add(bankrollLabel);
+		statisticsLabel = new JLabel("", SwingConstants.CENTER);
+			statisticsLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
+			headerPanel.add(statisticsLabel);
 		updateBankroll();
-		pane.add(bankrollLabel, BorderLayout.NORTH);
+		updateStatistics();
+		pane.add(headerPanel, BorderLayout.NORTH);
 		
 		//---------------------------------------------------
 		// 				  Multiplier display
 		//---------------------------------------------------
-		JPanel gamePanel = new JPanel(new GridLayout(2, 1));
-		gamePanel.setBackground(new Color(20, 144, 245));
+		JPanel gamePanel = new JPanel(new BorderLayout());
+		JPanel labelPanel = new JPanel(new GridLayout(2, 1));
+		labelPanel.setBackground(new Color(20, 144, 245));
 		
 		multiplierLabel = new JLabel("x1,000", JLabel.CENTER);
 			multiplierLabel.setFont(font48);
-			gamePanel.add(multiplierLabel);
+			labelPanel.add(multiplierLabel);
 		cashOutValueLabel = new JLabel("Cash-out value: -", JLabel.CENTER);
 			cashOutValueLabel.setFont(font30);
-			gamePanel.add(cashOutValueLabel);
+			labelPanel.add(cashOutValueLabel);
+		gamePanel.add(labelPanel, BorderLayout.NORTH);
+		
+		chart = new CrashChartPanel(CHART_HISTORY, symbols);
+		for(Round round : DataManager.getInstance().getLastRounds(CHART_HISTORY)) {
+			chart.addToHistory(round.getCrashMilli());
+		}
+		gamePanel.add(chart, BorderLayout.CENTER);
 		pane.add(gamePanel, BorderLayout.CENTER);
 		
 		//---------------------------------------------------
@@ -164,44 +223,60 @@ public class GUI extends JFrame {
 	//-----------------------------------------------------------------------
 	
 	/** Performs all of the GUI updates upon the round start. */
+	@Override
 	public void start() {
 		SwingUtilities.invokeLater(() -> {
-			roundControlButton.setText("Cash-out !");
+			roundControlButton.setText(isAutoBetRunning() ? "Stop auto-bet" : "Cash-out !");
+			roundControlButton.setEnabled(true);
 			roundControlButton.setBackground(Color.ORANGE);
 			multiplierLabel.setForeground(Color.ORANGE);
 			cashOutValueLabel.setForeground(Color.ORANGE);
+			displayedMultiplier = -1;
+			displayedCashOutValue = -1;
+			chart.startRound();
+			renderer.start();
 		});
 	}
 	
 	/** Performs all of the GUI updates upon the round crash. */
-	public void crash() {
+	@Override
+	public void crash(long crashMilli, boolean busted) {
 		SwingUtilities.invokeLater(() -> {
-			multiplierLabel.setForeground(Color.RED);
-			cashOutValueLabel.setForeground(Color.RED);
-			cashOutValueLabel.setText("Busted | " + 
-					  formatterLong.format(gameManager.getBet() * gameManager.getMultiplier()));
+			renderer.stop();
+			displayMultiplier(crashMilli);
+			chart.crash(crashMilli);
+			if(busted) {
+				multiplierLabel.setForeground(Color.RED);
+				cashOutValueLabel.setForeground(Color.RED);
+				cashOutValueLabel.setText("Busted | " +
+						  formatterLong.format(FixedPoint.multiplySaturated(game.getBet(), crashMilli)));
+			}
 			updateBankroll();
 		});
 	}
 	
 	/** Performs all of the GUI updates upon the round reset. */
+	@Override
 	public void reset() {
 		SwingUtilities.invokeLater(() -> {
-			roundControlButton.setText("Start !");
+			renderer.stop();
+			roundControlButton.setText(isAutoBetRunning() ? "Stop auto-bet" : "Start !");
 			roundControlButton.setBackground(Color.LIGHT_GRAY);
 			roundControlButton.setEnabled(true);
 		});
+		updateStatistics();
 	}
 	
 	/** Performs all of the GUI updates upon the player's cash-out. */
-	public void cashOut() {
+	@Override
+	public void cashOut(long multiplierMilli, long payout) {
 		SwingUtilities.invokeLater(() -> {
 			roundControlButton.setEnabled(false);
 			roundControlButton.setBackground(Color.GREEN);
 			multiplierLabel.setForeground(Color.GREEN);
 			cashOutValueLabel.setText("Cashed out | " + 
-									  formatterLong.format(gameManager.getBet() * gameManager.getPlayerCashOutMultiplier()) + " | " +
-									  "x" + formatterDouble.format(gameManager.getPlayerCashOutMultiplier()));
+									  formatterLong.format(payout) + " | " +
+									  "x" + formatterDouble.format(multiplierMilli / 1000.0));
 			cashOutValueLabel.setForeground(Color.GREEN);
 		});
 	}
@@ -209,29 +284,82 @@ public class GUI extends JFrame {
 	/**
 	 * Updates the bank-roll text.
 	 */
+	@Override
 	public void updateBankroll() {
 		SwingUtilities.invokeLater(() -> {
-			bankrollLabel.setText("Bankroll: " + formatterLong.format(gameManager.getBankroll()));
+			bankrollLabel.setText("Bankroll: " + formatterLong.format(game.getBankroll()));
 		});
 	}
 	
 	/**
-	 * Updates the multiplier text.
+	 * Updates the statistics text.
 	 */
-	public void updateMultiplier() {
+	private void updateStatistics() {
+		RoundStatistics statistics = DataManager.getInstance().getStatistics();
+		long streak = statistics.getStreak();
+		String text = "Rounds: " + formatterLong.format(statistics.getRounds()) +
+					  " | Won: " + String.format("%.1f%%", statistics.getWinRate() * 100) +
+					  " | Profit: " + formatterLong.format(statistics.getProfit()) +
+					  " | Streak: " + Math.abs(streak) + (streak >= 0 ? " won" : " lost");
+		
 		SwingUtilities.invokeLater(() -> {
-			multiplierLabel.setText("x" + formatterDouble.format(gameManager.getMultiplier()));
+			statisticsLabel.setText(text);
 		});
 	}
 	
 	/**
-	 * Updates the cash-out value text.
+	 * Updates the multiplier text. Only requests a frame, so it is cheap
+	 * enough to be called on every tick.
 	 */
+	@Override
+	public void updateMultiplier() {
+		renderer.request();
+	}
+	
+	/**
+	 * Updates the cash-out value text. Only requests a frame, so it is cheap
+	 * enough to be called on every tick.
+	 */
+	@Override
 	public void updateCashOutValue() {
-		SwingUtilities.invokeLater(() -> {
-			double cashOutValue = gameManager.getBet() * gameManager.getMultiplier();
-			cashOutValueLabel.setText("Cash-out value: " + formatterLong.format(cashOutValue));
-		});
+		renderer.request();
+	}
+	
+	/**
+	 * Renders the latest multiplier and cash-out value. The labels are only
+	 * changed if the displayed values changed.
+	 */
+	private void renderFrame() {
+		long multiplier = game.getMultiplierMilli();
+		
+		if(multiplier != displayedMultiplier) {
+			displayMultiplier(multiplier);
+		}
+		
+		// Once the player cashes out, the label shows the cash-out instead.
+		if(game.getPlayerCashOutMilli() > 0) return;
+		
+		long cashOutValue = FixedPoint.multiplySaturated(game.getBet(), multiplier);
+		
+		if(cashOutValue != displayedCashOutValue) {
+			displayedCashOutValue = cashOutValue;
+			frameText.setLength(0);
+			frameText.append("Cash-out value: ");
+			FastFormat.appendGrouped(frameText, cashOutValue, symbols.getGroupingSeparator());
+			cashOutValueLabel.setText(frameText.toString());
+		}
+	}
+	
+	/**
+	 * Shows the given multiplier on the label and the chart.
+	 */
+	private void displayMultiplier(long multiplier) {
+		displayedMultiplier = multiplier;
+		chart.update(multiplier);
+		frameText.setLength(0);
+		frameText.append('x');
+		FastFormat.appendMilli(frameText, multiplier, symbols.getGroupingSeparator(), symbols.getDecimalSeparator());
+		multiplierLabel.setText(frameText.toString());
 	}
 	
 	/** @return the player's bet from the "bet" text-field */
@@ -252,38 +380,75 @@ public class GUI extends JFrame {
 		
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			if(gameManager.isRoundRunning()) {
-				gameManager.cashOut();
+			if(isAutoBetRunning()) {
+				autoBet.stop();
+				roundControlButton.setText(game.isRoundRunning() ? "Cash-out !" : "Start !");
+				
+			} else if(game.isRoundRunning()) {
+				game.cashOut();
 				
 			} else {
 				try {
 					long bet = Long.parseLong(getBet());
-					double autoCashOut = Double.parseDouble(getAutoCashOut());
+					long autoCashOut = RoundJournal.parseMilli(getAutoCashOut().trim());
 					
-					if(bet > gameManager.getBankroll()) {
-						betTextField.setText(String.valueOf(gameManager.getBankroll()));
+					if(bet > game.getBankroll()) {
+						betTextField.setText(String.valueOf(game.getBankroll()));
 						showMessage("You don't have enough money for this bet!");
 						
 					} else if(bet <= 0) {
 						showMessage("Your bet should be higher than 0!");
 						
-					} else if(autoCashOut <= 1) {
+					} else if(autoCashOut <= 1000) {
 						showMessage("Auto cash-out value must be higher than x1.000");
 						
+					} else if(autoCashOut > AutoCashOutIndex.MAX_THRESHOLD) {
+						showMessage("Auto cash-out value must be at most x" +
+									FastFormat.appendMilli(new StringBuilder(), AutoCashOutIndex.MAX_THRESHOLD, '.'));
+						
 					} else {
 						DataManager.getInstance().updateProperty("bet", String.valueOf(bet));
-						DataManager.getInstance().updateProperty("autoCashOut", String.valueOf(autoCashOut));
-						gameManager.startRound(bet, autoCashOut);
+						DataManager.getInstance().updateProperty("autoCashOut", FastFormat.appendMilli(new StringBuilder(), autoCashOut, '.').toString());
+						game.startRound(bet, autoCashOut);
+						
+						// A server starts the round on its own schedule; until then there is nothing to press.
+						roundControlButton.setText("Waiting for the round...");
+						roundControlButton.setEnabled(false);
 					}
 					
-				} catch (NumberFormatException nfe) {
+				} catch (NumberFormatException | ArithmeticException nfe) {
 					showMessage("Invalid bet or auto cash-out value!\r\n" +
 								"Your bet should be an integer, while the auto cash-out should be a decimal number.");
+					
+				} catch (IllegalStateException ise) {
+					// The auto-bet script got to the round first.
+					showMessage("The round has already started.");
 				}
 			}
 		}
 	};
 	
+	/**
+	 * Creates the game: a client of the server at the given address, or a
+	 * local game if there is no address or the server can not be reached.
+	 */
+	private Game createGame(String server) {
+		if(server == null) return new GameManager(this);
+		
+		try {
+			return GameClient.connect(server, this);
+			
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Could not connect to the server '" + server + "'. Playing locally.");
+			return new GameManager(this);
+		}
+	}
+	
+	/** @return whether an auto-bet script is playing the game */
+	private boolean isAutoBetRunning() {
+		return autoBet != null && autoBet.isRunning();
+	}
+	
 	private void showMessage(String message) {
 		JOptionPane.showMessageDialog(GUI.this, message);
 	}
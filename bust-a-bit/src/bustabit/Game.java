@@ -0,0 +1,45 @@
+package bustabit;
+
+/**
+ * The game as seen by a single player: placing bets, cashing out and
+ * reading the state of the player's round. It is played either locally,
+ * by the {@link GameManager}, or on a {@link GameServer} through a
+ * {@link GameClient}. The state changes are reported to a
+ * {@link GameListener}.
+ * 
+ * @author FICHEKK
+ */
+public interface Game {
+	
+	/**
+	 * Places the player's bet on the next round.
+	 * 
+	 * @param bet the player's bet
+	 * @param autoCashOutMilli the player's auto cash-out multiplier in
+	 * 		  thousandths, or 0 if not set
+	 * @throws IllegalStateException if the player's bet is already placed
+	 */
+	void startRound(long bet, long autoCashOutMilli);
+	
+	/**
+	 * Cashes out at the current multiplier.
+	 * 
+	 * @throws IllegalStateException if the player has no bet in a running round
+	 */
+	void cashOut();
+	
+	/** @return the player's bank-roll */
+	long getBankroll();
+	
+	/** @return the current multiplier in thousandths */
+	long getMultiplierMilli();
+	
+	/** @return the flag indicating whether the player has a bet in the current or the next round */
+	boolean isRoundRunning();
+	
+	/** @return the player's bet */
+	long getBet();
+	
+	/** @return the player's cash-out multiplier in thousandths, or 0 if the player did not cash out */
+	long getPlayerCashOutMilli();
+}
@@ -0,0 +1,355 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The game played on a {@link GameServer}. The bets and the cash-outs are
+ * sent to the server, which settles them; the round events received from
+ * the server are reported to the {@link GameListener}, on the client's
+ * network thread. The multiplier is not sent by the server, it is computed
+ * from the {@link MultiplierCurve} and the moment the round started.
+ * 
+ * @author FICHEKK
+ */
+public class GameClient implements Game, Closeable {
+	
+	/** The multiplier value (in thousandths) at the start of the round. */
+	private static final long STARTING_MULTIPLIER = 1000;
+	
+	/** The time between two consecutive multiplier updates in nanoseconds. */
+	private static final long TICK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	/** The connection to the server, in blocking mode. */
+	private final SocketChannel channel;
+	
+	/** Receives the state changes of the game. */
+	private final GameListener listener;
+	
+	/** The received bytes that do not yet form a whole message. */
+	private final ByteBuffer input = ByteBuffer.allocate(Protocol.MAX_MESSAGE_SIZE * 64);
+	
+	/** Reusable buffer that the outgoing messages are encoded in. */
+	private final ByteBuffer output = ByteBuffer.allocate(Protocol.MAX_MESSAGE_SIZE);
+	
+	/** Updates the multiplier while the player's round is running; created once. */
+	private final Runnable tickTask = this::tick;
+	
+	/** The pending multiplier update. */
+	private ScheduledFuture<?> nextTick;
+	
+	/** The player's bank-roll, as reported by the server. */
+	private volatile long bankroll;
+	
+	/** Flag that indicates if the player's bet was sent and its round is not over yet. */
+	private volatile boolean betPlaced;
+	
+	/** Flag that indicates if the server accepted the player's bet. */
+	private boolean betAccepted;
+	
+	/** Flag that indicates if the round with the player's bet is running. */
+	private volatile boolean playing;
+	
+	/** Flag that indicates if the player has requested a cash-out. */
+	private volatile boolean cashOutRequested;
+	
+	/** The multiplier (in thousandths) that the player cashed-out on. */
+	private volatile long playerCashOutMilli;
+	
+	/** Holds the player's current bet value. */
+	private volatile long bet;
+	
+	/** Holds the current multiplier value in thousandths. */
+	private volatile long multiplierMilli = STARTING_MULTIPLIER;
+	
+	/** The {@link System#nanoTime()} instant at which the start of the round was received. */
+	private long startNanos;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Connects to the server at the given address and starts receiving the
+	 * round events. Returns once the server has sent the player's bank-roll.
+	 * 
+	 * @param address the address of the server
+	 * @param listener receives the state changes of the game, for example the GUI
+	 * @throws IOException if the connection could not be established
+	 */
+	public GameClient(InetSocketAddress address, GameListener listener) throws IOException {
+		this.listener = listener;
+		this.channel = SocketChannel.open(address);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		
+		try {
+			fill(1 + Long.BYTES);
+			input.flip();
+			if(input.get() != Protocol.WELCOME) throw new IOException("The server did not welcome the client.");
+			bankroll = input.getLong();
+			input.compact();
+			
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		
+		Thread reader = new Thread(this::receive, "game-client");
+		reader.setDaemon(true);
+		reader.start();
+	}
+	
+	/**
+	 * Connects to the server at the given address.
+	 * 
+	 * @param address the address of the server, as {@code host[:port]}
+	 * @param listener receives the state changes of the game, for example the GUI
+	 * @return the connected client
+	 * @throws IOException if the connection could not be established
+	 */
+	public static GameClient connect(String address, GameListener listener) throws IOException {
+		int colon = address.lastIndexOf(':');
+		String host = colon < 0 ? address : address.substring(0, colon);
+		int port = colon < 0 ? Protocol.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+		return new GameClient(new InetSocketAddress(host, port), listener);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Sends the player's bet for the next round. The round starts when the
+	 * server starts it, which is reported by {@link GameListener#start()}.
+	 */
+	@Override
+	public void startRound(long bet, long autoCashOutMilli) {
+		if(betPlaced) throw new IllegalStateException("The bet is already placed.");
+		
+		this.bet = bet;
+		this.betPlaced = true;
+		
+		synchronized(output) {
+			output.clear();
+			Protocol.writeBet(output, bet, autoCashOutMilli > 0 ? Math.max(autoCashOutMilli, 1001) : 0);
+			send();
+		}
+	}
+	
+	/**
+	 * Sends the cash-out request. The request is ignored until the round
+	 * with the player's bet starts.
+	 */
+	@Override
+	public void cashOut() {
+		if(!betPlaced) throw new IllegalStateException("The player has no bet.");
+		if(!playing || cashOutRequested) return;
+		
+		cashOutRequested = true;
+		synchronized(output) {
+			output.clear();
+			Protocol.writeCashOut(output);
+			send();
+		}
+	}
+	
+	/**
+	 * Closes the connection to the server.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	//-----------------------------------------------------------------------
+	//								GETTERS
+	//-----------------------------------------------------------------------
+	
+	@Override
+	public long getBankroll() {
+		return bankroll;
+	}
+	
+	@Override
+	public long getMultiplierMilli() {
+		return multiplierMilli;
+	}
+	
+	@Override
+	public boolean isRoundRunning() {
+		return betPlaced;
+	}
+	
+	@Override
+	public long getBet() {
+		return bet;
+	}
+	
+	@Override
+	public long getPlayerCashOutMilli() {
+		return playerCashOutMilli;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							ROUND EVENTS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Receives the messages of the server until the connection is closed.
+	 */
+	private void receive() {
+		try {
+			while(true) {
+				if(channel.read(input) < 0) throw new EOFException();
+				
+				input.flip();
+				while(input.hasRemaining()) {
+					int size = Protocol.messageSize(input);
+					if(size < 0) throw new IOException("Unknown message type " + input.get(input.position()) + ".");
+					if(size == 0) break;
+					handle(input, size);
+				}
+				input.compact();
+			}
+			
+		} catch (IOException e) {
+			if(channel.isOpen()) {
+				System.err.println("Lost the connection to the server.");
+			}
+			disconnected();
+		}
+	}
+	
+	/**
+	 * Handles a single, complete message of the given size.
+	 */
+	private synchronized void handle(ByteBuffer message, int size) {
+		byte type = message.get();
+		switch(type) {
+			case Protocol.BET_ACCEPTED:
+				message.getLong();
+				betAccepted = true;
+				bankroll = message.getLong();
+				listener.updateBankroll();
+				break;
+			
+			case Protocol.BET_REJECTED:
+				System.err.println("The bet was rejected: " + Protocol.describeRejection(message.get()));
+				betPlaced = false;
+				listener.reset();
+				break;
+			
+			case Protocol.STARTED:
+				message.getLong();
+				if(betAccepted) {
+					startNanos = System.nanoTime();
+					playing = true;
+					multiplierMilli = STARTING_MULTIPLIER;
+					listener.start();
+					nextTick = RoundScheduler.scheduleAt(tickTask, startNanos);
+				}
+				break;
+			
+			case Protocol.CASHED_OUT:
+				playerCashOutMilli = message.getLong();
+				multiplierMilli = playerCashOutMilli;
+				long payout = message.getLong();
+				bankroll = message.getLong();
+				listener.cashOut(playerCashOutMilli, payout);
+				listener.updateBankroll();
+				break;
+			
+			case Protocol.CRASHED:
+				crashed(message.getLong());
+				break;
+			
+			default:
+				// The other messages carry nothing the player's game needs.
+				message.position(message.position() + size - 1);
+		}
+	}
+	
+	/**
+	 * Ends the player's round at the given crash.
+	 */
+	private void crashed(long crashMilli) {
+		if(!playing) return;
+		
+		nextTick.cancel(false);
+		playing = false;
+		multiplierMilli = crashMilli;
+		listener.crash(crashMilli, playerCashOutMilli == 0);
+		
+		DataManager.getInstance().saveRound(new Round(bet, playerCashOutMilli, crashMilli));
+		
+		betPlaced = false;
+		betAccepted = false;
+		cashOutRequested = false;
+		playerCashOutMilli = 0;
+		listener.reset();
+	}
+	
+	/**
+	 * Updates the multiplier of the running round; the next update stays on
+	 * the grid of the tick interval.
+	 */
+	private synchronized void tick() {
+		if(!playing) return;
+		
+		long elapsed = System.nanoTime() - startNanos;
+		multiplierMilli = MultiplierCurve.milliAt(elapsed);
+		listener.updateMultiplier();
+		if(playerCashOutMilli == 0) {
+			listener.updateCashOutValue();
+		}
+		
+		nextTick = RoundScheduler.scheduleAt(tickTask, startNanos + (elapsed / TICK_INTERVAL + 1) * TICK_INTERVAL);
+	}
+	
+	/**
+	 * Abandons the player's round once the connection is lost.
+	 */
+	private synchronized void disconnected() {
+		if(nextTick != null) nextTick.cancel(false);
+		
+		boolean hadBet = betPlaced;
+		playing = false;
+		betPlaced = false;
+		betAccepted = false;
+		if(hadBet) listener.reset();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Writes the encoded {@link #output} to the server.
+	 */
+	private void send() {
+		output.flip();
+		try {
+			while(output.hasRemaining()) {
+				channel.write(output);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not send the message to the server.");
+		}
+	}
+	
+	/**
+	 * Reads until the input holds at least the given number of bytes.
+	 */
+	private void fill(int bytes) throws IOException {
+		while(input.position() < bytes) {
+			if(channel.read(input) < 0) throw new EOFException();
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans the game events out to any number of subscribers through a
+ * preallocated ring of event slots.
+ * <p>
+ * Publishing writes the event into the next slot and never waits for
+ * the subscribers, so the publishing (tick) thread is never stalled.
+ * Each subscriber has its own thread and its own position in the ring,
+ * and consumes the events at its own pace, in batches. A subscriber that
+ * falls a whole ring behind is overrun: the events it missed are skipped,
+ * which it is told about through {@link GameEventListener#onOverrun(long)}.
+ * <p>
+ * Every slot carries the sequence number of the event in it, written
+ * last; a subscriber reads a slot only if it holds the expected sequence,
+ * and checks it again after reading, so an event that was overwritten
+ * while being read is detected instead of delivered torn.
+ * 
+ * @author FICHEKK
+ */
+public final class GameEventBus {
+	
+	/** Marks a slot that is being written. */
+	private static final long WRITING = -1;
+	
+	/** The longest time an idle subscriber sleeps before it checks the ring again. */
+	private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	/** The number of slots, a power of two. */
+	private final int capacity;
+	
+	/** Maps a sequence number to its slot. */
+	private final int mask;
+	
+	/** The sequence number of the event in each slot. */
+	private final AtomicLongArray sequences;
+	
+	/** The type of the event in each slot. */
+	private final int[] types;
+	
+	/** The first value of the event in each slot. */
+	private final long[] firsts;
+	
+	/** The second value of the event in each slot. */
+	private final long[] seconds;
+	
+	/** The sequence number of the next published event. */
+	private final AtomicLong claimed = new AtomicLong();
+	
+	/** The current subscriptions; replaced as a whole on every change. */
+	private volatile Subscription[] subscriptions = new Subscription[0];
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new bus.
+	 * 
+	 * @param capacity the number of event slots, a power of two; the number
+	 * 		  of events a subscriber can fall behind before it is overrun
+	 */
+	public GameEventBus(int capacity) {
+		if(capacity <= 0 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two.");
+		
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.sequences = new AtomicLongArray(capacity);
+		this.types = new int[capacity];
+		this.firsts = new long[capacity];
+		this.seconds = new long[capacity];
+		
+		for(int i = 0; i < capacity; i++) {
+			sequences.set(i, WRITING);
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Publishes an event. Never blocks and never allocates.
+	 * 
+	 * @param type the type of the event, see {@link GameEventListener}
+	 * @param first the first value of the event
+	 * @param second the second value of the event
+	 */
+	public void publish(int type, long first, long second) {
+		long sequence = claimed.getAndIncrement();
+		int slot = (int) (sequence & mask);
+		
+		sequences.set(slot, WRITING);
+		VarHandle.storeStoreFence();
+		types[slot] = type;
+		firsts[slot] = first;
+		seconds[slot] = second;
+		sequences.set(slot, sequence);
+		
+		for(Subscription subscription : subscriptions) {
+			if(subscription.sleeping) {
+				subscription.sleeping = false;
+				LockSupport.unpark(subscription.thread);
+			}
+		}
+	}
+	
+	/**
+	 * Subscribes a listener, starting with the next published event.
+	 * 
+	 * @param name the name of the subscriber, used for its thread
+	 * @param listener receives the events
+	 * @return the subscription, which is closed to unsubscribe
+	 */
+	public synchronized Subscription subscribe(String name, GameEventListener listener) {
+		Subscription subscription = new Subscription(name, listener, claimed.get());
+		
+		Subscription[] current = subscriptions;
+		Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = subscription;
+		subscriptions = updated;
+		
+		subscription.thread.start();
+		return subscription;
+	}
+	
+	/** @return the number of events published so far */
+	public long getPublished() {
+		return claimed.get();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private synchronized void unsubscribe(Subscription subscription) {
+		Subscription[] current = subscriptions;
+		Subscription[] updated = new Subscription[current.length - 1];
+		for(int i = 0, j = 0; i < current.length; i++) {
+			if(current[i] != subscription) updated[j++] = current[i];
+		}
+		subscriptions = updated;
+	}
+	
+	/**
+	 * A subscriber: its listener, its thread and its position in the ring.
+	 */
+	public final class Subscription implements Closeable {
+		
+		/** Receives the events. */
+		private final GameEventListener listener;
+		
+		/** Consumes the events. */
+		private final Thread thread;
+		
+		/** The sequence number of the next event to consume. */
+		private long next;
+		
+		/** The number of events skipped because of overruns. */
+		private volatile long skipped;
+		
+		/** Flag that indicates if the thread waits for the next event. */
+		private volatile boolean sleeping;
+		
+		/** Flag that indicates if the subscription was closed. */
+		private volatile boolean closed;
+		
+		private Subscription(String name, GameEventListener listener, long next) {
+			this.listener = listener;
+			this.next = next;
+			this.thread = new Thread(this::consume, "events-" + name);
+			thread.setDaemon(true);
+		}
+		
+		/** @return the number of events skipped because the subscriber fell behind */
+		public long getSkipped() {
+			return skipped;
+		}
+		
+		/**
+		 * Unsubscribes; the events that were not consumed yet are dropped.
+		 */
+		@Override
+		public void close() {
+			closed = true;
+			unsubscribe(this);
+			LockSupport.unpark(thread);
+		}
+		
+		/**
+		 * Consumes the events until the subscription is closed.
+		 */
+		private void consume() {
+			while(!closed) {
+				int slot = (int) (next & mask);
+				long sequence = sequences.get(slot);
+				
+				if(sequence == next) {
+					int type = types[slot];
+					long first = firsts[slot];
+					long second = seconds[slot];
+					VarHandle.loadLoadFence();
+					
+					// Overwritten while being read; the next round of the loop sees the overrun.
+					if(sequences.get(slot) != next) continue;
+					
+					next++;
+					boolean endOfBatch = sequences.get((int) (next & mask)) != next;
+					deliver(type, first, second, endOfBatch);
+					
+				} else if(sequence > next || claimed.get() - next > capacity) {
+					// Skips to the oldest event that is not being overwritten.
+					long oldest = claimed.get() - capacity + 1;
+					long missed = oldest - next;
+					next = oldest;
+					skipped += missed;
+					listener.onOverrun(missed);
+					
+				} else {
+					sleeping = true;
+					if(sequences.get(slot) != next && !closed) {
+						LockSupport.parkNanos(this, MAX_IDLE_NANOS);
+					}
+					sleeping = false;
+				}
+			}
+		}
+		
+		private void deliver(int type, long first, long second, boolean endOfBatch) {
+			try {
+				listener.onEvent(type, first, second, endOfBatch);
+			} catch (RuntimeException e) {
+				System.err.println("Event subscriber failed: " + e);
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package bustabit;
+
+/**
+ * Consumes the events of a {@link GameEventBus}. Every subscriber has its
+ * own thread, on which all of these methods are called.
+ * <p>
+ * An event is a type and two values whose meaning depends on the type;
+ * they are passed as primitives, so publishing an event allocates
+ * nothing.
+ * 
+ * @author FICHEKK
+ */
+public interface GameEventListener {
+	
+	/** The round started; {@code first} is the player's bet. */
+	int ROUND_STARTED = 1;
+	
+	/**
+	 * The multiplier changed; {@code first} is the multiplier in thousandths,
+	 * {@code second} is 1 if the player's cash-out value changed with it.
+	 */
+	int MULTIPLIER = 2;
+	
+	/** The player cashed out; {@code first} is the multiplier in thousandths, {@code second} the payout. */
+	int CASHED_OUT = 3;
+	
+	/** The round crashed; {@code first} is the crash in thousandths, {@code second} is 1 if the player lost. */
+	int CRASHED = 4;
+	
+	/** The round is over and a new bet can be placed. */
+	int ROUND_RESET = 5;
+	
+	/** The player's bank-roll changed; {@code first} is the new bank-roll. */
+	int BANKROLL = 6;
+	
+	/**
+	 * Handles a single event.
+	 * 
+	 * @param type the type of the event
+	 * @param first the first value of the event
+	 * @param second the second value of the event
+	 * @param endOfBatch {@code true} if no further event is available right
+	 * 		  now, so the work that can be batched should be done
+	 */
+	void onEvent(int type, long first, long second, boolean endOfBatch);
+	
+	/**
+	 * Called when the subscriber fell so far behind that the events it did
+	 * not consume yet were overwritten. The subscriber continues with the
+	 * oldest event that is still available.
+	 * 
+	 * @param missed the number of the skipped events
+	 */
+	default void onOverrun(long missed) {
+		System.err.println("Event subscriber fell behind, " + missed + " events were skipped.");
+	}
+}
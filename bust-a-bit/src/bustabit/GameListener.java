@@ -0,0 +1,44 @@
+package bustabit;
+
+/**
+ * Receives the state changes of the game that is played by a single
+ * player. The game calls these methods on its own thread (the tick
+ * thread, or the network thread of a {@link GameClient}), so an
+ * implementation that updates a user interface has to hand the work over
+ * to its own thread.
+ * 
+ * @author FICHEKK
+ */
+public interface GameListener {
+	
+	/** Called when the round with the player's bet starts. */
+	void start();
+	
+	/**
+	 * Called when the round with the player's bet crashes.
+	 * 
+	 * @param crashMilli the crash multiplier in thousandths
+	 * @param busted whether the player lost the bet, not having cashed out
+	 */
+	void crash(long crashMilli, boolean busted);
+	
+	/** Called when the round is over and a new bet can be placed. */
+	void reset();
+	
+	/**
+	 * Called when the player cashes out.
+	 * 
+	 * @param multiplierMilli the cash-out multiplier in thousandths
+	 * @param payout the amount paid out to the player
+	 */
+	void cashOut(long multiplierMilli, long payout);
+	
+	/** Called when the player's bank-roll changes. */
+	void updateBankroll();
+	
+	/** Called on every tick, when the multiplier changes. */
+	void updateMultiplier();
+	
+	/** Called on every tick while the player has not cashed out. */
+	void updateCashOutValue();
+}
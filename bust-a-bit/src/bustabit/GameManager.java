@@ -1,62 +1,90 @@
 package bustabit;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Game manager; performs the game logic and offers
  * basic interface for starting rounds, cashing out
- * and getting player/round information.
+ * and getting player/round information. The game is
+ * played locally, in-process; the state changes are
+ * published on a {@link GameEventBus}, so the game
+ * runs with or without a display, and any number of
+ * subscribers follow it without slowing the ticks.
  * 
  * @author FICHEKK
  */
-public class GameManager {
-	
-	/** The multiplier iteration factor. */
-	private static final double MULTIPLIER_FACTOR = 1.001;
+public class GameManager implements Game {
 	
-	/** The multiplier value at the start of the round. */
-	private static final double STARTING_MULTIPLIER = 1.000;
+	/** The multiplier value (in thousandths) at the start of the round. */
+	private static final long STARTING_MULTIPLIER = 1000;
 
-	/** The multiplier iteration duration in milliseconds. */
-	private static final long SLEEP_DURATION = 10;
+	/** The time between two consecutive ticks in nanoseconds. */
+	private static final long TICK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	/** The number of events a subscriber can fall behind; ten seconds of ticks. */
+	private static final int EVENT_BUFFER_SIZE = 1024;
 	
 	/** The player's bank-roll. */
-	private long bankroll;
+	private volatile long bankroll;
 
-	/** Flag that indicated if the round is currently running. */
-	private boolean roundRunning = false;
+	/** Flag that indicated if the round is currently running; set by a compare-and-set, so only one start wins. */
+	private final AtomicBoolean roundRunning = new AtomicBoolean();
+	
+	/** Flag that indicated if the player has requested a cash-out. */
+	private volatile boolean cashOutRequested = false;
 	
 	/** Flag that indicated if the player has cashed out. */
-	private boolean playerCashedOut = false;
+	private volatile boolean playerCashedOut = false;
 	
-	/** The multiplier that the player cashed-out on. */
-	private double playerCashOutMultiplier = 0;
+	/** The multiplier (in thousandths) that the player cashed-out on. */
+	private volatile long playerCashOutMilli = 0;
 	
 	/** Holds the player's current bet value. */
-	private long bet;
+	private volatile long bet;
+	
+	/** Holds the current multiplier value in thousandths. */
+	private volatile long multiplierMilli = STARTING_MULTIPLIER;
+	
+	/** Holds the current round crash value in thousandths. */
+	private volatile long crashMilli;
 	
-	/** Holds the current multiplier value. */
-	private double multiplier = STARTING_MULTIPLIER;
+	/** The {@link System#nanoTime()} instant at which the current round started. */
+	private long startNanos;
 	
-	/** Holds the current round crash value. */
-	private double crash;
+	/** The {@link System#nanoTime()} instant of the previous tick of the round, or 0 before the first one. */
+	private long previousTickNanos;
+	
+	/** Supplies the crash multipliers of the rounds. */
+	private final CrashSource crashSource = CrashSource.configured();
+	
+	/** The engine that runs the rounds. */
+	private final RoundEngine engine = new RoundEngine(1, new Settlement());
+	
+	/** The player's slot in the current round. */
+	private int slot;
 	
 	/** A list of rounds that were played during the current session. */
 //	private List<Round> sessionRounds = new LinkedList<>();
 	
-	/** The reference to the graphical user interface. */
-	private GUI gui;
+	/** Publishes the state changes of the game to the subscribers. */
+	private final GameEventBus events = new GameEventBus(EVENT_BUFFER_SIZE);
+	
+	/** The auto-bet script that plays the game, or {@code null}. */
+	private volatile AutoBetRunner autoBet;
 	
 	//-----------------------------------------------------------------------
 	//							  CONSTRUCTOR
 	//-----------------------------------------------------------------------
 	
 	/**
-	 * Constructs a new game manager that communicates with the given GUI.
+	 * Constructs a new game manager that reports to the given listener.
 	 * 
-	 * @param gui reference to the application's GUI (graphical user interface)
+	 * @param listener receives the state changes of the game, for example the GUI
 	 */
-	public GameManager(GUI gui) {
-		this.gui = gui;
+	public GameManager(GameListener listener) {
 		this.bankroll = Long.parseLong(DataManager.getInstance().getProperty("bankroll"));
+		subscribe("listener", new ListenerAdapter(this, listener));
 	}
 	
 	//-----------------------------------------------------------------------
@@ -64,70 +92,99 @@ public class GameManager {
 	//-----------------------------------------------------------------------
 	
 	/**
-	 * Starts a new round with the given player's bet.
+	 * Starts a new round with the given player's bet. The bet is placed
+	 * before anything else changes, so an invalid bet leaves the game as it
+	 * was. May be called from any thread; of two concurrent starts, only one
+	 * starts the round.
 	 * 
 	 * @param bet the player's bet
-	 * @param autoCashOut the player's auto cash-out multiplier
+	 * @param autoCashOutMilli the player's auto cash-out multiplier in
+	 * 		  thousandths, or 0 if not set
+	 * @throws IllegalArgumentException if the bet or the auto cash-out is invalid
+	 * @throws IllegalStateException if the round is already running
 	 */
-	public void startRound(long bet, double autoCashOut) {
+	@Override
+	public void startRound(long bet, long autoCashOutMilli) {
+		if(!roundRunning.compareAndSet(false, true)) throw new IllegalStateException("The round is already running.");
+		
+		try {
+			engine.reset();
+			slot = engine.placeBet(bet, autoCashOutMilli > 0 ? Math.max(autoCashOutMilli, 1001) : 0);
+		} catch (RuntimeException e) {
+			roundRunning.set(false);
+			throw e;
+		}
+		
 		this.bet = bet;
-		this.roundRunning = true;
-		this.crash = generateCrashMultiplier();
+		this.crashMilli = crashSource.nextCrashMilli();
 
 		updateBankroll(bankroll - bet);
-		gui.start();
+		events.publish(GameEventListener.ROUND_STARTED, bet, 0);
 		
-		new Thread(() -> {
-			while(multiplier < crash) {
-				multiplier = Math.min(multiplier * MULTIPLIER_FACTOR, crash);
-				gui.updateMultiplier();
-				
-				if(!playerCashedOut) {
-					if(autoCashOut > 0 && multiplier >= autoCashOut) {
-						multiplier = autoCashOut;
-						cashOut();
-					} else {
-						gui.updateCashOutValue();
-					}
-				}
-				
-				try {
-					Thread.sleep(SLEEP_DURATION);
-				} catch (InterruptedException i) {
-				}
-			}
-			
-			crash();
-		}).start();
+		startNanos = System.nanoTime();
+		engine.start(crashMilli, startNanos);
+		RoundScheduler.scheduleAt(this::tick, startNanos);
 	}
 
+	/**
+	 * Subscribes to the state changes of the game. The listener runs on its
+	 * own thread and never holds up the game; if it falls too far behind,
+	 * it skips the events it missed.
+	 * 
+	 * @param name the name of the subscriber
+	 * @param listener receives the events
+	 * @return the subscription, which is closed to unsubscribe
+	 */
+	public GameEventBus.Subscription subscribe(String name, GameEventListener listener) {
+		return events.subscribe(name, listener);
+	}
+	
+	/**
+	 * Attaches the auto-bet script, whose callbacks then run on the tick thread.
+	 * 
+	 * @param autoBet the runner of the script
+	 */
+	void setAutoBet(AutoBetRunner autoBet) {
+		this.autoBet = autoBet;
+	}
+	
 	//-----------------------------------------------------------------------
 	//								GETTERS
 	//-----------------------------------------------------------------------
 	
 	/** @return the player's bank-roll */
+	@Override
 	public long getBankroll() {
 		return bankroll; 
 	}
 	
-	/** @return the current multiplier */
-	public double getMultiplier() {
-		return multiplier;
+	/** @return the current multiplier in thousandths */
+	@Override
+	public long getMultiplierMilli() {
+		return multiplierMilli;
 	}
 	
 	/** @return the flag indicating whether the round is running or not */
+	@Override
 	public boolean isRoundRunning() {
-		return roundRunning;
+		return roundRunning.get();
 	}
 	
 	/** @return the player's bet */
+	@Override
 	public long getBet() {
 		return bet;
 	}
 	
-	/** @return the player's cash-out multiplier */
-	public double getPlayerCashOutMultiplier() {
-		return playerCashOutMultiplier;
+	/** @return the player's cash-out multiplier in thousandths, or 0 if the player did not cash out */
+	@Override
+	public long getPlayerCashOutMilli() {
+		return playerCashOutMilli;
+	}
+	
+	/** @return the aggregates over all of the rounds played so far */
+	public RoundStatistics getStatistics() {
+		return DataManager.getInstance().getStatistics();
 	}
 	
 	//-----------------------------------------------------------------------
@@ -135,44 +192,93 @@ public class GameManager {
 	//-----------------------------------------------------------------------
 	
 	/**
-	 * Cashes out at the current multiplier.
+	 * Performs a single tick of the round on the scheduler thread. The engine
+	 * settles the cash-outs and the crash; the next tick is scheduled for the
+	 * next tick interval, or earlier if the engine expects an auto cash-out
+	 * or the crash before it.
 	 */
-	public void cashOut() {
-		if(!roundRunning)   throw new IllegalStateException("The round is not running.");
-		if(playerCashedOut) throw new IllegalStateException("The player already cashed out.");
+	private void tick() {
+		long now = System.nanoTime();
+		boolean running = engine.tick(now);
+		
+		Metrics.recordTick(previousTickNanos, now);
+		previousTickNanos = running ? now : 0;
+		// The crash tick has already published the crash and reset the round.
+		if(!running) return;
 		
-		playerCashedOut = true;
+		multiplierMilli = engine.getMultiplierMilli();
+		events.publish(GameEventListener.MULTIPLIER, multiplierMilli, playerCashedOut ? 0 : 1);
 		
-		double multiplier3dec = roundToNDecimals(multiplier, 3);
-		playerCashOutMultiplier = multiplier3dec;
-		updateBankroll(bankroll + (long)(bet * multiplier3dec));
+		AutoBetRunner autoBet = this.autoBet;
+		if(autoBet != null) autoBet.tick(multiplierMilli);
 		
-		gui.cashOut();
+		// Ticks stay on the grid of the tick interval; late ticks are skipped, not caught up.
+		long elapsed = now - startNanos;
+		long next = Math.min((elapsed / TICK_INTERVAL + 1) * TICK_INTERVAL, engine.getNextEventNanos());
+		RoundScheduler.scheduleAt(this::tick, startNanos + next);
+	}
+	
+	/**
+	 * Cashes out at the current multiplier. The cash-out is settled by the
+	 * next tick, at the multiplier of the moment this method was called.
+	 */
+	@Override
+	public void cashOut() {
+		if(!roundRunning.get()) throw new IllegalStateException("The round is not running.");
+		if(cashOutRequested)    throw new IllegalStateException("The player already cashed out.");
+		
+		cashOutRequested = engine.requestCashOut(slot);
 	}
 	
 	/**
 	 * Crashes and resets the round.
 	 */
 	private void crash() {
-		if(!playerCashedOut) {
-			gui.crash();
-		}
+		events.publish(GameEventListener.CRASHED, crashMilli, playerCashedOut ? 0 : 1);
 
-		DataManager.getInstance().saveRound(new Round(bet, playerCashOutMultiplier, crash));
+		Round round = new Round(bet, playerCashOutMilli, crashMilli);
+		DataManager.getInstance().saveRound(round);
 		
 		resetRound();
+		
+		AutoBetRunner autoBet = this.autoBet;
+		if(autoBet != null) autoBet.crashed(crashMilli);
 	}
 	
 	/**
 	 * Resets the round to the default settings.
 	 */
 	private void resetRound() {
-		roundRunning = false;
+		roundRunning.set(false);
+		cashOutRequested = false;
 		playerCashedOut = false;
-		playerCashOutMultiplier = 0;
-		multiplier = STARTING_MULTIPLIER;
+		playerCashOutMilli = 0;
+		multiplierMilli = STARTING_MULTIPLIER;
 		
-		gui.reset();
+		events.publish(GameEventListener.ROUND_RESET, 0, 0);
+	}
+	
+	/**
+	 * Applies the outcomes of the round; called by the engine on the tick thread.
+	 */
+	private class Settlement implements RoundEngine.Listener {
+		
+		@Override
+		public void cashedOut(int slot, long bet, long multiplierMilli, long payout) {
+			cashOutRequested = true;
+			playerCashedOut = true;
+			playerCashOutMilli = multiplierMilli;
+			GameManager.this.multiplierMilli = multiplierMilli;
+			
+			updateBankroll(FixedPoint.addSaturated(bankroll, payout));
+			events.publish(GameEventListener.CASHED_OUT, multiplierMilli, payout);
+		}
+		
+		@Override
+		public void crashed(long crashMilli) {
+			multiplierMilli = crashMilli;
+			crash();
+		}
 	}
 	
 	//-----------------------------------------------------------------------
@@ -182,18 +288,111 @@ public class GameManager {
 	private void updateBankroll(long newBankroll) {
 		bankroll = newBankroll;
 		DataManager.getInstance().updateProperty("bankroll", String.valueOf(bankroll));
-		gui.updateBankroll();
+		events.publish(GameEventListener.BANKROLL, bankroll, 0);
+	}
+	
+	/**
+	 * Delivers the events of the game to a {@link GameListener}. A batch of
+	 * multiplier events is delivered as a single update; the crash and the
+	 * cash-out are delivered with the values they carry, since the state of
+	 * the game may have moved on by the time the listener runs.
+	 */
+	private static class ListenerAdapter implements GameEventListener {
+		
+		/** The game, read to catch up after an overrun. */
+		private final Game game;
+		
+		/** Receives the state changes of the game. */
+		private final GameListener listener;
+		
+		/** Flag that indicates if the current batch changed the multiplier. */
+		private boolean multiplierChanged;
+		
+		/** Flag that indicates if the current batch changed the cash-out value. */
+		private boolean cashOutValueChanged;
+		
+		ListenerAdapter(Game game, GameListener listener) {
+			this.game = game;
+			this.listener = listener;
+		}
+		
+		/**
+		 * The skipped events may have started, crashed or reset a round, so
+		 * the listener is brought up to the current state of the game.
+		 */
+		@Override
+		public void onOverrun(long missed) {
+			GameEventListener.super.onOverrun(missed);
+			multiplierChanged = false;
+			cashOutValueChanged = false;
+			
+			listener.updateBankroll();
+			if(game.isRoundRunning()) {
+				listener.start();
+				listener.updateMultiplier();
+			} else {
+				listener.reset();
+			}
+		}
+		
+		@Override
+		public void onEvent(int type, long first, long second, boolean endOfBatch) {
+			if(type == MULTIPLIER) {
+				multiplierChanged = true;
+				cashOutValueChanged |= second != 0;
+				if(endOfBatch) flushMultiplier();
+				return;
+			}
+			
+			// The pending update goes first, so the listener sees the events in order.
+			flushMultiplier();
+			switch(type) {
+				case ROUND_STARTED: listener.start(); break;
+				case CASHED_OUT:    listener.cashOut(first, second); break;
+				case ROUND_RESET:   listener.reset(); break;
+				case BANKROLL:      listener.updateBankroll(); break;
+				case CRASHED:       listener.crash(first, second != 0); break;
+			}
+		}
+		
+		private void flushMultiplier() {
+			if(!multiplierChanged) return;
+			
+			listener.updateMultiplier();
+			if(cashOutValueChanged) listener.updateCashOutValue();
+			multiplierChanged = false;
+			cashOutValueChanged = false;
+		}
 	}
 	
 	//-----------------------------------------------------------------------
 	//							"THE" ALGORITHM
 	//-----------------------------------------------------------------------
 	
-	private static double generateCrashMultiplier() {
+	/**
+	 * The original floating-point form of the crash algorithm. The game
+	 * itself draws the crashes with {@link #crashMilli(double)}; this one
+	 * remains as the baseline of the benchmarks.
+	 * 
+	 * @return the crash multiplier, rounded to three decimals
+	 */
+	static double generateCrashMultiplier() {
 		double uniform = 1 / (1.0 - Math.random());
 		return roundToNDecimals(uniform, 3);
 	}
 	
+	/**
+	 * Maps a value drawn uniformly from {@code [0, 1)} to the crash multiplier
+	 * in thousandths. This is the same algorithm as
+	 * {@link #generateCrashMultiplier()}, used by the headless {@link Simulator}.
+	 * 
+	 * @param uniform a value drawn uniformly from {@code [0, 1)}
+	 * @return the crash multiplier in thousandths
+	 */
+	static long crashMilli(double uniform) {
+		return Math.round(1 / (1.0 - uniform) * 1000);
+	}
+	
 	//-----------------------------------------------------------------------
 	//							HELPER METHODS
 	//-----------------------------------------------------------------------
@@ -208,7 +407,7 @@ public class GameManager {
 	 * @return the same value as the passed {@code value}, but rounded to <i>n</i>
 	 * 		   decimal places
 	 */
-	private static double roundToNDecimals(double value, int nDecimals) {
+	static double roundToNDecimals(double value, int nDecimals) {
 		long tenPowerN = 1;
 		for(int i = 0; i < nDecimals; i++) {
 			tenPowerN *= 10;
@@ -220,62 +419,4 @@ public class GameManager {
 		
 		return value;
 	}
-	
-//	@SuppressWarnings("unused")
-//	private static double getBestMultiplierOutOfNRounds(int n) {
-//		double best = 1.0;
-//		
-//		for(int i = 0; i < n; i++) {
-//			double multiplier = generateCrashMultiplier();
-//			
-//			if(multiplier > best) {
-//				best = multiplier;
-//			}
-//		}
-//		
-//		return best;
-//	}
-//	
-//	@SuppressWarnings("unused")
-//	private static double getAverageMultiplierOutOfNRounds(int n) {
-//		double sum = 0.0;
-//		
-//		for(int i = 0; i < n; i++) {
-//			sum += generateCrashMultiplier();
-//		}
-//		
-//		return sum / n;
-//	}
-	
-	//-----------------------------------------------------------------------
-	//						ALGORITHM TESTING AREA
-	//-----------------------------------------------------------------------
-	
-//	@SuppressWarnings("unused")
-//	private static final void multiplierAlgorithmTest() {
-//		final int SAMPLE_COUNT = 100_000;
-//		Set<Double> sorted = new TreeSet<>();
-//		
-//		for(int i = 0; i < SAMPLE_COUNT; i++) {
-//			sorted.add(generateMultiplier());
-//		}
-//		
-//		int counter = 0;
-//		double multiplier = 2.0; 
-//		
-//		sorted.forEach(num -> System.out.println(String.format("%8.2f", num)));
-//
-//		for(double num : sorted) {
-//			if(num < multiplier) {
-//				counter++;
-//			} else {
-//				String fromTo = String.format("%4d - %4d: ", (int)multiplier/2, (int)multiplier);
-//				String percentage = String.format("%5.4f", (double)counter / SAMPLE_COUNT * 100);
-//				System.out.println(fromTo + percentage + "%");
-//				multiplier *= 2;
-//				
-//				counter = 0;
-//			}
-//		}
-//	}
 }
\ No newline at end of file
@@ -0,0 +1,792 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single game room: it plays the rounds one after another (betting,
+ * running, crashed) and serves its players over the binary
+ * {@link Protocol}, on the port of its own.
+ * <p>
+ * A room has no thread. It is driven by the {@link EventLoop} it is
+ * attached to, which selects on the channels of the room, hands their
+ * events over to it and advances its round; since the engine, the
+ * connections and the bank-rolls are only ever touched by that one thread,
+ * nothing is locked, and a connection costs nothing but its buffers. A room
+ * can be detached from its loop and attached to another one, with all of
+ * its connections and the round in progress.
+ * <p>
+ * The messages of a connection are collected during an iteration of the
+ * loop and written at its end, together. The spectators additionally get
+ * a frame on every tick; the frame is encoded once, and the very same
+ * buffer is written to every spectator, in the same gathering write as
+ * its other pending messages. A spectator whose socket is full skips the
+ * frames, so nothing piles up for it; once it catches up, it is sent a
+ * keyframe with the latest multiplier.
+ * <p>
+ * The bank-rolls are kept per connection, in memory; every connection
+ * starts with the same bank-roll. Every connection is a player of the
+ * {@link Leaderboard} of the room, named after the room and the number of
+ * the connection.
+ * 
+ * @author FICHEKK
+ */
+public class GameRoom implements Closeable, RoundEngine.Listener, EventLoop.Handler {
+	
+	/** The time between the crash and the next betting phase. */
+	private static final long PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(3000);
+	
+	/**
+	 * The size of the output buffer of a connection. A client that lets this
+	 * many bytes of messages pile up is too slow to play and is disconnected.
+	 */
+	private static final int OUTPUT_BUFFER_SIZE = 4096;
+	
+	/** The phases of a round. */
+	private enum Phase { BETTING, RUNNING, CRASHED }
+	
+	/** The settings of the room. */
+	private final RoomConfig config;
+	
+	/** Accepts the connections. */
+	private final ServerSocketChannel serverChannel;
+	
+	/** Supplies the crash multipliers of the rounds. */
+	private final CrashSource crashSource;
+	
+	/** The statistics of the players. */
+	private final Leaderboard leaderboard;
+	
+	/** The engine that runs the rounds. */
+	private final RoundEngine engine;
+	
+	/** The connections of the players in the current round, by slot. */
+	private final Connection[] players;
+	
+	/** All of the open connections. */
+	private final List<Connection> connections = new ArrayList<>();
+	
+	/** The connections that subscribed to the tick frames. */
+	private final List<Connection> spectators = new ArrayList<>();
+	
+	/** The connections with messages that have not been written yet. */
+	private final List<Connection> dirty = new ArrayList<>();
+	
+	/** Reusable buffer that the messages are encoded in. */
+	private final ByteBuffer message = ByteBuffer.allocate(Protocol.MAX_MESSAGE_SIZE);
+	
+	/** The latest {@link Protocol#TICK} frame; direct, so the socket writes do not copy it. */
+	private final ByteBuffer tickFrame = ByteBuffer.allocateDirect(Protocol.MAX_FRAME_SIZE);
+	
+	/** The latest {@link Protocol#KEYFRAME} frame. */
+	private final ByteBuffer keyFrame = ByteBuffer.allocateDirect(Protocol.MAX_FRAME_SIZE);
+	
+	/** The read-only view of {@link #tickFrame} that is written to the spectators. */
+	private final ByteBuffer sharedTickFrame = tickFrame.asReadOnlyBuffer();
+	
+	/** The read-only view of {@link #keyFrame} that is written to the spectators. */
+	private final ByteBuffer sharedKeyFrame = keyFrame.asReadOnlyBuffer();
+	
+	/** The loop that drives the room, or {@code null} while the room is detached. */
+	private volatile EventLoop loop;
+	
+	/** The metrics of the loop that drives the room. */
+	private ShardMetrics metrics;
+	
+	/** The key of the server channel in the selector of the loop. */
+	private SelectionKey serverKey;
+	
+	/** The multiplier of the latest frame, which the next {@link Protocol#TICK} is relative to. */
+	private long frameMilli;
+	
+	/** The current phase, or {@code null} before the room was first attached. */
+	private Phase phase;
+	
+	/** The id of the current round. */
+	private long roundId;
+	
+	/** The {@link System#nanoTime()} instant at which the current phase ends, if it ends on time. */
+	private long phaseEndNanos;
+	
+	/** The {@link System#nanoTime()} instant at which the current round started. */
+	private long startNanos;
+	
+	/** The {@link System#nanoTime()} instant of the previous tick of the round, or 0 before the first one. */
+	private long previousTickNanos;
+	
+	/** The {@link System#nanoTime()} instant of the next tick. */
+	private long nextTickNanos;
+	
+	/** The number of the connections accepted so far. */
+	private long acceptedCount;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new room with a leaderboard of its own and binds it to the
+	 * address of its settings. The room starts playing once it is attached to
+	 * a loop.
+	 * 
+	 * @param config the settings of the room
+	 * @param crashSource supplies the crash multipliers of the rounds
+	 * @throws IOException if the room could not be bound
+	 */
+	public GameRoom(RoomConfig config, CrashSource crashSource) throws IOException {
+		this(config, crashSource, new Leaderboard(Leaderboard.DEFAULT_SIZE));
+	}
+	
+	/**
+	 * Constructs a new room and binds it to the address of its settings. The
+	 * room starts playing once it is attached to a loop.
+	 * 
+	 * @param config the settings of the room
+	 * @param crashSource supplies the crash multipliers of the rounds
+	 * @param leaderboard the statistics of the players, possibly shared with other rooms
+	 * @throws IOException if the room could not be bound
+	 */
+	public GameRoom(RoomConfig config, CrashSource crashSource, Leaderboard leaderboard) throws IOException {
+		this.config = config;
+		this.crashSource = crashSource;
+		this.leaderboard = leaderboard;
+		this.engine = new RoundEngine(config.getCapacity(), this);
+		this.players = new Connection[config.getCapacity()];
+		
+		this.serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(config.getAddress(), 1024);
+		serverChannel.configureBlocking(false);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/** @return the settings of the room */
+	public RoomConfig getConfig() {
+		return config;
+	}
+	
+	/** @return the name of the room */
+	public String getName() {
+		return config.getName();
+	}
+	
+	/** @return the address the room listens on */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+	
+	/** @return the statistics of the players of the room */
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}
+	
+	/** @return the loop that drives the room, or {@code null} while the room is detached */
+	public EventLoop getLoop() {
+		return loop;
+	}
+	
+	/**
+	 * Closes the channel of the room and all of the connections; closing
+	 * twice does no harm. Only called by the loop that drives the room, or
+	 * when no loop does.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		serverChannel.close();
+		for(Connection connection : connections) {
+			connection.channel.close();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return config.toString();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							LOOP INTERFACE
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Attaches the room to the given loop: its channels are registered with
+	 * the selector of the loop, and the first betting phase begins if the
+	 * room has never been attached before. Called on the thread of the loop.
+	 * 
+	 * @param loop the loop that drives the room from now on
+	 * @param selector the selector of the loop
+	 * @param metrics the metrics of the loop
+	 * @throws IOException if a channel could not be registered
+	 */
+	void attach(EventLoop loop, Selector selector, ShardMetrics metrics) throws IOException {
+		this.metrics = metrics;
+		engine.setRecorder(metrics.getRecorder());
+		serverKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT, this);
+		
+		// Iterated backwards, since a connection that fails is removed on the spot.
+		for(int i = connections.size() - 1; i >= 0; i--) {
+			Connection connection = connections.get(i);
+			try {
+				connection.key = connection.channel.register(selector, interestOf(connection), connection);
+			} catch (IOException e) {
+				disconnect(connection);
+			}
+		}
+		metrics.addConnections(connections.size());
+		this.loop = loop;
+		
+		if(phase == null) {
+			beginBetting(System.nanoTime());
+		}
+		// The multiplier moved on while the room was detached, so the spectators start over.
+		for(Connection spectator : spectators) {
+			spectator.keyframeNeeded = true;
+		}
+	}
+	
+	/**
+	 * Detaches the room from its loop: the pending output is written and the
+	 * channels are deregistered. A running round keeps running, since its
+	 * multiplier follows the clock, but it is not ticked and no cash-out is
+	 * received until the room is attached again; the first tick after that
+	 * catches up, and may settle the crash right away. Called on the thread
+	 * of the loop.
+	 */
+	void detach() {
+		flushDirty();
+		
+		loop = null;
+		serverKey.cancel();
+		for(Connection connection : connections) {
+			connection.key.cancel();
+		}
+		metrics.addConnections(-connections.size());
+		metrics = null;
+	}
+	
+	/**
+	 * Accepts all of the pending connections.
+	 */
+	@Override
+	public void handle(SelectionKey key) {
+		if(!key.isValid()) return;
+		
+		try {
+			SocketChannel channel;
+			while((channel = serverChannel.accept()) != null) {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				
+				Connection connection = new Connection(channel, config.getStartingBankroll(),
+													   leaderboard.player(config.getName() + "#" + ++acceptedCount));
+				connection.key = channel.register(key.selector(), SelectionKey.OP_READ, connection);
+				connection.index = connections.size();
+				connections.add(connection);
+				metrics.addConnections(1);
+				
+				message.clear();
+				Protocol.writeWelcome(message, connection.bankroll);
+				send(connection);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not accept a connection: " + e.getMessage());
+		}
+	}
+	
+	/** @return the instant at which the loop has to advance the round */
+	long nextDeadline() {
+		return phase == Phase.RUNNING ? nextTickNanos : phaseEndNanos;
+	}
+	
+	/**
+	 * Advances the round to the given instant.
+	 * 
+	 * @param now the current {@link System#nanoTime()} instant
+	 */
+	void advance(long now) {
+		switch(phase) {
+			case BETTING:
+				if(now >= phaseEndNanos) startRound(now);
+				break;
+			case RUNNING:
+				if(now >= nextTickNanos) tick(now);
+				break;
+			case CRASHED:
+				if(now >= phaseEndNanos) beginBetting(now);
+				break;
+		}
+	}
+	
+	/**
+	 * Writes the output of all of the connections that got messages during
+	 * the current iteration of the loop.
+	 */
+	void flushDirty() {
+		for(int i = 0, n = dirty.size(); i < n; i++) {
+			Connection connection = dirty.get(i);
+			connection.dirty = false;
+			if(connection.index < 0) continue;
+			
+			try {
+				flush(connection);
+			} catch (IOException e) {
+				disconnect(connection);
+			}
+		}
+		dirty.clear();
+	}
+	
+	/** @return whether the room has already been attached to a loop once */
+	boolean isStarted() {
+		return phase != null;
+	}
+	
+	/** @return the number of open connections */
+	int getConnectionCount() {
+		return connections.size();
+	}
+	
+	//-----------------------------------------------------------------------
+	//								ROUNDS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Clears the previous round and starts accepting the bets for the next one.
+	 */
+	private void beginBetting(long now) {
+		for(int slot = 0, count = engine.getPlayerCount(); slot < count; slot++) {
+			if(players[slot] != null) {
+				players[slot].slot = -1;
+				players[slot].cashOutRequested = false;
+				players[slot] = null;
+			}
+		}
+		engine.reset();
+		
+		roundId++;
+		phase = Phase.BETTING;
+		phaseEndNanos = now + TimeUnit.MILLISECONDS.toNanos(config.getBettingMillis());
+		
+		message.clear();
+		Protocol.writeBetting(message, roundId, config.getBettingMillis());
+		broadcast();
+	}
+	
+	/**
+	 * Starts the round with the bets placed so far.
+	 */
+	private void startRound(long now) {
+		engine.start(crashSource.nextCrashMilli(), now);
+		
+		phase = Phase.RUNNING;
+		startNanos = now;
+		nextTickNanos = now;
+		frameMilli = engine.getMultiplierMilli();
+		
+		message.clear();
+		Protocol.writeStarted(message, roundId);
+		broadcast();
+	}
+	
+	/**
+	 * Performs a single tick of the round. Ticks stay on the grid of the
+	 * tick interval, or come earlier if the engine expects an auto cash-out
+	 * or the crash before the next one.
+	 */
+	private void tick(long now) {
+		metrics.recordTick(now - nextTickNanos);
+		boolean running = engine.tick(now);
+		
+		long multiplier = engine.getMultiplierMilli();
+		if(running && multiplier != frameMilli) {
+			broadcastFrame(multiplier);
+		}
+		metrics.getRecorder().recordTick(previousTickNanos, now);
+		previousTickNanos = running ? now : 0;
+		if(!running) return;
+		
+		long interval = config.getTickIntervalNanos();
+		long elapsed = now - startNanos;
+		long next = Math.min((elapsed / interval + 1) * interval, engine.getNextEventNanos());
+		nextTickNanos = startNanos + next;
+	}
+	
+	@Override
+	public void cashedOut(int slot, long bet, long multiplierMilli, long payout) {
+		Connection connection = players[slot];
+		if(connection == null) return;
+		
+		connection.bankroll = FixedPoint.addSaturated(connection.bankroll, payout);
+		leaderboard.recordCashOut(connection.stats, multiplierMilli, payout);
+		
+		message.clear();
+		Protocol.writeCashedOut(message, multiplierMilli, payout, connection.bankroll);
+		send(connection);
+	}
+	
+	@Override
+	public void crashed(long crashMilli) {
+		phase = Phase.CRASHED;
+		phaseEndNanos = System.nanoTime() + PAUSE_NANOS;
+		metrics.countRound();
+		
+		message.clear();
+		Protocol.writeCrashed(message, crashMilli);
+		broadcast();
+	}
+	
+	//-----------------------------------------------------------------------
+	//								NETWORK
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Reads and handles all of the complete messages that have arrived.
+	 */
+	private void read(Connection connection) throws IOException {
+		ByteBuffer input = connection.input;
+		if(connection.channel.read(input) < 0) {
+			disconnect(connection);
+			return;
+		}
+		
+		input.flip();
+		while(input.hasRemaining()) {
+			int size = Protocol.messageSize(input);
+			if(size < 0) {
+				System.err.println("Unknown message type " + input.get(input.position()) + ", disconnecting the client.");
+				disconnect(connection);
+				return;
+			}
+			if(size == 0) break;
+			
+			metrics.countMessage();
+			byte type = input.get();
+			switch(type) {
+				case Protocol.BET:
+					placeBet(connection, input.getLong(), input.getLong());
+					break;
+				case Protocol.CASH_OUT:
+					cashOut(connection);
+					break;
+				case Protocol.SPECTATE:
+					spectate(connection);
+					break;
+				default:
+					System.err.println("Unexpected message type " + type + ", disconnecting the client.");
+					disconnect(connection);
+					return;
+			}
+			if(!connection.channel.isOpen()) return;
+		}
+		input.compact();
+	}
+	
+	/**
+	 * Places the bet of a connection on the next round.
+	 */
+	private void placeBet(Connection connection, long bet, long autoCashOutMilli) {
+		byte rejection = 0;
+		
+		if(phase != Phase.BETTING) {
+			rejection = Protocol.REJECTED_RUNNING;
+		} else if(connection.slot >= 0) {
+			rejection = Protocol.REJECTED_DUPLICATE;
+		} else if(bet > config.getMaxBet()) {
+			rejection = Protocol.REJECTED_INVALID;
+		} else if(bet > connection.bankroll) {
+			rejection = Protocol.REJECTED_FUNDS;
+		} else {
+			try {
+				connection.slot = engine.placeBet(bet, autoCashOutMilli);
+			} catch (IllegalArgumentException e) {
+				rejection = Protocol.REJECTED_INVALID;
+			} catch (IllegalStateException e) {
+				rejection = Protocol.REJECTED_FULL;
+			}
+		}
+		
+		message.clear();
+		if(rejection != 0) {
+			Protocol.writeBetRejected(message, rejection);
+		} else {
+			players[connection.slot] = connection;
+			connection.bankroll -= bet;
+			metrics.countBet();
+			leaderboard.recordBet(connection.stats, bet);
+			Protocol.writeBetAccepted(message, bet, connection.bankroll);
+		}
+		send(connection);
+	}
+	
+	/**
+	 * Requests the cash-out of a connection. The next tick is brought forward,
+	 * so the client does not wait for it; the cash-out itself is settled at the
+	 * multiplier of this very instant either way.
+	 */
+	private void cashOut(Connection connection) {
+		if(phase != Phase.RUNNING || connection.slot < 0) return;
+		// Repeats would take the queue space of the other players and force a tick each.
+		if(connection.cashOutRequested || engine.getCashOutMilli(connection.slot) != 0) return;
+		
+		if(engine.requestCashOut(connection.slot)) {
+			connection.cashOutRequested = true;
+			nextTickNanos = System.nanoTime();
+		}
+	}
+	
+	/**
+	 * Subscribes a connection to the tick frames, starting with a keyframe.
+	 */
+	private void spectate(Connection connection) {
+		if(connection.spectatorIndex >= 0) return;
+		
+		connection.spectatorIndex = spectators.size();
+		connection.keyframeNeeded = true;
+		spectators.add(connection);
+	}
+	
+	/**
+	 * Encodes the frames of the given multiplier once, and writes them to
+	 * all of the spectators: the keyframe to those that missed frames, the
+	 * tick to the rest.
+	 */
+	private void broadcastFrame(long multiplierMilli) {
+		tickFrame.clear();
+		Protocol.writeFrame(tickFrame, Protocol.TICK, multiplierMilli - frameMilli);
+		sharedTickFrame.limit(tickFrame.position());
+		
+		keyFrame.clear();
+		Protocol.writeFrame(keyFrame, Protocol.KEYFRAME, multiplierMilli);
+		sharedKeyFrame.limit(keyFrame.position());
+		
+		frameMilli = multiplierMilli;
+		
+		// Iterated backwards, since a connection that fails is removed on the spot.
+		for(int i = spectators.size() - 1; i >= 0; i--) {
+			Connection spectator = spectators.get(i);
+			writeFrame(spectator, spectator.keyframeNeeded ? sharedKeyFrame : sharedTickFrame);
+		}
+	}
+	
+	/**
+	 * Writes the pending messages of the spectator and the shared frame in a
+	 * single gathering write. A spectator whose socket did not take all of
+	 * its previous output skips the frame.
+	 */
+	private void writeFrame(Connection spectator, ByteBuffer frame) {
+		if((spectator.key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+			spectator.keyframeNeeded = true;
+			return;
+		}
+		
+		ByteBuffer output = spectator.output;
+		frame.position(0);
+		output.flip();
+		spectator.gather[0] = output;
+		spectator.gather[1] = frame;
+		try {
+			spectator.channel.write(spectator.gather);
+		} catch (IOException e) {
+			disconnect(spectator);
+			return;
+		}
+		output.compact();
+		
+		spectator.keyframeNeeded = frame.hasRemaining();
+		if(frame.hasRemaining() && frame.position() > 0) {
+			// A frame cut in half has to be finished; this is the only copy of a frame ever made.
+			output.put(frame);
+		}
+		updateInterest(spectator);
+	}
+	
+	/**
+	 * Sends the encoded {@link #message} to all of the connections.
+	 */
+	private void broadcast() {
+		message.flip();
+		
+		// Iterated backwards, since a connection that is too slow is removed on the spot.
+		for(int i = connections.size() - 1; i >= 0; i--) {
+			message.rewind();
+			enqueue(connections.get(i));
+		}
+	}
+	
+	/**
+	 * Sends the encoded {@link #message} to a single connection.
+	 */
+	private void send(Connection connection) {
+		message.flip();
+		enqueue(connection);
+	}
+	
+	/**
+	 * Appends the message to the output of the connection, which is written
+	 * at the end of the current iteration of the loop.
+	 */
+	private void enqueue(Connection connection) {
+		if(connection.output.remaining() < message.remaining()) {
+			System.err.println("Client " + connection.address() + " is too slow, disconnecting it.");
+			disconnect(connection);
+			return;
+		}
+		
+		connection.output.put(message);
+		if(!connection.dirty) {
+			connection.dirty = true;
+			dirty.add(connection);
+		}
+	}
+	
+	/**
+	 * Writes the pending output of the connection, as much as the socket takes.
+	 */
+	private void flush(Connection connection) throws IOException {
+		ByteBuffer output = connection.output;
+		if(output.position() > 0) {
+			output.flip();
+			connection.channel.write(output);
+			output.compact();
+		}
+		updateInterest(connection);
+	}
+	
+	/**
+	 * Makes the connection interested in the socket being writable only while
+	 * some output is left.
+	 */
+	private void updateInterest(Connection connection) {
+		int ops = interestOf(connection);
+		if(connection.key.interestOps() != ops) {
+			connection.key.interestOps(ops);
+		}
+	}
+	
+	private static int interestOf(Connection connection) {
+		return connection.output.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+	}
+	
+	/**
+	 * Closes the connection. A bet it placed stays in the round and is lost.
+	 */
+	private void disconnect(Connection connection) {
+		if(connection.index < 0) return;
+		
+		// Swap-remove, so a disconnect does not shift the whole list.
+		Connection last = connections.remove(connections.size() - 1);
+		if(last != connection) {
+			connections.set(connection.index, last);
+			last.index = connection.index;
+		}
+		connection.index = -1;
+		if(metrics != null) metrics.addConnections(-1);
+		
+		if(connection.spectatorIndex >= 0) {
+			Connection lastSpectator = spectators.remove(spectators.size() - 1);
+			if(lastSpectator != connection) {
+				spectators.set(connection.spectatorIndex, lastSpectator);
+				lastSpectator.spectatorIndex = connection.spectatorIndex;
+			}
+			connection.spectatorIndex = -1;
+		}
+		
+		if(connection.slot >= 0) {
+			players[connection.slot] = null;
+			connection.slot = -1;
+		}
+		
+		if(connection.key != null) connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException ignorable) {
+		}
+	}
+	
+	/**
+	 * A single client connection.
+	 */
+	private final class Connection implements EventLoop.Handler {
+		
+		/** The socket of the client. */
+		final SocketChannel channel;
+		
+		/** The received bytes that do not yet form a whole message. */
+		final ByteBuffer input = ByteBuffer.allocate(Protocol.MAX_MESSAGE_SIZE * 16);
+		
+		/** The bytes waiting to be written, in write mode. */
+		final ByteBuffer output = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+		
+		/** The output and the shared frame of a gathering write; reused. */
+		final ByteBuffer[] gather = new ByteBuffer[2];
+		
+		/** The key of the channel in the selector of the current loop. */
+		SelectionKey key;
+		
+		/** The position in the list of the connections, or -1 once closed. */
+		int index;
+		
+		/** The player's slot in the current round, or -1 if the player has no bet. */
+		int slot = -1;
+		
+		/** Flag that indicates if the player's cash-out request of the current round was accepted. */
+		boolean cashOutRequested;
+		
+		/** The position in the list of the spectators, or -1 if not spectating. */
+		int spectatorIndex = -1;
+		
+		/** Flag that indicates if the spectator missed frames, so the next one has to be a keyframe. */
+		boolean keyframeNeeded;
+		
+		/** Flag that indicates if the connection is in the list of the dirty connections. */
+		boolean dirty;
+		
+		/** The player's bank-roll. */
+		long bankroll;
+		
+		/** The player's statistics. */
+		final Leaderboard.PlayerStats stats;
+		
+		Connection(SocketChannel channel, long bankroll, Leaderboard.PlayerStats stats) {
+			this.channel = channel;
+			this.bankroll = bankroll;
+			this.stats = stats;
+		}
+		
+		/**
+		 * Reads from or writes to the connection.
+		 */
+		@Override
+		public void handle(SelectionKey key) {
+			if(!key.isValid()) return;
+			
+			try {
+				if(key.isReadable()) read(this);
+				if(key.isValid() && key.isWritable()) flush(this);
+				
+			} catch (IOException e) {
+				disconnect(this);
+			}
+		}
+		
+		/** @return the address of the client, for the log */
+		String address() {
+			try {
+				return String.valueOf(channel.getRemoteAddress());
+			} catch (IOException e) {
+				return "?";
+			}
+		}
+	}
+}
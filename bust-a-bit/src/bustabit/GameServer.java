@@ -0,0 +1,94 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A headless game server: a single {@link GameRoom} driven by its own
+ * {@link EventLoop}, on the calling thread. A machine hosting several rooms
+ * runs a {@link RoomManager} instead.
+ * 
+ * @author FICHEKK
+ */
+public class GameServer implements Closeable {
+	
+	/** The time in which the bets for the next round are accepted. */
+	private static final int BETTING_MILLIS = Integer.getInteger("bustabit.server.betting", 5000);
+	
+	/** The time between two consecutive ticks in nanoseconds. */
+	private static final long TICK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	/** The loop that drives the room. */
+	private final EventLoop loop;
+	
+	/** The room of the server. */
+	private final GameRoom room;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new server and binds it to the given address.
+	 * 
+	 * @param address the address to listen on
+	 * @param crashSource supplies the crash multipliers of the rounds
+	 * @param capacity the maximum number of players in a round
+	 * @param startingBankroll the bank-roll of a new connection
+	 * @throws IOException if the server could not be bound
+	 */
+	public GameServer(InetSocketAddress address, CrashSource crashSource, int capacity, long startingBankroll) throws IOException {
+		RoomConfig config = new RoomConfig("server", address, capacity, startingBankroll, BETTING_MILLIS, TICK_INTERVAL, Long.MAX_VALUE);
+		this.room = new GameRoom(config, crashSource);
+		this.loop = new EventLoop("server");
+		loop.attach(room);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Runs the server on the calling thread until it is closed.
+	 * 
+	 * @throws IOException if the selector fails
+	 */
+	public void run() throws IOException {
+		loop.run();
+	}
+	
+	/**
+	 * Stops the server and closes all of the connections. May be called
+	 * from any thread; a running loop is woken up and closes them itself,
+	 * so they are never closed under its hands.
+	 */
+	@Override
+	public void close() throws IOException {
+		loop.close();
+	}
+	
+	/** @return the address the server listens on */
+	public InetSocketAddress getAddress() throws IOException {
+		return room.getAddress();
+	}
+	
+	/**
+	 * Runs a server until the process is terminated.
+	 * 
+	 * @param args the port to listen on, {@value Protocol#DEFAULT_PORT} by default
+	 * @throws IOException if the server could not be started
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : Protocol.DEFAULT_PORT;
+		int capacity = Integer.getInteger("bustabit.server.capacity", 10_000);
+		long bankroll = Long.getLong("bustabit.server.bankroll", 10_000);
+		Metrics.start();
+		
+		try(GameServer server = new GameServer(new InetSocketAddress(port), CrashSource.configured(), capacity, bankroll)) {
+			System.out.println("Listening on " + server.getAddress() + ", up to " + capacity + " players per round.");
+			server.run();
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.stream.LongStream;
+
+/**
+ * Provably fair source of crash multipliers, backed by a precomputed
+ * SHA-256 hash chain.
+ * <p>
+ * The chain is generated from a secret seed by hashing it over and over;
+ * the rounds then use the hashes in the reverse order. Every revealed hash
+ * therefore hashes to the hash of the previous round, and the first round's
+ * hash hashes to the <i>terminating hash</i>, which can be published before
+ * any round is played. Nobody can compute the hash of a future round from
+ * the revealed ones, yet anybody can check that a revealed round was fixed
+ * in advance.
+ * <p>
+ * The crash multiplier of a round is derived from the first 52 bits of its
+ * hash, which are mapped to a uniform value in {@code [0, 1)} and then
+ * through the same distribution as {@link GameManager#crashMilli(double)}.
+ * <p>
+ * The chain file holds a small header followed by the hashes in the order
+ * they are played:
+ * 
+ * <pre>
+ * | magic | version | count | next round | terminating hash | hashes... |
+ * </pre>
+ * 
+ * The position of the next round is kept in the header, so a round only
+ * reads the next hash and stores the new position; no digest is computed
+ * while playing.
+ * 
+ * @author FICHEKK
+ */
+public class HashChain implements CrashSource, Closeable {
+	
+	/** The value that every chain file starts with ("BABH"). */
+	public static final int MAGIC = 0x42414248;
+	
+	/** The current version of the chain format. */
+	public static final int VERSION = 1;
+	
+	/** The size of a single hash in bytes. */
+	public static final int HASH_SIZE = 32;
+	
+	/** The offset of the number of hashes in the header. */
+	private static final int COUNT_OFFSET = 8;
+	
+	/** The offset of the position of the next round in the header. */
+	private static final int NEXT_OFFSET = 16;
+	
+	/** The offset of the terminating hash in the header. */
+	private static final int TERMINATING_OFFSET = 24;
+	
+	/** The size of the chain header in bytes. */
+	public static final int HEADER_SIZE = TERMINATING_OFFSET + HASH_SIZE;
+	
+	/** The number of hashes that a verification task checks without splitting. */
+	private static final int VERIFY_CHUNK = 1 << 16;
+	
+	/** The number of hashes that are generated before they are written out. */
+	private static final int GENERATE_BATCH = 1 << 16;
+	
+	/** The channel of the chain file. */
+	private final FileChannel channel;
+	
+	/** The number of hashes in the chain. */
+	private final long count;
+	
+	/** The position of the next round in the chain. */
+	private long next;
+	
+	/** Reusable buffer for the hash of the next round. */
+	private final ByteBuffer hash = ByteBuffer.allocate(HASH_SIZE);
+	
+	/** Reusable buffer for the position of the next round. */
+	private final ByteBuffer position = ByteBuffer.allocate(Long.BYTES);
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Opens the chain at the given path, continuing from the round after
+	 * the last played one.
+	 * 
+	 * @param path the path of the chain file
+	 * @throws IOException if the chain could not be opened or if the file
+	 * 		   is not a hash chain
+	 */
+	public HashChain(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		try {
+			ByteBuffer header = readHeader(channel, path);
+			count = header.getLong(COUNT_OFFSET);
+			next = header.getLong(NEXT_OFFSET);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Returns the crash multiplier of the next round and moves on to the
+	 * round after it.
+	 * 
+	 * @return the crash multiplier in thousandths
+	 * @throws IllegalStateException if all of the rounds of the chain were played
+	 * @throws UncheckedIOException if the chain could not be read or updated
+	 */
+	@Override
+	public synchronized long nextCrashMilli() {
+		if(next >= count) throw new IllegalStateException("The hash chain is exhausted.");
+		
+		try {
+			hash.clear();
+			readFully(channel, hash, HEADER_SIZE + next * HASH_SIZE);
+			
+			next++;
+			position.clear();
+			position.putLong(0, next);
+			while(position.hasRemaining()) {
+				channel.write(position, NEXT_OFFSET + position.position());
+			}
+			
+			return crashMilli(hash.array(), 0);
+			
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read the next round of the hash chain.", e);
+		}
+	}
+	
+	/** @return the number of rounds that have not been played yet */
+	public synchronized long remaining() {
+		return count - next;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							 STATIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Derives the crash multiplier from a round's hash.
+	 * 
+	 * @param hash the array that holds the hash
+	 * @param offset the offset of the hash in the array
+	 * @return the crash multiplier in thousandths
+	 */
+	public static long crashMilli(byte[] hash, int offset) {
+		long bits = 0;
+		for(int i = 0; i < Long.BYTES; i++) {
+			bits = bits << 8 | (hash[offset + i] & 0xFF);
+		}
+		
+		double uniform = (bits >>> 12) / (double) (1L << 52);
+		return GameManager.crashMilli(uniform);
+	}
+	
+	/**
+	 * Generates a new chain. The file is first written to a temporary file
+	 * and then moved to its final location.
+	 * 
+	 * @param path the path of the chain file
+	 * @param count the number of rounds in the chain
+	 * @param seed the secret seed that the chain is generated from
+	 * @return the terminating hash, which should be published
+	 * @throws IOException if the chain could not be written
+	 */
+	public static byte[] generate(Path path, long count, byte[] seed) throws IOException {
+		if(count <= 0) throw new IllegalArgumentException("Chain must have at least one round.");
+		
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		MessageDigest digest = sha256();
+		
+		byte[] batch = new byte[GENERATE_BATCH * HASH_SIZE];
+		byte[] current = digest.digest(seed);
+		byte[] terminating;
+		
+		try(FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE,
+												  StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			
+			// The hashes are generated from the last round to the first, so
+			// every batch is stored back to front, ending where the previous one started.
+			long end = count;
+			while(end > 0) {
+				int size = (int) Math.min(GENERATE_BATCH, end);
+				
+				for(int i = size - 1; i >= 0; i--) {
+					System.arraycopy(current, 0, batch, i * HASH_SIZE, HASH_SIZE);
+					if(i > 0 || end > size) {
+						hash(digest, batch, i * HASH_SIZE, current);
+					}
+				}
+				
+				end -= size;
+				writeFully(target, ByteBuffer.wrap(batch, 0, size * HASH_SIZE), HEADER_SIZE + end * HASH_SIZE);
+			}
+			
+			terminating = new byte[HASH_SIZE];
+			hash(digest, batch, 0, terminating);
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(0).put(terminating).flip();
+			writeFully(target, header, 0);
+			target.force(true);
+		}
+		
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return terminating;
+	}
+	
+	/**
+	 * Verifies the whole chain in parallel: every hash must hash to the hash
+	 * of the round before it, and the first one to the terminating hash.
+	 * 
+	 * @param path the path of the chain file
+	 * @return the position of the first round that does not verify, or
+	 * 		   {@code -1} if the whole chain is valid
+	 * @throws IOException if the chain could not be read
+	 */
+	public static long verify(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = readHeader(channel, path);
+			long count = header.getLong(COUNT_OFFSET);
+			byte[] terminating = Arrays.copyOfRange(header.array(), TERMINATING_OFFSET, TERMINATING_OFFSET + HASH_SIZE);
+			
+			long chunks = (count + VERIFY_CHUNK - 1) / VERIFY_CHUNK;
+			
+			OptionalLong broken = LongStream.range(0, chunks)
+											.parallel()
+											.map(chunk -> verifyChunk(channel, terminating, chunk * VERIFY_CHUNK,
+																	  Math.min(count, (chunk + 1) * VERIFY_CHUNK)))
+											.filter(position -> position >= 0)
+											.min();
+			
+			return broken.orElse(-1);
+		}
+	}
+	
+	/**
+	 * Generates or verifies a chain, printing the throughput.
+	 * <pre>
+	 * generate &lt;path&gt; &lt;rounds&gt; [seed-hex]
+	 * verify &lt;path&gt;
+	 * </pre>
+	 * 
+	 * @param args the command and its arguments
+	 * @throws IOException if the chain could not be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length >= 3 && args[0].equals("generate")) {
+			Path path = Paths.get(args[1]);
+			long rounds = Long.parseLong(args[2].replace("_", ""));
+			
+			byte[] seed = new byte[HASH_SIZE];
+			if(args.length > 3) {
+				seed = parseHex(args[3]);
+			} else {
+				new SecureRandom().nextBytes(seed);
+			}
+			
+			long start = System.nanoTime();
+			byte[] terminating = generate(path, rounds, seed);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			
+			System.out.println(String.format("Generated %,d hashes in %.2f s (%,.0f hashes/s)", rounds, seconds, rounds / seconds));
+			System.out.println("Terminating hash: " + toHex(terminating));
+			
+		} else if(args.length >= 2 && args[0].equals("verify")) {
+			Path path = Paths.get(args[1]);
+			
+			long start = System.nanoTime();
+			long broken = verify(path);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			
+			long rounds;
+			try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				rounds = readHeader(channel, path).getLong(COUNT_OFFSET);
+			}
+			
+			System.out.println(String.format("Verified %,d hashes in %.2f s (%,.0f hashes/s)", rounds, seconds, rounds / seconds));
+			System.out.println(broken < 0 ? "The chain is valid." : "The chain is broken at round " + broken + ".");
+			
+		} else {
+			System.out.println("Usage: HashChain generate <path> <rounds> [seed-hex]");
+			System.out.println("       HashChain verify <path>");
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Verifies the rounds in {@code [from, to)}, together with the link of
+	 * the first one to the round before it.
+	 */
+	private static long verifyChunk(FileChannel channel, byte[] terminating, long from, long to) {
+		MessageDigest digest = sha256();
+		int size = (int) (to - from);
+		int extra = from == 0 ? 0 : 1;
+		
+		// The chunk is read together with the hash of the round before it.
+		byte[] hashes = new byte[(size + extra) * HASH_SIZE];
+		byte[] expected = new byte[HASH_SIZE];
+		
+		try {
+			readFully(channel, ByteBuffer.wrap(hashes), HEADER_SIZE + (from - extra) * HASH_SIZE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read the hash chain.", e);
+		}
+		
+		for(int i = 0; i < size; i++) {
+			int offset = (i + extra) * HASH_SIZE;
+			hash(digest, hashes, offset, expected);
+			
+			boolean valid = from + i == 0
+						  ? Arrays.equals(expected, terminating)
+						  : Arrays.equals(expected, 0, HASH_SIZE, hashes, offset - HASH_SIZE, offset);
+			
+			if(!valid) return from + i;
+		}
+		
+		return -1;
+	}
+	
+	private static void hash(MessageDigest digest, byte[] input, int offset, byte[] output) {
+		digest.update(input, offset, HASH_SIZE);
+		try {
+			digest.digest(output, 0, HASH_SIZE);
+		} catch (DigestException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static ByteBuffer readHeader(FileChannel channel, Path path) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		
+		if(header.getInt(0) != MAGIC) throw new IOException("'" + path + "' is not a hash chain.");
+		if(header.getInt(4) != VERSION) throw new IOException("Unsupported hash chain version " + header.getInt(4) + ".");
+		
+		long count = header.getLong(COUNT_OFFSET);
+		if(channel.size() < HEADER_SIZE + count * HASH_SIZE) throw new IOException("Hash chain '" + path + "' is truncated.");
+		
+		return header;
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if(read < 0) throw new IOException("Unexpected end of the hash chain.");
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+	
+	private static byte[] parseHex(String hex) {
+		byte[] bytes = new byte[hex.length() / 2];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		return bytes;
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			sb.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
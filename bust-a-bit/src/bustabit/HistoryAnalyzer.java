@@ -0,0 +1,160 @@
+package bustabit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a round history into a {@link RoundStatistics}, one round at a
+ * time, so the history is never loaded into memory as a whole. All of the
+ * history formats are supported: the directory of a
+ * {@link SegmentedRoundStore} is read segment by segment, the binary
+ * {@link RoundJournal} through a {@link RoundJournalReader}, and the legacy
+ * text file line by line.
+ * 
+ * @author FICHEKK
+ */
+public final class HistoryAnalyzer {
+	
+	/** Utility class, no instances. */
+	private HistoryAnalyzer() {
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Computes the statistics of the history at the given path.
+	 * 
+	 * @param path the path of a round store directory, of a round journal or
+	 * 		  of a legacy text history
+	 * @return the statistics of the history
+	 * @throws IOException if the history could not be read
+	 */
+	public static RoundStatistics analyze(Path path) throws IOException {
+		RoundStatistics statistics = new RoundStatistics();
+		analyze(path, statistics);
+		return statistics;
+	}
+	
+	/**
+	 * Streams the history at the given path into the given visitor. The
+	 * format of the file is recognized by its header.
+	 * 
+	 * @param path the path of a round store directory, of a round journal or
+	 * 		  of a legacy text history
+	 * @param visitor receives the rounds, in the order they were played
+	 * @return the number of visited rounds
+	 * @throws IOException if the history could not be read
+	 */
+	public static long analyze(Path path, RoundJournalReader.RoundVisitor visitor) throws IOException {
+		if(Files.isDirectory(path)) {
+			try(SegmentedRoundStore store = SegmentedRoundStore.openReadOnly(path)) {
+				store.forEach(0, visitor);
+				return store.size();
+			}
+		}
+		
+		if(isJournal(path)) {
+			try(RoundJournalReader reader = new RoundJournalReader(path)) {
+				reader.forEach(visitor);
+				return reader.size();
+			}
+		}
+		return readText(path, visitor);
+	}
+	
+	/**
+	 * Streams a legacy text history into the given visitor. Malformed lines
+	 * are reported and skipped.
+	 * 
+	 * @param path the path of the text history
+	 * @param visitor receives the rounds, in the order they were played
+	 * @return the number of visited rounds
+	 * @throws IOException if the history could not be read
+	 */
+	public static long readText(Path path, RoundJournalReader.RoundVisitor visitor) throws IOException {
+		long index = 0;
+		
+		try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				Round round = parseRound(line);
+				if(round == null) continue;
+				
+				visitor.visit(index++, round.getBet(), round.getCashOutMilli(), round.getCrashMilli());
+			}
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Parses a single line of a legacy text history. Malformed lines are reported.
+	 * 
+	 * @param line the line of the text history
+	 * @return the round, or {@code null} if the line is empty, the header or malformed
+	 */
+	static Round parseRound(String line) {
+		line = line.trim();
+		if(line.isEmpty() || line.startsWith("BET")) return null;
+		
+		// Format: "bet cash-out crash profit", where the cash-out is "-" for a loss.
+		int first = line.indexOf(' ');
+		int second = first < 0 ? -1 : line.indexOf(' ', first + 1);
+		if(second < 0) {
+			System.err.println("Skipping malformed round '" + line + "'.");
+			return null;
+		}
+		int third = line.indexOf(' ', second + 1);
+		
+		try {
+			long bet = Long.parseLong(line.substring(0, first));
+			String cashOut = line.substring(first + 1, second);
+			long cashOutMilli = cashOut.equals("-") ? 0 : RoundJournal.parseMilli(cashOut);
+			long crashMilli = RoundJournal.parseMilli(line.substring(second + 1, third < 0 ? line.length() : third));
+			return new Round(bet, cashOutMilli, crashMilli);
+			
+		} catch (NumberFormatException | ArithmeticException e) {
+			System.err.println("Skipping malformed round '" + line + "'.");
+			return null;
+		}
+	}
+	
+	/**
+	 * Prints the statistics of a round history.
+	 * 
+	 * @param args the path of the history; the round store by default
+	 * @throws IOException if the history could not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		Path path = Paths.get(args.length > 0 ? args[0] : "rounds");
+		
+		long start = System.nanoTime();
+		RoundStatistics statistics = analyze(path);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println(String.format("Analyzed '%s' in %.3f s", path, seconds));
+		System.out.println();
+		System.out.print(statistics);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	static boolean isJournal(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+			while(magic.hasRemaining() && channel.read(magic) >= 0);
+			return !magic.hasRemaining() && magic.getInt(0) == RoundJournal.MAGIC;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package bustabit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads what the game needs from the round history at startup without
+ * reading the history as a whole, so that opening the game takes the same
+ * time whether the history holds a thousand rounds or a hundred million.
+ * <ul>
+ * <li>The latest rounds are read from the end of the history: the rounds
+ * of a {@link RoundHistory} are found by their index, while the legacy text
+ * history is memory-mapped and scanned backwards from its end for line
+ * breaks.</li>
+ * <li>The statistics are saved to a small checkpoint file next to the
+ * history, along with the number of rounds they cover; at startup only the
+ * rounds appended after the checkpoint are replayed.</li>
+ * </ul>
+ * 
+ * @author FICHEKK
+ */
+public final class HistoryTail {
+	
+	/** The magic number at the start of a checkpoint, "BAS1" in ASCII. */
+	private static final int CHECKPOINT_MAGIC = 0x42415331;
+	
+	/** The size of a checkpoint: the magic, the last covered record and the statistics. */
+	private static final int CHECKPOINT_SIZE = Integer.BYTES + RoundJournal.RECORD_SIZE + RoundStatistics.SERIALIZED_SIZE;
+	
+	/** The size of the first window of a text history scanned backwards. */
+	private static final int TEXT_WINDOW = 4096;
+	
+	/** Utility class, no instances. */
+	private HistoryTail() {
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Returns the latest rounds of the history at the given path. The cost
+	 * depends only on the number of requested rounds, not on the size of
+	 * the history.
+	 * 
+	 * @param path the path of a round store directory, of a round journal or
+	 * 		  of a legacy text history
+	 * @param count the maximum number of rounds
+	 * @return the latest rounds, oldest first; empty if the history does not exist
+	 * @throws IOException if the history could not be read
+	 */
+	public static List<Round> lastRounds(Path path, int count) throws IOException {
+		if(count <= 0 || !Files.exists(path)) return new ArrayList<>();
+		
+		if(Files.isDirectory(path)) {
+			try(SegmentedRoundStore store = SegmentedRoundStore.openReadOnly(path)) {
+				return lastRounds(store, count);
+			}
+		}
+		
+		if(HistoryAnalyzer.isJournal(path)) {
+			try(RoundJournalReader reader = new RoundJournalReader(path)) {
+				return lastRounds(reader, count);
+			}
+		}
+		
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return lastTextRounds(channel, count);
+		}
+	}
+	
+	/**
+	 * Returns the latest rounds of the given history.
+	 * 
+	 * @param history the history
+	 * @param count the maximum number of rounds
+	 * @return the latest rounds, oldest first
+	 * @throws IOException if the history could not be read
+	 */
+	public static List<Round> lastRounds(RoundHistory history, int count) throws IOException {
+		List<Round> rounds = new ArrayList<>(Math.max(count, 0));
+		long size = history.size();
+		for(long i = Math.max(0, size - count); i < size; i++) {
+			rounds.add(history.getRound(i));
+		}
+		return rounds;
+	}
+	
+	/**
+	 * Loads the statistics of the given history. The statistics start from
+	 * the checkpoint if it matches the history, and from zero otherwise; the
+	 * rounds that the checkpoint does not cover are then replayed, and the
+	 * checkpoint is brought up to date.
+	 * 
+	 * @param history the round history
+	 * @param checkpoint the path of the checkpoint file
+	 * @return the statistics of the history; empty if the history could not be read
+	 */
+	public static RoundStatistics loadStatistics(RoundHistory history, Path checkpoint) {
+		try {
+			RoundStatistics statistics = readCheckpoint(checkpoint, history);
+			long covered = statistics.getRounds();
+			
+			history.forEach(covered, statistics);
+			if(history.size() > covered) {
+				writeCheckpoint(checkpoint, history, statistics);
+			}
+			return statistics;
+			
+		} catch (IOException e) {
+			System.err.println("Could not read the round history. Statistics start from zero.");
+			return new RoundStatistics();
+		}
+	}
+	
+	/**
+	 * Saves the checkpoint of the given statistics of the given history.
+	 * Nothing is saved if the statistics cover more rounds than the history
+	 * holds, for example because a round could not be written; the next
+	 * start then replays the history from the previous checkpoint.
+	 * 
+	 * @param history the round history
+	 * @param checkpoint the path of the checkpoint file
+	 * @param statistics the statistics of the whole history
+	 */
+	public static void saveStatistics(RoundHistory history, Path checkpoint, RoundStatistics statistics) {
+		try {
+			writeCheckpoint(checkpoint, history, statistics);
+		} catch (IOException e) {
+			System.err.println("Could not save the statistics checkpoint.");
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Reads the checkpoint. A checkpoint is only used if the history holds
+	 * at least the rounds it covers and its last covered round is the one
+	 * in the history; a history that was replaced is thus analyzed anew.
+	 */
+	private static RoundStatistics readCheckpoint(Path checkpoint, RoundHistory history) throws IOException {
+		RoundStatistics statistics = new RoundStatistics();
+		if(!Files.exists(checkpoint)) return statistics;
+		
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+		if(buffer.remaining() != CHECKPOINT_SIZE || buffer.getInt() != CHECKPOINT_MAGIC) {
+			System.err.println("Ignoring the invalid statistics checkpoint '" + checkpoint + "'.");
+			return statistics;
+		}
+		
+		long bet = buffer.getLong();
+		long cashOutMilli = buffer.getLong();
+		long crashMilli = buffer.getLong();
+		statistics.readFrom(buffer);
+		
+		long last = statistics.getRounds() - 1;
+		if(last >= history.size()) return new RoundStatistics();
+		if(last < 0) return statistics;
+		
+		Round round = history.getRound(last);
+		boolean matches = round.getBet() == bet
+					   && round.getCashOutMilli() == cashOutMilli
+					   && round.getCrashMilli() == crashMilli;
+		
+		return matches ? statistics : new RoundStatistics();
+	}
+	
+	/**
+	 * Writes the checkpoint to a temporary file, which is then renamed, so
+	 * a crash leaves either the old or the new checkpoint in place.
+	 */
+	private static void writeCheckpoint(Path checkpoint, RoundHistory history, RoundStatistics statistics) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+		buffer.position(Integer.BYTES + RoundJournal.RECORD_SIZE);
+		statistics.writeTo(buffer);
+		
+		long rounds = buffer.getLong(Integer.BYTES + RoundJournal.RECORD_SIZE);
+		if(rounds > history.size()) return;
+		
+		buffer.putInt(0, CHECKPOINT_MAGIC);
+		if(rounds > 0) {
+			Round last = history.getRound(rounds - 1);
+			buffer.putLong(Integer.BYTES, last.getBet());
+			buffer.putLong(Integer.BYTES + Long.BYTES, last.getCashOutMilli());
+			buffer.putLong(Integer.BYTES + 2 * Long.BYTES, last.getCrashMilli());
+		}
+		
+		Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+		Files.write(temporary, buffer.array());
+		Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Maps an ever larger window at the end of the text history, until it
+	 * holds the requested number of rounds or the whole file. The rounds are
+	 * found by scanning the window backwards for line breaks; the line that
+	 * starts before the window is never parsed.
+	 */
+	private static List<Round> lastTextRounds(FileChannel channel, int count) throws IOException {
+		long size = channel.size();
+		List<Round> rounds = new ArrayList<>(count);
+		
+		for(long window = TEXT_WINDOW; ; window *= 2) {
+			long start = Math.max(0, size - window);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size - start);
+			
+			rounds.clear();
+			int end = buffer.limit();
+			for(int i = end - 1; i >= -1 && rounds.size() < count; i--) {
+				if(i >= 0 && buffer.get(i) != '\n') continue;
+				if(i < 0 && start > 0) break;
+				
+				Round round = parseLine(buffer, i + 1, end);
+				if(round != null) rounds.add(round);
+				end = i;
+			}
+			
+			if(rounds.size() == count || start == 0) break;
+		}
+		
+		Collections.reverse(rounds);
+		return rounds;
+	}
+	
+	private static Round parseLine(MappedByteBuffer buffer, int from, int to) {
+		if(from >= to) return null;
+		
+		byte[] bytes = new byte[to - from];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(from + i);
+		}
+		return HistoryAnalyzer.parseRound(new String(bytes, StandardCharsets.UTF_8));
+	}
+}
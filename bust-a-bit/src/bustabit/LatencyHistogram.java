@@ -0,0 +1,209 @@
+package bustabit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values (typically latencies in nanoseconds)
+ * with a bounded relative error, in the style of HdrHistogram. Values up
+ * to {@code 2^PRECISION_BITS} are counted exactly; above that, every
+ * power-of-two range is split into {@code 2^(PRECISION_BITS - 1)} equal
+ * buckets, so a bucket is never wider than about 1.6% of its values. The
+ * whole range of a long fits into a few thousand buckets.
+ * <p>
+ * Recording is lock-free and allocates nothing, so any number of threads
+ * can record into the same histogram from hot paths; the reads are not
+ * an atomic snapshot, but each count is exact.
+ * 
+ * @author FICHEKK
+ */
+public final class LatencyHistogram {
+	
+	/** The number of significant bits a bucket distinguishes. */
+	private static final int PRECISION_BITS = 7;
+	
+	/** The number of the exactly counted values. */
+	private static final int LINEAR_BUCKETS = 1 << PRECISION_BITS;
+	
+	/** The number of buckets in every power-of-two range above the linear ones. */
+	private static final int HALF = LINEAR_BUCKETS >> 1;
+	
+	/** The number of buckets. */
+	private static final int BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+	
+	/** The number of recorded values in each bucket. */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	
+	/** The number of recorded values. */
+	private final AtomicLong count = new AtomicLong();
+	
+	/** The sum of the recorded values. */
+	private final AtomicLong sum = new AtomicLong();
+	
+	/** The largest recorded value. */
+	private final AtomicLong max = new AtomicLong();
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 * 
+	 * @param value the value to be recorded
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(indexOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		
+		long current;
+		while(value > (current = max.get()) && !max.compareAndSet(current, value));
+	}
+	
+	/**
+	 * Adds all of the values recorded by another histogram to this one, for
+	 * example to sum up the histograms that separate threads record into.
+	 * 
+	 * @param other the histogram whose values are added
+	 */
+	public void add(LatencyHistogram other) {
+		for(int i = 0; i < BUCKETS; i++) {
+			long n = other.counts.get(i);
+			if(n != 0) counts.addAndGet(i, n);
+		}
+		count.addAndGet(other.count.get());
+		sum.addAndGet(other.sum.get());
+		
+		long value = other.max.get();
+		long current;
+		while(value > (current = max.get()) && !max.compareAndSet(current, value));
+	}
+	
+	/**
+	 * Clears all of the recorded values.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+	
+	/** @return the number of recorded values */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/** @return the largest recorded value, or 0 if there are none */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/** @return the mean of the recorded values, or 0 if there are none */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+	
+	/**
+	 * Returns the value at the given percentile: the highest value that is
+	 * equivalent (falls into the same bucket) to the value below which the
+	 * given percentage of the recorded values lies.
+	 * 
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the value at the percentile, or 0 if there are no values
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			n += counts.get(i);
+		}
+		if(n == 0) return 0;
+		
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if(seen >= rank) return Math.min(highestEquivalentValue(i), getMax());
+		}
+		return getMax();
+	}
+	
+	/**
+	 * Summarizes the histogram as a map of the count, the mean, the maximum
+	 * and the usual percentiles, in that order; the form JMX shows it in.
+	 * 
+	 * @return the summary of the histogram
+	 */
+	public Map<String, Long> summary() {
+		Map<String, Long> summary = new LinkedHashMap<>();
+		summary.put("count", getCount());
+		summary.put("mean", Math.round(getMean()));
+		summary.put("p50", getValueAtPercentile(50));
+		summary.put("p90", getValueAtPercentile(90));
+		summary.put("p99", getValueAtPercentile(99));
+		summary.put("p999", getValueAtPercentile(99.9));
+		summary.put("max", getMax());
+		return summary;
+	}
+	
+	/**
+	 * Appends the summary of the histogram as a JSON object: the count, the
+	 * mean, the maximum and the usual percentiles.
+	 * 
+	 * @param sb the builder to append to
+	 * @return the given builder
+	 */
+	public StringBuilder appendJson(StringBuilder sb) {
+		sb.append("{\"count\":").append(getCount())
+		  .append(",\"mean\":").append(Math.round(getMean()))
+		  .append(",\"p50\":").append(getValueAtPercentile(50))
+		  .append(",\"p90\":").append(getValueAtPercentile(90))
+		  .append(",\"p99\":").append(getValueAtPercentile(99))
+		  .append(",\"p999\":").append(getValueAtPercentile(99.9))
+		  .append(",\"max\":").append(getMax())
+		  .append('}');
+		return sb;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+				getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(90),
+				getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Returns the bucket of a non-negative value. Above the linear buckets,
+	 * the value is shifted right until it has {@code PRECISION_BITS}
+	 * significant bits; the shift selects the power-of-two range and the
+	 * remaining bits the bucket within it.
+	 */
+	static int indexOf(long value) {
+		if(value < LINEAR_BUCKETS) return (int) value;
+		
+		int shift = 64 - Long.numberOfLeadingZeros(value) - PRECISION_BITS;
+		return (shift << (PRECISION_BITS - 1)) + (int) (value >>> shift);
+	}
+	
+	/**
+	 * Returns the largest value that falls into the given bucket.
+	 */
+	static long highestEquivalentValue(int index) {
+		if(index < LINEAR_BUCKETS) return index;
+		
+		int shift = (index >> (PRECISION_BITS - 1)) - 1;
+		long mantissa = (index & (HALF - 1)) + HALF;
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
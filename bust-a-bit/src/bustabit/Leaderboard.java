@@ -0,0 +1,361 @@
+package bustabit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The live statistics of the players and the boards of the best of them:
+ * the highest profit, the highest multiplier cashed out and the most
+ * wagered. A single leaderboard may be shared by the rooms of all of the
+ * shards.
+ * <p>
+ * The statistics of a player are striped counters ({@link LongAdder}s), so
+ * the settlements on different threads never contend for them. A board
+ * keeps only its best {@link #getSize() size} entries, as an immutable
+ * sorted array that is replaced as a whole (copy-on-write, by a
+ * compare-and-set); a query simply returns the current array, so it never
+ * blocks a settlement, and a settlement never waits for a query. A value
+ * that does not beat the last entry of a full board is rejected by a
+ * single comparison, so the cost of an update depends on the size of the
+ * board, not on the number of players.
+ * <p>
+ * The multiplier and the wagered amount only ever grow, so their boards
+ * are exact. The profit also falls: a player on the board keeps its place
+ * with the lower value, and a player that overtakes it enters the board
+ * on its next settlement. The profit board is therefore the best of the
+ * players as they were last settled, which is what a live board shows.
+ * 
+ * @author FICHEKK
+ */
+public final class Leaderboard {
+	
+	/** The default number of entries on a board. */
+	public static final int DEFAULT_SIZE = 10;
+	
+	/**
+	 * The boards, each ranking the players by one of their statistics.
+	 */
+	public enum Board {
+		
+		/** The profit of the player. */
+		PROFIT {
+			@Override
+			long valueOf(PlayerStats player) {
+				return player.getProfit();
+			}
+		},
+		
+		/** The highest multiplier the player cashed out at, in thousandths. */
+		MULTIPLIER {
+			@Override
+			long valueOf(PlayerStats player) {
+				return player.getBestMultiplierMilli();
+			}
+		},
+		
+		/** The sum of the player's bets. */
+		WAGERED {
+			@Override
+			long valueOf(PlayerStats player) {
+				return player.getWagered();
+			}
+		};
+		
+		/**
+		 * Returns the statistic of the player that the board ranks by.
+		 * 
+		 * @param player the player
+		 * @return the value of the player on this board
+		 */
+		abstract long valueOf(PlayerStats player);
+	}
+	
+	/** The number of entries on a board. */
+	private final int size;
+	
+	/** The statistics of the players, by name. */
+	private final Map<String, PlayerStats> players = new ConcurrentHashMap<>();
+	
+	/** The entries of the boards, best first, indexed by {@link Board#ordinal()}. */
+	private final List<AtomicReference<Entry[]>> boards = new ArrayList<>();
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs an empty leaderboard.
+	 * 
+	 * @param size the number of entries on a board
+	 */
+	public Leaderboard(int size) {
+		if(size <= 0) throw new IllegalArgumentException("Board size must be positive.");
+		
+		this.size = size;
+		for(int i = 0; i < Board.values().length; i++) {
+			boards.add(new AtomicReference<>(new Entry[0]));
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							  SETTLEMENT
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Returns the statistics of the named player, created on first use. The
+	 * settlement keeps the returned object, so it does not look the player
+	 * up again for every bet.
+	 * 
+	 * @param name the name of the player
+	 * @return the statistics of the player
+	 */
+	public PlayerStats player(String name) {
+		return players.computeIfAbsent(name, PlayerStats::new);
+	}
+	
+	/**
+	 * Records an accepted bet; until the player cashes out, the bet counts
+	 * as lost.
+	 * 
+	 * @param player the player
+	 * @param bet the bet
+	 */
+	public void recordBet(PlayerStats player, long bet) {
+		player.rounds.increment();
+		player.wagered.add(bet);
+		player.profit.add(-bet);
+		
+		offer(Board.WAGERED, player);
+		offer(Board.PROFIT, player);
+	}
+	
+	/**
+	 * Records a cash-out.
+	 * 
+	 * @param player the player
+	 * @param multiplierMilli the cash-out multiplier in thousandths
+	 * @param payout the amount paid out to the player
+	 */
+	public void recordCashOut(PlayerStats player, long multiplierMilli, long payout) {
+		player.cashOuts.increment();
+		player.profit.add(payout);
+		player.bestMultiplierMilli.accumulate(multiplierMilli);
+		
+		offer(Board.PROFIT, player);
+		offer(Board.MULTIPLIER, player);
+	}
+	
+	//-----------------------------------------------------------------------
+	//								QUERIES
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Returns the snapshot of a board. The snapshot never changes; later
+	 * settlements publish new ones.
+	 * 
+	 * @param board the board
+	 * @return the entries of the board, best first
+	 */
+	public List<Entry> top(Board board) {
+		return Collections.unmodifiableList(Arrays.asList(boards.get(board.ordinal()).get()));
+	}
+	
+	/**
+	 * Returns the statistics of the named player.
+	 * 
+	 * @param name the name of the player
+	 * @return the statistics of the player, or {@code null} if the player never played
+	 */
+	public PlayerStats getPlayer(String name) {
+		return players.get(name);
+	}
+	
+	/** @return the number of players that ever played */
+	public int getPlayerCount() {
+		return players.size();
+	}
+	
+	/** @return the number of entries on a board */
+	public int getSize() {
+		return size;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(256);
+		for(Board board : Board.values()) {
+			sb.append(String.format("%-11s", board + ":"));
+			for(Entry entry : boards.get(board.ordinal()).get()) {
+				sb.append(' ').append(entry);
+			}
+			sb.append("\r\n");
+		}
+		return sb.toString();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Puts the player's current value on the board, if it belongs there. The
+	 * value is read again on every attempt, so a board never goes back to an
+	 * older value of a player that was updated in the meantime.
+	 */
+	private void offer(Board board, PlayerStats player) {
+		AtomicReference<Entry[]> reference = boards.get(board.ordinal());
+		
+		while(true) {
+			Entry[] current = reference.get();
+			long value = board.valueOf(player);
+			
+			int index = indexOf(current, player);
+			if(index < 0 && current.length == size && value <= current[size - 1].value) return;
+			if(index >= 0 && current[index].value == value) return;
+			
+			Entry[] next = insert(current, index, new Entry(player, value));
+			if(reference.compareAndSet(current, next)) return;
+		}
+	}
+	
+	/**
+	 * Copies the board with the given entry in its place, replacing the
+	 * player's old entry if there is one, and drops the entry past the end.
+	 */
+	private Entry[] insert(Entry[] current, int replaced, Entry entry) {
+		Entry[] next = new Entry[replaced >= 0 ? current.length : Math.min(current.length + 1, size)];
+		
+		int j = 0;
+		boolean placed = false;
+		for(int i = 0; i < current.length && j < next.length; i++) {
+			if(i == replaced) continue;
+			
+			if(!placed && entry.value > current[i].value) {
+				next[j++] = entry;
+				placed = true;
+				if(j == next.length) break;
+			}
+			next[j++] = current[i];
+		}
+		if(!placed && j < next.length) {
+			next[j] = entry;
+		}
+		return next;
+	}
+	
+	private static int indexOf(Entry[] entries, PlayerStats player) {
+		for(int i = 0; i < entries.length; i++) {
+			if(entries[i].player == player) return i;
+		}
+		return -1;
+	}
+	
+	//-----------------------------------------------------------------------
+	//								 TYPES
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * The statistics of a single player, updated by the settlements.
+	 */
+	public static final class PlayerStats {
+		
+		/** The name of the player. */
+		private final String name;
+		
+		/** The number of rounds the player bet on. */
+		private final LongAdder rounds = new LongAdder();
+		
+		/** The number of the player's cash-outs. */
+		private final LongAdder cashOuts = new LongAdder();
+		
+		/** The sum of the player's bets. */
+		private final LongAdder wagered = new LongAdder();
+		
+		/** The sum of the payouts minus the sum of the bets. */
+		private final LongAdder profit = new LongAdder();
+		
+		/** The highest multiplier the player cashed out at, in thousandths. */
+		private final LongAccumulator bestMultiplierMilli = new LongAccumulator(Math::max, 0);
+		
+		PlayerStats(String name) {
+			this.name = name;
+		}
+		
+		/** @return the name of the player */
+		public String getName() {
+			return name;
+		}
+		
+		/** @return the number of rounds the player bet on */
+		public long getRounds() {
+			return rounds.sum();
+		}
+		
+		/** @return the number of the player's cash-outs */
+		public long getCashOuts() {
+			return cashOuts.sum();
+		}
+		
+		/** @return the sum of the player's bets */
+		public long getWagered() {
+			return wagered.sum();
+		}
+		
+		/** @return the sum of the payouts minus the sum of the bets */
+		public long getProfit() {
+			return profit.sum();
+		}
+		
+		/** @return the highest multiplier the player cashed out at in thousandths, or 0 */
+		public long getBestMultiplierMilli() {
+			return bestMultiplierMilli.get();
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(96);
+			sb.append(name).append(": ").append(getRounds()).append(" rounds, ").append(getCashOuts()).append(" cashed out, ")
+			  .append(getWagered()).append(" wagered, ").append(getProfit()).append(" profit, best x");
+			return FastFormat.appendMilli(sb, getBestMultiplierMilli(), '.').toString();
+		}
+	}
+	
+	/**
+	 * An entry of a board: a player and the value it was ranked by.
+	 */
+	public static final class Entry {
+		
+		/** The player. */
+		private final PlayerStats player;
+		
+		/** The value of the player when the entry was made. */
+		private final long value;
+		
+		Entry(PlayerStats player, long value) {
+			this.player = player;
+			this.value = value;
+		}
+		
+		/** @return the name of the player */
+		public String getName() {
+			return player.getName();
+		}
+		
+		/** @return the value of the player when the entry was made */
+		public long getValue() {
+			return value;
+		}
+		
+		@Override
+		public String toString() {
+			return player.getName() + "=" + value;
+		}
+	}
+}
@@ -0,0 +1,553 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a {@link GameServer} under the load of thousands of simulated
+ * players (bots) and measures how it copes. The server is either started
+ * in-process, on the loopback interface, or an already running one is
+ * used.
+ * <p>
+ * All of the bots are driven by a single selector thread, in the same way
+ * the server drives its connections. A bot bets on a round with some
+ * probability; its bet is drawn log-uniformly from a range and its
+ * cash-out target from a shifted exponential distribution. The target is
+ * either set as the auto cash-out or cashed out manually, once the bot
+ * sees the multiplier reach it. The distributions are configured through
+ * the system properties:
+ * <pre>
+ * bustabit.load.betChance   the probability of betting on a round (0.8)
+ * bustabit.load.minBet      the lowest bet (1)
+ * bustabit.load.maxBet      the highest bet (100)
+ * bustabit.load.autoChance  the probability of an auto cash-out (0.5)
+ * bustabit.load.meanTarget  the mean cash-out target (2.0)
+ * </pre>
+ * The measured latencies are kept in {@link LatencyHistogram}s and
+ * reported as JSON:
+ * <ul>
+ * <li>bet acceptance, from sending a bet to its acceptance,</li>
+ * <li>cash-out, from sending a manual cash-out to its settlement,</li>
+ * <li>the settlement error of the manual and of the auto cash-outs: the
+ * difference between the requested and the settled multiplier,</li>
+ * <li>tick lateness, from the moment the curve reached a multiplier to the
+ * arrival of the tick frame that carries it, as seen by a spectator.</li>
+ * </ul>
+ * 
+ * @author FICHEKK
+ */
+public class LoadGenerator implements Closeable {
+	
+	/** The probability that a bot bets on a round. */
+	private static final double BET_CHANCE = doubleProperty("bustabit.load.betChance", 0.8);
+	
+	/** The lowest bet. */
+	private static final long MIN_BET = Long.getLong("bustabit.load.minBet", 1);
+	
+	/** The highest bet. */
+	private static final long MAX_BET = Long.getLong("bustabit.load.maxBet", 100);
+	
+	/** The probability that a bet uses an auto cash-out rather than a manual one. */
+	private static final double AUTO_CHANCE = doubleProperty("bustabit.load.autoChance", 0.5);
+	
+	/** The mean cash-out target. */
+	private static final double MEAN_TARGET = doubleProperty("bustabit.load.meanTarget", 2.0);
+	
+	/** The lowest cash-out target, in thousandths. */
+	private static final long MIN_TARGET = 1010;
+	
+	/** The highest cash-out target, in thousandths. */
+	private static final long MAX_TARGET = 1_000_000;
+	
+	/** Waits for the network events of all of the bots. */
+	private final Selector selector;
+	
+	/** The bots. */
+	private final List<Bot> bots = new ArrayList<>();
+	
+	/** The connection that spectates the rounds and measures the ticks. */
+	private final Bot spectator;
+	
+	/** The pending manual cash-outs, the earliest first. */
+	private final PriorityQueue<CashOut> cashOuts = new PriorityQueue<>((a, b) -> Long.compare(a.deadlineNanos, b.deadlineNanos));
+	
+	/** The source of the bots' decisions. */
+	private final SplittableRandom random;
+	
+	/** Reusable buffer that the outgoing messages are encoded in. */
+	private final ByteBuffer message = ByteBuffer.allocate(Protocol.MAX_MESSAGE_SIZE);
+	
+	/** The time from sending a bet to its acceptance, in nanoseconds. */
+	private final LatencyHistogram betAcceptance = new LatencyHistogram();
+	
+	/** The time from sending a manual cash-out to its settlement, in nanoseconds. */
+	private final LatencyHistogram cashOutLatency = new LatencyHistogram();
+	
+	/** The difference between the requested and the settled multiplier of manual cash-outs, in thousandths. */
+	private final LatencyHistogram manualSettlementError = new LatencyHistogram();
+	
+	/** The difference between the target and the settled multiplier of auto cash-outs, in thousandths. */
+	private final LatencyHistogram autoSettlementError = new LatencyHistogram();
+	
+	/** The time from reaching a multiplier to receiving its tick frame, in nanoseconds. */
+	private final LatencyHistogram tickLateness = new LatencyHistogram();
+	
+	/** The number of played rounds. */
+	private long rounds;
+	
+	/** The number of sent bets. */
+	private long betsSent;
+	
+	/** The number of accepted bets. */
+	private long betsAccepted;
+	
+	/** The number of rejected bets. */
+	private long betsRejected;
+	
+	/** The number of settled cash-outs. */
+	private long cashedOut;
+	
+	/** The number of bets lost to the crash. */
+	private long busted;
+	
+	/** The number of bots that lost their connection. */
+	private long disconnects;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Connects the given number of bots and a spectator to the server.
+	 * 
+	 * @param address the address of the server
+	 * @param players the number of bots
+	 * @param seed the seed of the bots' decisions
+	 * @throws IOException if the bots could not connect
+	 */
+	public LoadGenerator(InetSocketAddress address, int players, long seed) throws IOException {
+		this.selector = Selector.open();
+		this.random = new SplittableRandom(seed);
+		
+		for(int i = 0; i < players; i++) {
+			bots.add(connect(address));
+		}
+		
+		spectator = connect(address);
+		message.clear();
+		Protocol.writeSpectate(message);
+		send(spectator);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Runs the bots on the calling thread for the given time.
+	 * 
+	 * @param durationNanos the duration of the run
+	 * @throws IOException if the selector fails
+	 */
+	public void run(long durationNanos) throws IOException {
+		long end = System.nanoTime() + durationNanos;
+		
+		for(long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+			long deadline = cashOuts.isEmpty() ? end : Math.min(end, cashOuts.peek().deadlineNanos);
+			long timeout = deadline - now;
+			if(timeout > 0) {
+				selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout)));
+			} else {
+				selector.selectNow();
+			}
+			
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while(keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				read((Bot) key.attachment());
+			}
+			
+			now = System.nanoTime();
+			while(!cashOuts.isEmpty() && cashOuts.peek().deadlineNanos <= now) {
+				cashOut(cashOuts.poll(), now);
+			}
+		}
+	}
+	
+	/**
+	 * Closes all of the connections.
+	 */
+	@Override
+	public void close() throws IOException {
+		selector.close();
+		for(Bot bot : bots) {
+			bot.channel.close();
+		}
+		spectator.channel.close();
+	}
+	
+	/**
+	 * Builds the machine readable report of the run.
+	 * 
+	 * @param target the description of the server
+	 * @param seconds the duration of the run
+	 * @return the report, as a JSON object
+	 */
+	public String report(String target, long seconds) {
+		StringBuilder sb = new StringBuilder(1024);
+		sb.append("{\n");
+		sb.append("  \"target\": \"").append(target).append("\",\n");
+		sb.append("  \"players\": ").append(bots.size()).append(",\n");
+		sb.append("  \"seconds\": ").append(seconds).append(",\n");
+		sb.append("  \"rounds\": ").append(rounds).append(",\n");
+		sb.append("  \"bets\": {\"sent\": ").append(betsSent)
+		  .append(", \"accepted\": ").append(betsAccepted)
+		  .append(", \"rejected\": ").append(betsRejected)
+		  .append(", \"cashedOut\": ").append(cashedOut)
+		  .append(", \"busted\": ").append(busted).append("},\n");
+		sb.append("  \"disconnects\": ").append(disconnects).append(",\n");
+		sb.append("  \"histograms\": {\n");
+		sb.append("    \"betAcceptanceNanos\": ");
+		betAcceptance.appendJson(sb).append(",\n");
+		sb.append("    \"cashOutNanos\": ");
+		cashOutLatency.appendJson(sb).append(",\n");
+		sb.append("    \"manualSettlementErrorMilli\": ");
+		manualSettlementError.appendJson(sb).append(",\n");
+		sb.append("    \"autoSettlementErrorMilli\": ");
+		autoSettlementError.appendJson(sb).append(",\n");
+		sb.append("    \"tickLatenessNanos\": ");
+		tickLateness.appendJson(sb).append('\n');
+		sb.append("  }\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   ENTRY POINT
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Runs the load generator from the command line and prints or saves
+	 * the report.
+	 * 
+	 * @param args the number of bots, the duration in seconds, optionally the
+	 * 		  address of the server as {@code host[:port]} ({@code -} starts
+	 * 		  one in-process) and optionally the path of the report
+	 * @throws IOException if the load could not be generated
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: LoadGenerator <players> <seconds> [host[:port] | -] [report.json]");
+			return;
+		}
+		
+		int players = Integer.parseInt(args[0]);
+		long seconds = Long.parseLong(args[1]);
+		String address = args.length > 2 ? args[2] : "-";
+		
+		GameServer server = null;
+		InetSocketAddress target;
+		if(address.equals("-")) {
+			// Keeps the rounds short, unless configured otherwise; read when the server class loads.
+			System.getProperties().putIfAbsent("bustabit.server.betting", "1000");
+			server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), CrashSource.configured(), players, 10_000);
+			target = server.getAddress();
+			startServer(server);
+			
+		} else {
+			int colon = address.lastIndexOf(':');
+			target = colon < 0
+				   ? new InetSocketAddress(address, Protocol.DEFAULT_PORT)
+				   : new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+		}
+		
+		String report;
+		try(LoadGenerator generator = new LoadGenerator(target, players, System.nanoTime())) {
+			System.out.println("Connected " + players + " players to " + target + ", running for " + seconds + " s.");
+			generator.run(TimeUnit.SECONDS.toNanos(seconds));
+			report = generator.report(server != null ? "in-process" : address, seconds);
+			
+		} finally {
+			if(server != null) server.close();
+		}
+		
+		if(args.length > 3) {
+			Files.write(Paths.get(args[3]), report.getBytes(StandardCharsets.UTF_8));
+			System.out.println("Report written to '" + args[3] + "'.");
+		} else {
+			System.out.print(report);
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//								 BOTS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Reads and handles all of the complete messages the bot has received.
+	 */
+	private void read(Bot bot) {
+		ByteBuffer input = bot.input;
+		try {
+			if(bot.channel.read(input) < 0) throw new IOException("Connection closed.");
+		} catch (IOException e) {
+			disconnects++;
+			bot.key.cancel();
+			return;
+		}
+		
+		long now = System.nanoTime();
+		input.flip();
+		while(input.hasRemaining()) {
+			int size = Protocol.messageSize(input);
+			if(size <= 0) break;
+			
+			int next = input.position() + size;
+			handle(bot, input.get(), input, now);
+			input.position(next);
+		}
+		input.compact();
+	}
+	
+	/**
+	 * Handles a single message of a bot.
+	 */
+	private void handle(Bot bot, byte type, ByteBuffer input, long now) {
+		switch(type) {
+			case Protocol.WELCOME:
+				bot.bankroll = input.getLong();
+				break;
+			
+			case Protocol.BETTING:
+				if(bot != spectator) placeBet(bot, now);
+				break;
+			
+			case Protocol.BET_ACCEPTED:
+				betsAccepted++;
+				betAcceptance.record(now - bot.betSentNanos);
+				input.getLong();
+				bot.bankroll = input.getLong();
+				bot.accepted = true;
+				break;
+			
+			case Protocol.BET_REJECTED:
+				betsRejected++;
+				bot.betting = false;
+				break;
+			
+			case Protocol.STARTED:
+				bot.startedNanos = now;
+				bot.multiplierMilli = 1000;
+				if(bot == spectator) rounds++;
+				if(bot.accepted && !bot.auto) {
+					long reach = MultiplierCurve.nanosToReach(bot.targetMilli);
+					if(reach != Long.MAX_VALUE) cashOuts.add(new CashOut(bot, bot.round, now + reach));
+				}
+				break;
+			
+			case Protocol.CASHED_OUT:
+				long multiplier = input.getLong();
+				input.getLong();
+				bot.bankroll = input.getLong();
+				cashedOut++;
+				bot.cashedOut = true;
+				if(bot.auto) {
+					autoSettlementError.record(Math.abs(multiplier - bot.targetMilli));
+				} else {
+					cashOutLatency.record(now - bot.cashOutSentNanos);
+					manualSettlementError.record(Math.abs(multiplier - bot.requestedMilli));
+				}
+				break;
+			
+			case Protocol.CRASHED:
+				if(bot.accepted && !bot.cashedOut) busted++;
+				bot.round++;
+				bot.betting = false;
+				bot.accepted = false;
+				bot.cashedOut = false;
+				break;
+			
+			case Protocol.TICK:
+			case Protocol.KEYFRAME:
+				long value = Protocol.readFrameValue(input);
+				bot.multiplierMilli = type == Protocol.TICK ? bot.multiplierMilli + value : value;
+				tickLateness.record(now - bot.startedNanos - MultiplierCurve.nanosToReach(bot.multiplierMilli));
+				break;
+		}
+	}
+	
+	/**
+	 * Decides whether the bot bets on the next round, and on how much.
+	 */
+	private void placeBet(Bot bot, long now) {
+		if(bot.betting || bot.bankroll < MIN_BET || random.nextDouble() >= BET_CHANCE) return;
+		
+		// Log-uniform, so that the small bets are as common as they are in reality.
+		double logBet = Math.log(MIN_BET) + random.nextDouble() * (Math.log(MAX_BET + 1) - Math.log(MIN_BET));
+		long bet = Math.min(bot.bankroll, Math.max(MIN_BET, Math.min(MAX_BET, (long) Math.exp(logBet))));
+		
+		double excess = -Math.log(1 - random.nextDouble()) * (MEAN_TARGET - 1);
+		bot.targetMilli = Math.min(MAX_TARGET, Math.max(MIN_TARGET, 1000 + Math.round(excess * 1000)));
+		bot.auto = random.nextDouble() < AUTO_CHANCE;
+		
+		bot.betting = true;
+		bot.betSentNanos = now;
+		betsSent++;
+		
+		message.clear();
+		Protocol.writeBet(message, bet, bot.auto ? bot.targetMilli : 0);
+		send(bot);
+	}
+	
+	/**
+	 * Sends a manual cash-out that is due, unless its round is already over.
+	 */
+	private void cashOut(CashOut cashOut, long now) {
+		Bot bot = cashOut.bot;
+		if(cashOut.round != bot.round || bot.cashedOut) return;
+		
+		bot.cashOutSentNanos = now;
+		bot.requestedMilli = MultiplierCurve.milliAt(now - bot.startedNanos);
+		
+		message.clear();
+		Protocol.writeCashOut(message);
+		send(bot);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private Bot connect(InetSocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open(address);
+		channel.configureBlocking(false);
+		
+		Bot bot = new Bot(channel);
+		bot.key = channel.register(selector, SelectionKey.OP_READ, bot);
+		return bot;
+	}
+	
+	/**
+	 * Writes the encoded {@link #message}; a message the socket does not
+	 * take right away is dropped, which only happens if the server does
+	 * not keep up at all.
+	 */
+	private void send(Bot bot) {
+		message.flip();
+		try {
+			bot.channel.write(message);
+		} catch (IOException e) {
+			disconnects++;
+			bot.key.cancel();
+		}
+	}
+	
+	private static void startServer(GameServer server) {
+		Thread thread = new Thread(() -> {
+			try {
+				server.run();
+			} catch (IOException e) {
+				System.err.println("The server failed: " + e.getMessage());
+			}
+		}, "game-server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private static double doubleProperty(String key, double defaultValue) {
+		String value = System.getProperty(key);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+	
+	/**
+	 * The state of a single simulated player.
+	 */
+	private static final class Bot {
+		
+		/** The connection of the bot. */
+		final SocketChannel channel;
+		
+		/** The received bytes that do not yet form a whole message. */
+		final ByteBuffer input = ByteBuffer.allocate(1024);
+		
+		/** The key of the channel. */
+		SelectionKey key;
+		
+		/** The bot's bank-roll, as reported by the server. */
+		long bankroll;
+		
+		/** The number of rounds that ended since the bot connected. */
+		long round;
+		
+		/** Flag that indicates if the bot sent a bet for the next round. */
+		boolean betting;
+		
+		/** Flag that indicates if the bot's bet was accepted. */
+		boolean accepted;
+		
+		/** Flag that indicates if the bot cashed out of the current round. */
+		boolean cashedOut;
+		
+		/** Flag that indicates if the bot uses an auto cash-out. */
+		boolean auto;
+		
+		/** The bot's cash-out target, in thousandths. */
+		long targetMilli;
+		
+		/** The multiplier that was current when the bot sent its manual cash-out. */
+		long requestedMilli;
+		
+		/** The multiplier of the latest tick frame; only for the spectator. */
+		long multiplierMilli;
+		
+		/** The {@link System#nanoTime()} instant at which the bet was sent. */
+		long betSentNanos;
+		
+		/** The {@link System#nanoTime()} instant at which the start of the round was received. */
+		long startedNanos;
+		
+		/** The {@link System#nanoTime()} instant at which the manual cash-out was sent. */
+		long cashOutSentNanos;
+		
+		Bot(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+	
+	/**
+	 * A manual cash-out that is due at the given instant.
+	 */
+	private static final class CashOut {
+		
+		/** The bot that cashes out. */
+		final Bot bot;
+		
+		/** The round of the bot that the cash-out belongs to. */
+		final long round;
+		
+		/** The {@link System#nanoTime()} instant at which the cash-out is due. */
+		final long deadlineNanos;
+		
+		CashOut(Bot bot, long round, long deadlineNanos) {
+			this.bot = bot;
+			this.round = round;
+			this.deadlineNanos = deadlineNanos;
+		}
+	}
+}
@@ -1,10 +1,15 @@
 package bustabit;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import javax.swing.SwingUtilities;
 
 /**
  * The starting point of the application. It simply creates a new
- * game window.
+ * game window, or runs a headless {@link GameServer} if started
+ * with {@code --server [port]}, or a {@link RoomManager} hosting many
+ * rooms if started with {@code --rooms <room>...}.
  *
  * @author Filip Nemec
  */
@@ -13,10 +18,23 @@ public class Main {
 	/**
 	 * The application starts from here.
 	 *
-	 * @param args none are used
-	 * @throws InterruptedException
+	 * @param args {@code --server [port]} for the headless server, {@code --rooms <room>...}
+	 *        for the rooms, none otherwise
+	 * @throws IOException if the server could not be started
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		Metrics.start();
+		
+		if(args.length > 0 && args[0].equals("--server")) {
+			GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		
+		if(args.length > 0 && args[0].equals("--rooms")) {
+			RoomManager.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		
 		SwingUtilities.invokeLater(() -> new GUI().setVisible(true));
 	}
 }
\ No newline at end of file
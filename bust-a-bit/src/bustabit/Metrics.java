@@ -0,0 +1,357 @@
+package bustabit;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The runtime metrics of the game: histograms of the tick timing, the
+ * cash-out settlement and the persistence, and counters of the rounds,
+ * the bets and the payouts.
+ * <p>
+ * The recording methods are called from the hot paths, so they take no
+ * locks and allocate nothing: the histograms are {@link LatencyHistogram}s
+ * and the counters {@link LongAdder}s. The metrics of the rounds are
+ * recorded into a {@link Recorder}; every shard of a {@link RoomManager}
+ * has one of its own, so the shards share no cache line on their tick
+ * paths, and the recorders are only added up when the metrics are read.
+ * The static recording methods use the recorder of the local game and of
+ * the other single threaded users. The metrics are read through JMX,
+ * as the {@link MetricsMXBean} registered by {@link #start()}, and are
+ * also dumped as text every {@code bustabit.metrics.interval} seconds
+ * (60 by default, 0 turns the dump off).
+ * 
+ * @author FICHEKK
+ */
+public final class Metrics {
+	
+	/** The JMX name of the metrics. */
+	public static final String OBJECT_NAME = "bustabit:type=Metrics";
+	
+	/** All of the recorders of the round metrics. */
+	private static final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+	
+	/** The recorder used by the static recording methods. */
+	private static final Recorder shared = newRecorder();
+	
+	/** The time a save call blocks its caller. */
+	private static final LatencyHistogram persistenceSubmit = new LatencyHistogram();
+	
+	/** The time the background writer takes to write a batch. */
+	private static final LatencyHistogram persistenceWrite = new LatencyHistogram();
+	
+	/** The time the background writer takes to force the data. */
+	private static final LatencyHistogram persistenceSync = new LatencyHistogram();
+	
+	/** Flag that indicates if the metrics were already published. */
+	private static boolean started;
+	
+	/** Utility class, no instances. */
+	private Metrics() {
+	}
+	
+	//-----------------------------------------------------------------------
+	//							  RECORDING
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Creates a new recorder of the round metrics, whose values are
+	 * included in the metrics from now on.
+	 * 
+	 * @return the new recorder
+	 */
+	public static Recorder newRecorder() {
+		Recorder recorder = new Recorder();
+		recorders.add(recorder);
+		return recorder;
+	}
+	
+	/** @return the recorder used by the static recording methods */
+	public static Recorder sharedRecorder() {
+		return shared;
+	}
+	
+	/**
+	 * Records a tick of a round into the shared recorder.
+	 * 
+	 * @param previousTickNanos the {@link System#nanoTime()} instant of the
+	 * 		  previous tick of the round, or 0 if this is the first one
+	 * @param tickNanos the {@link System#nanoTime()} instant at which this tick started
+	 * @see Recorder#recordTick(long, long)
+	 */
+	public static void recordTick(long previousTickNanos, long tickNanos) {
+		shared.recordTick(previousTickNanos, tickNanos);
+	}
+	
+	/**
+	 * Records the time a save call blocked its caller.
+	 * 
+	 * @param startNanos the {@link System#nanoTime()} instant at which the call started
+	 */
+	public static void recordPersistenceSubmit(long startNanos) {
+		persistenceSubmit.record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Records the time a batch write took.
+	 * 
+	 * @param startNanos the {@link System#nanoTime()} instant at which the write started
+	 */
+	public static void recordPersistenceWrite(long startNanos) {
+		persistenceWrite.record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Records the time forcing the data to the storage device took.
+	 * 
+	 * @param startNanos the {@link System#nanoTime()} instant at which the sync started
+	 */
+	public static void recordPersistenceSync(long startNanos) {
+		persistenceSync.record(System.nanoTime() - startNanos);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							  PUBLISHING
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Registers the metrics with the platform MBean server and starts the
+	 * periodic dump. Does nothing if already started.
+	 */
+	public static synchronized void start() {
+		if(started) return;
+		started = true;
+		
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			System.err.println("Could not register the metrics with JMX: " + e.getMessage());
+		}
+		
+		long interval = Long.getLong("bustabit.metrics.interval", 60);
+		if(interval <= 0) return;
+		
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleAtFixedRate(() -> System.out.print(dump()), interval, interval, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Describes all of the metrics as text.
+	 * 
+	 * @return the text dump of the metrics
+	 */
+	public static String dump() {
+		StringBuilder sb = new StringBuilder(1024);
+		sb.append(String.format("Rounds: %,d | Bets: %,d (%,d wagered) | Payouts: %,d (%,d paid out)\r\n",
+				sum(r -> r.rounds), sum(r -> r.bets), sum(r -> r.wagered), sum(r -> r.payouts), sum(r -> r.paidOut)));
+		sb.append("Tick interval (ns):       ").append(merge(r -> r.tickInterval)).append("\r\n");
+		sb.append("Tick processing (ns):     ").append(merge(r -> r.tickProcessing)).append("\r\n");
+		sb.append("Settlement delay (ns):    ").append(merge(r -> r.settlementDelay)).append("\r\n");
+		sb.append("Persistence submit (ns):  ").append(persistenceSubmit).append("\r\n");
+		sb.append("Persistence write (ns):   ").append(persistenceWrite).append("\r\n");
+		sb.append("Persistence sync (ns):    ").append(persistenceSync).append("\r\n");
+		return sb.toString();
+	}
+	
+	/**
+	 * The JMX view of the metrics.
+	 */
+	private static final class Bean implements MetricsMXBean {
+		
+		@Override
+		public long getRounds() {
+			return sum(r -> r.rounds);
+		}
+		
+		@Override
+		public long getBets() {
+			return sum(r -> r.bets);
+		}
+		
+		@Override
+		public long getWagered() {
+			return sum(r -> r.wagered);
+		}
+		
+		@Override
+		public long getPayouts() {
+			return sum(r -> r.payouts);
+		}
+		
+		@Override
+		public long getPaidOut() {
+			return sum(r -> r.paidOut);
+		}
+		
+		@Override
+		public Map<String, Long> getTickIntervalNanos() {
+			return merge(r -> r.tickInterval).summary();
+		}
+		
+		@Override
+		public Map<String, Long> getTickProcessingNanos() {
+			return merge(r -> r.tickProcessing).summary();
+		}
+		
+		@Override
+		public Map<String, Long> getSettlementDelayNanos() {
+			return merge(r -> r.settlementDelay).summary();
+		}
+		
+		@Override
+		public Map<String, Long> getPersistenceSubmitNanos() {
+			return persistenceSubmit.summary();
+		}
+		
+		@Override
+		public Map<String, Long> getPersistenceWriteNanos() {
+			return persistenceWrite.summary();
+		}
+		
+		@Override
+		public Map<String, Long> getPersistenceSyncNanos() {
+			return persistenceSync.summary();
+		}
+		
+		@Override
+		public void reset() {
+			for(LatencyHistogram histogram : new LatencyHistogram[] {persistenceSubmit, persistenceWrite, persistenceSync}) {
+				histogram.reset();
+			}
+			for(Recorder recorder : recorders) {
+				recorder.reset();
+			}
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Sums up a counter over all of the recorders.
+	 */
+	private static long sum(Function<Recorder, LongAdder> counter) {
+		long sum = 0;
+		for(Recorder recorder : recorders) {
+			sum += counter.apply(recorder).sum();
+		}
+		return sum;
+	}
+	
+	/**
+	 * Adds up a histogram over all of the recorders into a new one.
+	 */
+	private static LatencyHistogram merge(Function<Recorder, LatencyHistogram> histogram) {
+		LatencyHistogram merged = new LatencyHistogram();
+		for(Recorder recorder : recorders) {
+			merged.add(histogram.apply(recorder));
+		}
+		return merged;
+	}
+	
+	/**
+	 * The metrics of the rounds, recorded by the rooms of a single thread.
+	 * A recorder is only ever written by the threads that play its rounds,
+	 * so its atomic updates do not contend with those of other recorders.
+	 */
+	public static final class Recorder {
+		
+		/** The time between two consecutive ticks of a round. */
+		private final LatencyHistogram tickInterval = new LatencyHistogram();
+		
+		/** The time a tick takes. */
+		private final LatencyHistogram tickProcessing = new LatencyHistogram();
+		
+		/** The time from a manual cash-out request to its settlement. */
+		private final LatencyHistogram settlementDelay = new LatencyHistogram();
+		
+		/** The number of crashed rounds. */
+		private final LongAdder rounds = new LongAdder();
+		
+		/** The number of placed bets. */
+		private final LongAdder bets = new LongAdder();
+		
+		/** The sum of the placed bets. */
+		private final LongAdder wagered = new LongAdder();
+		
+		/** The number of cash-outs. */
+		private final LongAdder payouts = new LongAdder();
+		
+		/** The sum of the paid out amounts. */
+		private final LongAdder paidOut = new LongAdder();
+		
+		/** Use {@link Metrics#newRecorder()}. */
+		private Recorder() {
+		}
+		
+		/**
+		 * Records a tick of a round.
+		 * 
+		 * @param previousTickNanos the {@link System#nanoTime()} instant of the
+		 * 		  previous tick of the round, or 0 if this is the first one
+		 * @param tickNanos the {@link System#nanoTime()} instant at which this tick started
+		 */
+		public void recordTick(long previousTickNanos, long tickNanos) {
+			if(previousTickNanos != 0) {
+				tickInterval.record(tickNanos - previousTickNanos);
+			}
+			tickProcessing.record(System.nanoTime() - tickNanos);
+		}
+		
+		/**
+		 * Records the settlement of a manual cash-out.
+		 * 
+		 * @param delayNanos the time from the request to the settlement
+		 */
+		public void recordSettlement(long delayNanos) {
+			settlementDelay.record(delayNanos);
+		}
+		
+		/** Counts a crashed round. */
+		public void countRound() {
+			rounds.increment();
+		}
+		
+		/**
+		 * Counts a placed bet.
+		 * 
+		 * @param bet the bet
+		 */
+		public void countBet(long bet) {
+			bets.increment();
+			wagered.add(bet);
+		}
+		
+		/**
+		 * Counts a cash-out.
+		 * 
+		 * @param payout the paid out amount
+		 */
+		public void countPayout(long payout) {
+			payouts.increment();
+			paidOut.add(payout);
+		}
+		
+		private void reset() {
+			for(LatencyHistogram histogram : new LatencyHistogram[] {tickInterval, tickProcessing, settlementDelay}) {
+				histogram.reset();
+			}
+			for(LongAdder counter : new LongAdder[] {rounds, bets, wagered, payouts, paidOut}) {
+				counter.reset();
+			}
+		}
+	}
+}
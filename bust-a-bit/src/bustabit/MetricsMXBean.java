@@ -0,0 +1,49 @@
+package bustabit;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link Metrics}, registered as
+ * {@value Metrics#OBJECT_NAME}. Every histogram is summarized as a map of
+ * its count, mean, maximum and percentiles.
+ * 
+ * @author FICHEKK
+ */
+public interface MetricsMXBean {
+	
+	/** @return the number of crashed rounds */
+	long getRounds();
+	
+	/** @return the number of placed bets */
+	long getBets();
+	
+	/** @return the sum of the placed bets */
+	long getWagered();
+	
+	/** @return the number of cash-outs */
+	long getPayouts();
+	
+	/** @return the sum of the paid out amounts */
+	long getPaidOut();
+	
+	/** @return the time between two consecutive ticks of a round, in nanoseconds */
+	Map<String, Long> getTickIntervalNanos();
+	
+	/** @return the time a tick takes, in nanoseconds */
+	Map<String, Long> getTickProcessingNanos();
+	
+	/** @return the time from a manual cash-out request to its settlement, in nanoseconds */
+	Map<String, Long> getSettlementDelayNanos();
+	
+	/** @return the time a save call blocks its caller, in nanoseconds */
+	Map<String, Long> getPersistenceSubmitNanos();
+	
+	/** @return the time the background writer takes to write a batch, in nanoseconds */
+	Map<String, Long> getPersistenceWriteNanos();
+	
+	/** @return the time the background writer takes to force the data to the storage device, in nanoseconds */
+	Map<String, Long> getPersistenceSyncNanos();
+	
+	/** Clears all of the metrics. */
+	void reset();
+}
@@ -0,0 +1,88 @@
+package bustabit;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The multiplier curve. The multiplier grows by the factor of {@code 1.001}
+ * every full 10 milliseconds since the start of the round:
+ * 
+ * <pre>
+ * multiplier(t) = 1.001 ^ floor(t / 10 ms)
+ * </pre>
+ * 
+ * rounded to thousandths. Because the multiplier depends only on the
+ * elapsed time, it does not drift with the scheduling jitter or with how
+ * often it is evaluated, and the instant at which any multiplier is reached
+ * can be computed up front.
+ * <p>
+ * The multipliers of all of the periods, up to the largest one that fits
+ * into a long, are computed once into a table of fixed-point thousandths.
+ * Evaluating the curve is then a division and a table lookup, and finding
+ * the instant of a multiplier is a binary search; neither involves any
+ * floating-point arithmetic.
+ * 
+ * @author FICHEKK
+ */
+public final class MultiplierCurve {
+	
+	/** The growth factor per growth period. */
+	private static final double GROWTH_FACTOR = 1.001;
+	
+	/** The growth period in nanoseconds. */
+	public static final long GROWTH_PERIOD = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	/** The multiplier (in thousandths) after every growth period. */
+	private static final long[] MILLI_AT_PERIOD = computeTable();
+	
+	/** Utility class, no instances. */
+	private MultiplierCurve() {
+	}
+	
+	/**
+	 * Returns the multiplier after the given time has passed since the start
+	 * of the round.
+	 * 
+	 * @param elapsedNanos the time since the start of the round in nanoseconds
+	 * @return the multiplier at the given time, in thousandths
+	 */
+	public static long milliAt(long elapsedNanos) {
+		if(elapsedNanos <= 0) return MILLI_AT_PERIOD[0];
+		
+		long period = elapsedNanos / GROWTH_PERIOD;
+		return MILLI_AT_PERIOD[(int) Math.min(period, MILLI_AT_PERIOD.length - 1)];
+	}
+	
+	/**
+	 * Returns the time (since the start of the round) at which the curve
+	 * reaches the given multiplier.
+	 * 
+	 * @param multiplierMilli the multiplier in thousandths
+	 * @return the time in nanoseconds at which the multiplier is reached, or
+	 * 		   {@link Long#MAX_VALUE} if it is never reached
+	 */
+	public static long nanosToReach(long multiplierMilli) {
+		int index = Arrays.binarySearch(MILLI_AT_PERIOD, multiplierMilli);
+		if(index < 0) index = -index - 1;
+		
+		// Equal neighbours can not occur, as the multiplier grows by at least 1 every period.
+		if(index >= MILLI_AT_PERIOD.length) return Long.MAX_VALUE;
+		return index * GROWTH_PERIOD;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private static long[] computeTable() {
+		// Every period whose multiplier still fits into a long.
+		int length = (int) (Math.log((double) Long.MAX_VALUE / FixedPoint.SCALE) / Math.log(GROWTH_FACTOR));
+		
+		// StrictMath, so that every platform computes the very same curve.
+		long[] table = new long[length];
+		for(int period = 0; period < length; period++) {
+			table[period] = Math.round(FixedPoint.SCALE * StrictMath.pow(GROWTH_FACTOR, period));
+		}
+		return table;
+	}
+}
@@ -0,0 +1,246 @@
+package bustabit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background persistence pipeline. The game thread only puts writes into
+ * a bounded queue; a single worker thread drains the queue, coalesces the
+ * pending writes into a batch and hands the whole batch to the
+ * {@link Sink} at once (group commit). All of the property change
+ * notifications within a batch are coalesced into a single flush.
+ * <p>
+ * When the data is forced to the storage device is decided by the
+ * {@link Durability} mode.
+ * 
+ * @author FICHEKK
+ */
+public class PersistenceQueue implements AutoCloseable {
+	
+	/**
+	 * Decides how often the written data is forced to the storage device.
+	 */
+	public enum Durability {
+		/** Every batch is forced before the next one is taken. */
+		EVERY_WRITE,
+		/** The written data is forced at most once per sync interval. */
+		INTERVAL,
+		/** The written data is forced only when the queue is closed. */
+		ON_SHUTDOWN
+	}
+	
+	/**
+	 * The destination of the batched writes.
+	 */
+	public interface Sink {
+		
+		/**
+		 * Writes a batch of rounds and flushes the changed properties.
+		 * 
+		 * @param rounds the rounds to be written, in the order they were submitted
+		 * @param propertiesChanged {@code true} if any property was changed
+		 * 		  since the previous batch
+		 * @throws IOException if the batch could not be written
+		 */
+		void write(List<Round> rounds, boolean propertiesChanged) throws IOException;
+		
+		/**
+		 * Forces all of the written data to the storage device.
+		 * 
+		 * @throws IOException if the data could not be forced
+		 */
+		void sync() throws IOException;
+	}
+	
+	/** The default capacity of the write queue. */
+	public static final int DEFAULT_CAPACITY = 65_536;
+	
+	/** The maximum number of writes that are coalesced into a single batch. */
+	private static final int MAX_BATCH_SIZE = 4096;
+	
+	/** Marks the end of the queue. */
+	private static final Entry POISON = new Entry(null);
+	
+	/** Signals that the properties were changed. */
+	private static final Entry PROPERTIES = new Entry(null);
+	
+	/** The pending writes. */
+	private final BlockingQueue<Entry> queue;
+	
+	/** The destination of the writes. */
+	private final Sink sink;
+	
+	/** The durability mode. */
+	private final Durability durability;
+	
+	/** The sync interval in milliseconds, used by {@link Durability#INTERVAL}. */
+	private final long syncIntervalMillis;
+	
+	/** The worker thread that performs the writes. */
+	private final Thread worker;
+	
+	/** Flag that indicates if the queue still accepts writes. */
+	private volatile boolean open = true;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs and starts a new persistence queue.
+	 * 
+	 * @param sink the destination of the writes
+	 * @param durability the durability mode
+	 * @param syncIntervalMillis the sync interval in milliseconds, used only
+	 * 		  by the {@link Durability#INTERVAL} mode
+	 * @param capacity the maximum number of pending writes
+	 */
+	public PersistenceQueue(Sink sink, Durability durability, long syncIntervalMillis, int capacity) {
+		if(syncIntervalMillis <= 0) throw new IllegalArgumentException("Sync interval must be positive.");
+		
+		this.sink = sink;
+		this.durability = durability;
+		this.syncIntervalMillis = syncIntervalMillis;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		
+		worker = new Thread(this::drain, "persistence");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Queues the given round to be written.
+	 * 
+	 * @param round the round to be written
+	 */
+	public void submitRound(Round round) {
+		submit(new Entry(round));
+	}
+	
+	/**
+	 * Signals that the properties were changed and should be flushed.
+	 */
+	public void submitPropertiesChanged() {
+		submit(PROPERTIES);
+	}
+	
+	/**
+	 * Stops accepting writes, writes out everything that is still queued,
+	 * forces it to the storage device and waits for the worker to finish.
+	 */
+	@Override
+	public void close() {
+		if(!open) return;
+		open = false;
+		
+		try {
+			queue.put(POISON);
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							 WORKER THREAD
+	//-----------------------------------------------------------------------
+	
+	private void drain() {
+		List<Entry> batch = new ArrayList<>();
+		List<Round> rounds = new ArrayList<>();
+		boolean propertiesChanged = false;
+		
+		long lastSync = System.nanoTime();
+		boolean unsynced = false;
+		boolean finished = false;
+		
+		while(!finished) {
+			try {
+				Entry first = durability == Durability.INTERVAL && unsynced
+							? queue.poll(syncIntervalMillis, TimeUnit.MILLISECONDS)
+							: queue.take();
+							
+				if(first != null) {
+					batch.add(first);
+					queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+				}
+			} catch (InterruptedException e) {
+				// The worker only stops once it takes the poison entry.
+				continue;
+			}
+			
+			for(Entry entry : batch) {
+				if(entry == POISON) {
+					finished = true;
+				} else if(entry == PROPERTIES) {
+					propertiesChanged = true;
+				} else {
+					rounds.add(entry.round);
+				}
+			}
+			batch.clear();
+			
+			if(!rounds.isEmpty() || propertiesChanged) {
+				try {
+					sink.write(rounds, propertiesChanged);
+					unsynced = true;
+				} catch (IOException e) {
+					System.err.println("Could not write " + rounds.size() + " rounds. The save files might be deleted or corrupted.");
+				}
+				rounds.clear();
+				propertiesChanged = false;
+			}
+			
+			long now = System.nanoTime();
+			boolean syncDue = finished
+						   || durability == Durability.EVERY_WRITE
+						   || durability == Durability.INTERVAL && now - lastSync >= TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+						
+			if(unsynced && syncDue) {
+				try {
+					sink.sync();
+				} catch (IOException e) {
+					System.err.println("Could not force the saved data to the storage device.");
+				}
+				unsynced = false;
+				lastSync = now;
+			}
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private void submit(Entry entry) {
+		if(!open) throw new IllegalStateException("The persistence queue is closed.");
+		
+		if(!queue.offer(entry)) {
+			System.err.println("Persistence queue is full, waiting for the storage device.");
+			try {
+				queue.put(entry);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * A single queued write.
+	 */
+	private static final class Entry {
+		final Round round;
+		
+		Entry(Round round) {
+			this.round = round;
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-back store of the player properties. The in-memory map is the
+ * authoritative copy: reading or changing a property never touches the disk,
+ * changed properties are only marked as dirty.
+ * <p>
+ * The persistent form consists of two files:
+ * <ul>
+ * 	<li>the <b>snapshot</b> ({@code player.dat}), holding {@code key=value} lines, and</li>
+ * 	<li>the <b>change log</b> ({@code player.log}), holding the {@code key=value}
+ * 		lines that were changed since the snapshot was taken.</li>
+ * </ul>
+ * {@link #flush()} appends the dirty properties to the change log. Once the
+ * log grows past the compaction threshold, a new snapshot is written to a
+ * temporary file, atomically renamed over the old one, and the log is emptied.
+ * When loading, the log is replayed on top of the snapshot.
+ * <p>
+ * Every snapshot has a generation, one higher than that of the snapshot it
+ * replaced, and the log starts with the generation of the snapshot it
+ * belongs to; both are kept on a {@code #generation=} line. A log that
+ * belongs to an older snapshot, because the process died after the new
+ * snapshot was renamed but before the log was emptied, is not replayed,
+ * since the new snapshot already holds all of its changes. A file without
+ * the line is of generation 0.
+ * 
+ * @author FICHEKK
+ */
+public class PropertyStore implements Closeable {
+	
+	/** The number of log entries after which the snapshot is rewritten. */
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 1024;
+	
+	/** The start of the line holding the generation of the snapshot. */
+	private static final String GENERATION_PREFIX = "#generation=";
+	
+	/** The authoritative values of the properties. */
+	private final Map<String, String> values = new ConcurrentHashMap<>();
+	
+	/** The property names, in the order they appear in the snapshot. */
+	private final List<String> order = new ArrayList<>();
+	
+	/** The properties that were changed since the last flush. */
+	private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+	
+	/** Path to the snapshot file. */
+	private final Path snapshotPath;
+	
+	/** Path to the change log file. */
+	private final Path logPath;
+	
+	/** The number of log entries after which the snapshot is rewritten. */
+	private final int compactionThreshold;
+	
+	/** The channel that the change log is appended through. */
+	private FileChannel log;
+	
+	/** The number of entries currently in the change log. */
+	private int logEntries;
+	
+	/** The generation of the current snapshot. */
+	private long generation;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Loads the store from the given snapshot and its change log. The change
+	 * log is stored next to the snapshot, with the {@code .log} extension.
+	 * 
+	 * @param snapshotPath the path of the snapshot file
+	 * @param compactionThreshold the number of log entries after which the
+	 * 		  snapshot is rewritten
+	 */
+	public PropertyStore(Path snapshotPath, int compactionThreshold) {
+		this.snapshotPath = snapshotPath;
+		this.logPath = snapshotPath.resolveSibling(stripExtension(snapshotPath.getFileName().toString()) + ".log");
+		this.compactionThreshold = compactionThreshold;
+		
+		loadSnapshot();
+		replayLog();
+		
+		try {
+			log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			
+			// Folding the replayed changes into the snapshot also gets rid of a torn last line.
+			if(log.size() > 0) {
+				compact();
+			} else {
+				startLog();
+			}
+		} catch (IOException e) {
+			System.err.println("Could not open the property change log. Properties will only be saved on exit.");
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Returns the value of the specified property.
+	 * 
+	 * @param property the property to be fetched
+	 * @return the value of the property, or {@code null} if it does not exist
+	 */
+	public String get(String property) {
+		return values.get(property);
+	}
+	
+	/**
+	 * Changes the value of an existing property and marks it as dirty.
+	 * 
+	 * @param property the property to be changed
+	 * @param value the new value of the property
+	 * @return {@code true} if the property exists
+	 */
+	public boolean set(String property, String value) {
+		String previous = values.computeIfPresent(property, (key, current) -> value);
+		if(previous == null) return false;
+		
+		dirty.add(property);
+		return true;
+	}
+	
+	/**
+	 * Appends all of the dirty properties to the change log with a single
+	 * write, and rewrites the snapshot if the log became too long.
+	 * 
+	 * @throws IOException if the properties could not be written
+	 */
+	public synchronized void flush() throws IOException {
+		if(dirty.isEmpty()) return;
+		
+		if(log == null) {
+			compact();
+			return;
+		}
+		
+		StringBuilder entries = new StringBuilder();
+		int count = 0;
+		
+		for(String property : dirty) {
+			// Removing before reading the value guarantees that a concurrent change is flushed later.
+			dirty.remove(property);
+			entries.append(property).append('=').append(values.get(property)).append('\n');
+			count++;
+		}
+		
+		ByteBuffer buffer = StandardCharsets.UTF_8.encode(entries.toString());
+		while(buffer.hasRemaining()) {
+			log.write(buffer);
+		}
+		
+		logEntries += count;
+		if(logEntries >= compactionThreshold) {
+			compact();
+		}
+	}
+	
+	/**
+	 * Forces the change log to the storage device.
+	 * 
+	 * @throws IOException if the log could not be forced
+	 */
+	public synchronized void sync() throws IOException {
+		if(log != null) {
+			log.force(false);
+		}
+	}
+	
+	/**
+	 * Writes a new snapshot of all of the properties and empties the change log.
+	 * The snapshot is written to a temporary file first and then atomically
+	 * renamed, so a crash leaves either the old or the new snapshot in place;
+	 * the log of the old snapshot is not replayed over the new one.
+	 * 
+	 * @throws IOException if the snapshot could not be written
+	 */
+	public synchronized void compact() throws IOException {
+		dirty.clear();
+		
+		List<String> lines = new ArrayList<>(order.size() + 1);
+		lines.add(GENERATION_PREFIX + (generation + 1));
+		for(String property : order) {
+			lines.add(property + "=" + values.get(property));
+		}
+		
+		Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+		Files.write(temporary, lines, StandardCharsets.UTF_8);
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		generation++;
+		
+		startLog();
+	}
+	
+	/**
+	 * Compacts the store and closes the change log.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			compact();
+		} finally {
+			if(log != null) {
+				log.close();
+				log = null;
+			}
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							    LOADING
+	//-----------------------------------------------------------------------
+	
+	private void loadSnapshot() {
+		try {
+			for(String line : Files.readAllLines(snapshotPath)) {
+				if(line.startsWith(GENERATION_PREFIX)) {
+					generation = parseGeneration(line);
+					continue;
+				}
+				
+				if(line.isBlank()) {
+					System.err.println("Line '" + line + "' is blank.");
+					continue;
+				}
+				
+				if(!line.contains("=")) {
+					System.err.println("Expected separator '=' in line '" + line + "'.");
+					continue;
+				}
+				
+				String[] parts = line.split("=");
+				
+				if(parts.length != 2) {
+					System.err.println("Multiple separators '=' in line '" + line + "'.");
+					continue;
+				}
+				
+				System.out.println("Loading property: " + parts[0] + " = " + parts[1]);
+				if(values.put(parts[0], parts[1]) == null) {
+					order.add(parts[0]);
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Could not load the property data.");
+		}
+	}
+	
+	private void replayLog() {
+		if(!Files.exists(logPath)) return;
+		
+		try {
+			String content = new String(Files.readAllBytes(logPath), StandardCharsets.UTF_8);
+			
+			int start = 0;
+			long logGeneration = 0;
+			if(content.startsWith(GENERATION_PREFIX)) {
+				start = content.indexOf('\n') + 1;
+				// A torn first line means that nothing was logged after it.
+				if(start == 0) return;
+				logGeneration = parseGeneration(content.substring(0, start - 1));
+			}
+			
+			if(logGeneration != generation) {
+				System.out.println("Ignoring the property change log of generation " + logGeneration +
+								   ", already folded into the snapshot of generation " + generation + ".");
+				return;
+			}
+			
+			// Only complete lines are replayed; a torn last line is ignored.
+			for(int end = content.indexOf('\n', start); end >= 0; start = end + 1, end = content.indexOf('\n', start)) {
+				String line = content.substring(start, end);
+				int separator = line.indexOf('=');
+				
+				if(separator <= 0 || !values.containsKey(line.substring(0, separator))) {
+					System.err.println("Ignoring property change '" + line + "'.");
+					continue;
+				}
+				
+				values.put(line.substring(0, separator), line.substring(separator + 1));
+				logEntries++;
+			}
+			
+			if(logEntries > 0) {
+				System.out.println("Replayed " + logEntries + " property changes.");
+			}
+		} catch (IOException e) {
+			System.err.println("Could not load the property change log.");
+		}
+	}
+	
+	/**
+	 * Empties the change log and starts it with the generation of the
+	 * current snapshot. The log is forced, so no entry can be appended to
+	 * the log of an older snapshot that survives a crash.
+	 */
+	private void startLog() throws IOException {
+		logEntries = 0;
+		if(log == null) return;
+		
+		log.truncate(0);
+		ByteBuffer header = StandardCharsets.UTF_8.encode(GENERATION_PREFIX + generation + "\n");
+		while(header.hasRemaining()) {
+			log.write(header);
+		}
+		log.force(false);
+	}
+	
+	private static long parseGeneration(String line) {
+		try {
+			return Long.parseLong(line.substring(GENERATION_PREFIX.length()).trim());
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid generation line '" + line + "'.");
+			return -1;
+		}
+	}
+	
+	private static String stripExtension(String fileName) {
+		int dot = fileName.lastIndexOf('.');
+		return dot < 0 ? fileName : fileName.substring(0, dot);
+	}
+}
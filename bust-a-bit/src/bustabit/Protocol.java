@@ -0,0 +1,263 @@
+package bustabit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol spoken between a {@link GameServer} and its clients.
+ * Every message starts with its one-byte type, followed by fixed-size,
+ * big-endian fields, so the size of a message is known from its type
+ * alone and no length prefix is needed. The only exception are the tick
+ * frames, whose single field is a variable-length (LEB128) unsigned
+ * integer. Multipliers are sent in thousandths.
+ * 
+ * <pre>
+ * client -> server
+ *   BET          bet (long), auto cash-out (long, 0 if not set)
+ *   CASH_OUT
+ *   SPECTATE     subscribes to the tick frames
+ * 
+ * server -> client
+ *   WELCOME      bank-roll (long)
+ *   BETTING      round id (long), betting time in milliseconds (int)
+ *   STARTED      round id (long)
+ *   BET_ACCEPTED bet (long), bank-roll (long)
+ *   BET_REJECTED reason (byte)
+ *   CASHED_OUT   multiplier (long), payout (long), bank-roll (long)
+ *   CRASHED      crash multiplier (long)
+ *   TICK         multiplier minus the multiplier of the previous frame (varint)
+ *   KEYFRAME     multiplier (varint)
+ * </pre>
+ * A spectator receives a {@link #KEYFRAME} first, and again whenever it
+ * fell behind and missed frames; the {@link #TICK} frames in between are
+ * relative to the previous frame. {@link #STARTED} resets the multiplier
+ * the next frame is relative to to x1.000.
+ * 
+ * @author FICHEKK
+ */
+public final class Protocol {
+	
+	/** The port the server listens on by default. */
+	public static final int DEFAULT_PORT = 7777;
+	
+	//-----------------------------------------------------------------------
+	//							MESSAGE TYPES
+	//-----------------------------------------------------------------------
+	
+	/** Places a bet on the next round. */
+	public static final byte BET = 1;
+	
+	/** Cashes out of the running round. */
+	public static final byte CASH_OUT = 2;
+	
+	/** Subscribes to the tick frames. */
+	public static final byte SPECTATE = 3;
+	
+	/** Sent once, right after the connection is accepted. */
+	public static final byte WELCOME = 16;
+	
+	/** The bets for the next round are being accepted. */
+	public static final byte BETTING = 17;
+	
+	/** The round started. */
+	public static final byte STARTED = 18;
+	
+	/** The player's bet was placed. */
+	public static final byte BET_ACCEPTED = 19;
+	
+	/** The player's bet was not placed. */
+	public static final byte BET_REJECTED = 20;
+	
+	/** The player cashed out. */
+	public static final byte CASHED_OUT = 21;
+	
+	/** The round crashed. */
+	public static final byte CRASHED = 22;
+	
+	/** The multiplier changed, relative to the previous frame. */
+	public static final byte TICK = 23;
+	
+	/** The multiplier changed, as an absolute value. */
+	public static final byte KEYFRAME = 24;
+	
+	//-----------------------------------------------------------------------
+	//							REJECTION REASONS
+	//-----------------------------------------------------------------------
+	
+	/** The round is already running. */
+	public static final byte REJECTED_RUNNING = 1;
+	
+	/** The player already has a bet on the round. */
+	public static final byte REJECTED_DUPLICATE = 2;
+	
+	/** The bet or the auto cash-out is out of range. */
+	public static final byte REJECTED_INVALID = 3;
+	
+	/** The bet is higher than the player's bank-roll. */
+	public static final byte REJECTED_FUNDS = 4;
+	
+	/** The round has no room for more players. */
+	public static final byte REJECTED_FULL = 5;
+	
+	//-----------------------------------------------------------------------
+	//							MESSAGE SIZES
+	//-----------------------------------------------------------------------
+	
+	/** The size of the largest message in bytes. */
+	public static final int MAX_MESSAGE_SIZE = 25;
+	
+	/** The size of the largest tick frame in bytes. */
+	public static final int MAX_FRAME_SIZE = 1 + 10;
+	
+	/** Marks the message types that consist of a single varint. */
+	private static final byte VARINT = -1;
+	
+	/** The size of each message type, {@link #VARINT}, or 0 for unknown types. */
+	private static final byte[] SIZES = new byte[128];
+	
+	static {
+		SIZES[BET]          = 1 + 2 * Long.BYTES;
+		SIZES[CASH_OUT]     = 1;
+		SIZES[SPECTATE]     = 1;
+		SIZES[WELCOME]      = 1 + Long.BYTES;
+		SIZES[BETTING]      = 1 + Long.BYTES + Integer.BYTES;
+		SIZES[STARTED]      = 1 + Long.BYTES;
+		SIZES[BET_ACCEPTED] = 1 + 2 * Long.BYTES;
+		SIZES[BET_REJECTED] = 1 + 1;
+		SIZES[CASHED_OUT]   = 1 + 3 * Long.BYTES;
+		SIZES[CRASHED]      = 1 + Long.BYTES;
+		SIZES[TICK]         = VARINT;
+		SIZES[KEYFRAME]     = VARINT;
+	}
+	
+	/** Utility class, no instances. */
+	private Protocol() {
+	}
+	
+	/**
+	 * Returns the size of the message that starts at the position of the
+	 * given buffer. The buffer is not modified.
+	 * 
+	 * @param buffer the received bytes, in read mode
+	 * @return the size of the message in bytes, including the type, 0 if
+	 * 		   the buffer does not hold the whole message yet, or -1 if the
+	 * 		   type is unknown
+	 */
+	public static int messageSize(ByteBuffer buffer) {
+		int position = buffer.position();
+		byte type = buffer.get(position);
+		if(type <= 0 || SIZES[type] == 0) return -1;
+		
+		if(SIZES[type] != VARINT) {
+			return buffer.remaining() >= SIZES[type] ? SIZES[type] : 0;
+		}
+		
+		// The varint ends with the first byte that has the high bit clear.
+		for(int i = position + 1; i < buffer.limit(); i++) {
+			if(buffer.get(i) >= 0) return i - position + 1;
+			if(i - position >= MAX_FRAME_SIZE - 1) return -1;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Returns a human readable description of a rejection reason.
+	 * 
+	 * @param reason the reason of a {@link #BET_REJECTED} message
+	 * @return the description of the reason
+	 */
+	public static String describeRejection(byte reason) {
+		switch(reason) {
+			case REJECTED_RUNNING:   return "The round is already running.";
+			case REJECTED_DUPLICATE: return "The bet is already placed.";
+			case REJECTED_INVALID:   return "The bet or the auto cash-out is out of range.";
+			case REJECTED_FUNDS:     return "The bank-roll is too low for this bet.";
+			case REJECTED_FULL:      return "The round is full.";
+			default:                 return "Unknown reason " + reason + ".";
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							  ENCODING
+	//-----------------------------------------------------------------------
+	
+	/** Writes a {@link #BET} message. */
+	public static void writeBet(ByteBuffer buffer, long bet, long autoCashOutMilli) {
+		buffer.put(BET).putLong(bet).putLong(autoCashOutMilli);
+	}
+	
+	/** Writes a {@link #CASH_OUT} message. */
+	public static void writeCashOut(ByteBuffer buffer) {
+		buffer.put(CASH_OUT);
+	}
+	
+	/** Writes a {@link #SPECTATE} message. */
+	public static void writeSpectate(ByteBuffer buffer) {
+		buffer.put(SPECTATE);
+	}
+	
+	/** Writes a {@link #WELCOME} message. */
+	public static void writeWelcome(ByteBuffer buffer, long bankroll) {
+		buffer.put(WELCOME).putLong(bankroll);
+	}
+	
+	/** Writes a {@link #BETTING} message. */
+	public static void writeBetting(ByteBuffer buffer, long roundId, int bettingMillis) {
+		buffer.put(BETTING).putLong(roundId).putInt(bettingMillis);
+	}
+	
+	/** Writes a {@link #STARTED} message. */
+	public static void writeStarted(ByteBuffer buffer, long roundId) {
+		buffer.put(STARTED).putLong(roundId);
+	}
+	
+	/** Writes a {@link #BET_ACCEPTED} message. */
+	public static void writeBetAccepted(ByteBuffer buffer, long bet, long bankroll) {
+		buffer.put(BET_ACCEPTED).putLong(bet).putLong(bankroll);
+	}
+	
+	/** Writes a {@link #BET_REJECTED} message. */
+	public static void writeBetRejected(ByteBuffer buffer, byte reason) {
+		buffer.put(BET_REJECTED).put(reason);
+	}
+	
+	/** Writes a {@link #CASHED_OUT} message. */
+	public static void writeCashedOut(ByteBuffer buffer, long multiplierMilli, long payout, long bankroll) {
+		buffer.put(CASHED_OUT).putLong(multiplierMilli).putLong(payout).putLong(bankroll);
+	}
+	
+	/** Writes a {@link #CRASHED} message. */
+	public static void writeCrashed(ByteBuffer buffer, long crashMilli) {
+		buffer.put(CRASHED).putLong(crashMilli);
+	}
+	
+	/**
+	 * Writes a tick frame, a {@link #TICK} or a {@link #KEYFRAME}.
+	 * 
+	 * @param buffer the buffer to write to
+	 * @param type the type of the frame
+	 * @param value the delta or the multiplier, not negative
+	 */
+	public static void writeFrame(ByteBuffer buffer, byte type, long value) {
+		buffer.put(type);
+		while((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+	
+	/**
+	 * Reads the value of a tick frame whose type was already read.
+	 * 
+	 * @param buffer the buffer positioned at the value
+	 * @return the delta or the multiplier
+	 */
+	public static long readFrameValue(ByteBuffer buffer) {
+		long value = 0;
+		for(int shift = 0; ; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if(b >= 0) return value;
+		}
+	}
+}
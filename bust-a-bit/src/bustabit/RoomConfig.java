@@ -0,0 +1,140 @@
+package bustabit;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The settings of a {@link GameRoom}: where it listens, how fast it ticks,
+ * how long it takes bets and how many and how large bets it accepts.
+ * Immutable.
+ * 
+ * @author FICHEKK
+ */
+public final class RoomConfig {
+	
+	/** The name of the room. */
+	private final String name;
+	
+	/** The address the room listens on. */
+	private final InetSocketAddress address;
+	
+	/** The maximum number of players in a round. */
+	private final int capacity;
+	
+	/** The bank-roll of a new connection. */
+	private final long startingBankroll;
+	
+	/** The time in which the bets for the next round are accepted, in milliseconds. */
+	private final int bettingMillis;
+	
+	/** The time between two consecutive ticks in nanoseconds. */
+	private final long tickIntervalNanos;
+	
+	/** The largest accepted bet. */
+	private final long maxBet;
+	
+	/**
+	 * Constructs the settings of a room.
+	 * 
+	 * @param name the name of the room
+	 * @param address the address the room listens on
+	 * @param capacity the maximum number of players in a round
+	 * @param startingBankroll the bank-roll of a new connection
+	 * @param bettingMillis the time in which the bets are accepted, in milliseconds
+	 * @param tickIntervalNanos the time between two consecutive ticks in nanoseconds
+	 * @param maxBet the largest accepted bet
+	 */
+	public RoomConfig(String name, InetSocketAddress address, int capacity, long startingBankroll,
+					  int bettingMillis, long tickIntervalNanos, long maxBet) {
+		if(capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+		if(bettingMillis < 0) throw new IllegalArgumentException("Betting time must not be negative.");
+		if(tickIntervalNanos <= 0) throw new IllegalArgumentException("Tick interval must be positive.");
+		if(maxBet <= 0) throw new IllegalArgumentException("Largest bet must be positive.");
+		
+		this.name = name;
+		this.address = address;
+		this.capacity = capacity;
+		this.startingBankroll = startingBankroll;
+		this.bettingMillis = bettingMillis;
+		this.tickIntervalNanos = tickIntervalNanos;
+		this.maxBet = maxBet;
+	}
+	
+	/**
+	 * Parses the settings of a room from {@code name@port[:tickMillis[:bettingMillis[:capacity[:maxBet]]]]},
+	 * for example {@code fast@7778:5:2000:100:50}. The settings that are left
+	 * out are the ones of the {@link GameServer}: 10 ms ticks, the betting
+	 * time, the capacity and the bank-roll of the {@code bustabit.server.*}
+	 * system properties, and no limit on the bets.
+	 * 
+	 * @param spec the settings
+	 * @return the parsed settings
+	 * @throws IllegalArgumentException if the settings are malformed
+	 */
+	public static RoomConfig parse(String spec) {
+		int at = spec.indexOf('@');
+		if(at <= 0) throw new IllegalArgumentException("Expected name@port, got '" + spec + "'.");
+		
+		String[] parts = spec.substring(at + 1).split(":");
+		try {
+			int port = Integer.parseInt(parts[0]);
+			long tickMillis = parts.length > 1 ? Long.parseLong(parts[1]) : 10;
+			int bettingMillis = parts.length > 2 ? Integer.parseInt(parts[2]) : Integer.getInteger("bustabit.server.betting", 5000);
+			int capacity = parts.length > 3 ? Integer.parseInt(parts[3]) : Integer.getInteger("bustabit.server.capacity", 10_000);
+			long maxBet = parts.length > 4 ? Long.parseLong(parts[4]) : Long.MAX_VALUE;
+			
+			return new RoomConfig(spec.substring(0, at), new InetSocketAddress(port), capacity,
+								  Long.getLong("bustabit.server.bankroll", 10_000), bettingMillis,
+								  TimeUnit.MILLISECONDS.toNanos(tickMillis), maxBet);
+			
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed room '" + spec + "'.");
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//								GETTERS
+	//-----------------------------------------------------------------------
+	
+	/** @return the name of the room */
+	public String getName() {
+		return name;
+	}
+	
+	/** @return the address the room listens on */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+	
+	/** @return the maximum number of players in a round */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/** @return the bank-roll of a new connection */
+	public long getStartingBankroll() {
+		return startingBankroll;
+	}
+	
+	/** @return the time in which the bets are accepted, in milliseconds */
+	public int getBettingMillis() {
+		return bettingMillis;
+	}
+	
+	/** @return the time between two consecutive ticks in nanoseconds */
+	public long getTickIntervalNanos() {
+		return tickIntervalNanos;
+	}
+	
+	/** @return the largest accepted bet */
+	public long getMaxBet() {
+		return maxBet;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s@%d (%d ms ticks, %d ms betting, %d players, bets up to %d)",
+							 name, address.getPort(), TimeUnit.NANOSECONDS.toMillis(tickIntervalNanos),
+							 bettingMillis, capacity, maxBet);
+	}
+}
@@ -0,0 +1,310 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts many independent {@link GameRoom}s on a fixed pool of shards, each
+ * an {@link EventLoop} on a thread of its own; by default there are as many
+ * shards as there are cores. A room lives on exactly one shard, which drives
+ * all of its rounds and connections, so the shards share no locks and the
+ * throughput grows with the number of cores rather than with the number of
+ * rooms or threads.
+ * <p>
+ * A new room goes to the shard with the fewest rooms (and then the fewest
+ * connections), and can later be moved to another shard, with its
+ * connections and the round in progress, for example to even out the load.
+ * The managing methods may be called from any thread; they only hand
+ * commands over to the shards.
+ * 
+ * @author FICHEKK
+ */
+public class RoomManager implements Closeable {
+	
+	/** The shards. */
+	private final EventLoop[] shards;
+	
+	/** The threads of the shards. */
+	private final Thread[] threads;
+	
+	/** The rooms, by name. */
+	private final Map<String, Placement> rooms = new ConcurrentHashMap<>();
+	
+	/** The number of rooms placed on each of the shards. */
+	private final int[] roomCounts;
+	
+	/** The statistics of the players of all of the rooms. */
+	private final Leaderboard leaderboard = new Leaderboard(Leaderboard.DEFAULT_SIZE);
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a manager and starts its shards, with no rooms.
+	 * 
+	 * @param shardCount the number of shards
+	 * @throws IOException if a shard could not be created
+	 */
+	public RoomManager(int shardCount) throws IOException {
+		if(shardCount <= 0) throw new IllegalArgumentException("Shard count must be positive.");
+		
+		this.shards = new EventLoop[shardCount];
+		this.threads = new Thread[shardCount];
+		this.roomCounts = new int[shardCount];
+		
+		for(int i = 0; i < shardCount; i++) {
+			EventLoop shard = new EventLoop("shard-" + i);
+			shard.getMetrics().register();
+			shards[i] = shard;
+			
+			threads[i] = new Thread(() -> {
+				try {
+					shard.run();
+				} catch (IOException | RuntimeException e) {
+					System.err.println(shard + " failed: " + e);
+				}
+			}, shard.toString());
+			threads[i].start();
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Creates a room and places it on the least loaded shard. The room is
+	 * bound right away; it starts playing as soon as its shard gets to it.
+	 * 
+	 * @param config the settings of the room
+	 * @param crashSource supplies the crash multipliers of the rounds
+	 * @return the room
+	 * @throws IOException if the room could not be bound
+	 * @throws IllegalArgumentException if a room of the same name exists
+	 */
+	public synchronized GameRoom createRoom(RoomConfig config, CrashSource crashSource) throws IOException {
+		if(rooms.containsKey(config.getName())) {
+			throw new IllegalArgumentException("Room '" + config.getName() + "' already exists.");
+		}
+		
+		int shard = 0;
+		for(int i = 1; i < shards.length; i++) {
+			if(roomCounts[i] < roomCounts[shard] || roomCounts[i] == roomCounts[shard]
+					&& shards[i].getMetrics().getConnections() < shards[shard].getMetrics().getConnections()) {
+				shard = i;
+			}
+		}
+		
+		GameRoom room = new GameRoom(config, crashSource, leaderboard);
+		Placement placement = new Placement(room, shard);
+		placement.pending = shards[shard].attach(room);
+		rooms.put(config.getName(), placement);
+		roomCounts[shard]++;
+		return room;
+	}
+	
+	/**
+	 * Moves a room to another shard. The room is detached by its current
+	 * shard and then attached by the new one; the connections stay open, but
+	 * a running round is neither ticked nor cashed out in between (see
+	 * {@link GameRoom#detach()}), so a room is best moved between rounds. A
+	 * room that is still being moved is moved again once it arrives.
+	 * 
+	 * @param name the name of the room
+	 * @param shard the index of the new shard
+	 * @return the future that completes once the room is on the new shard
+	 * @throws IllegalArgumentException if there is no such room or shard
+	 */
+	public synchronized CompletableFuture<Void> migrate(String name, int shard) {
+		Placement placement = getPlacement(name);
+		if(shard < 0 || shard >= shards.length) throw new IllegalArgumentException("No shard " + shard + ".");
+		if(shard == placement.shard) return placement.pending;
+		
+		EventLoop from = shards[placement.shard];
+		EventLoop to = shards[shard];
+		GameRoom room = placement.room;
+		
+		placement.pending = placement.pending
+				.exceptionally(e -> null)
+				.thenCompose(ignored -> from.detach(room))
+				.thenCompose(ignored -> to.attach(room));
+		
+		roomCounts[placement.shard]--;
+		roomCounts[shard]++;
+		placement.shard = shard;
+		return placement.pending;
+	}
+	
+	/**
+	 * Closes a room and all of its connections.
+	 * 
+	 * @param name the name of the room
+	 * @return the future that completes once the room is closed
+	 * @throws IllegalArgumentException if there is no such room
+	 */
+	public synchronized CompletableFuture<Void> closeRoom(String name) {
+		Placement placement = getPlacement(name);
+		EventLoop shard = shards[placement.shard];
+		
+		rooms.remove(name);
+		roomCounts[placement.shard]--;
+		return placement.pending
+				.exceptionally(e -> null)
+				.thenCompose(ignored -> shard.close(placement.room));
+	}
+	
+	/**
+	 * Returns the room of the given name.
+	 * 
+	 * @param name the name of the room
+	 * @return the room, or {@code null} if there is no such room
+	 */
+	public GameRoom getRoom(String name) {
+		Placement placement = rooms.get(name);
+		return placement == null ? null : placement.room;
+	}
+	
+	/** @return the statistics of the players of all of the rooms */
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}
+	
+	/** @return the number of shards */
+	public int getShardCount() {
+		return shards.length;
+	}
+	
+	/**
+	 * Returns the metrics of a shard.
+	 * 
+	 * @param shard the index of the shard
+	 * @return the metrics of the shard
+	 */
+	public ShardMetrics getMetrics(int shard) {
+		return shards[shard].getMetrics();
+	}
+	
+	/**
+	 * Describes the metrics of all of the shards and the leaderboard as text.
+	 * 
+	 * @return the text dump of the shards
+	 */
+	public String dump() {
+		StringBuilder sb = new StringBuilder(256 * shards.length + 512);
+		for(EventLoop shard : shards) {
+			sb.append(shard.getMetrics()).append("\r\n");
+		}
+		return sb.append(leaderboard).toString();
+	}
+	
+	/**
+	 * Closes all of the shards and the rooms, and waits for the threads of
+	 * the shards to finish.
+	 */
+	@Override
+	public void close() throws IOException {
+		for(EventLoop shard : shards) {
+			shard.close();
+		}
+		
+		try {
+			for(Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		for(EventLoop shard : shards) {
+			shard.getMetrics().unregister();
+		}
+		// A room caught between two shards belongs to neither of them.
+		for(Placement placement : rooms.values()) {
+			placement.room.close();
+		}
+	}
+	
+	/**
+	 * Runs the given rooms until the process is terminated. The number of
+	 * shards is the {@code bustabit.shards} system property, the number of
+	 * cores by default.
+	 * 
+	 * @param args the rooms, as described by {@link RoomConfig#parse(String)}
+	 * @throws IOException if a room could not be started
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.err.println("Expected the rooms, for example: lobby@7777 fast@7778:5:2000:100:50");
+			return;
+		}
+		
+		List<RoomConfig> configs = new ArrayList<>();
+		for(String arg : args) {
+			configs.add(RoomConfig.parse(arg));
+		}
+		Metrics.start();
+		
+		// One source for all of the rooms, so a hash chain is not played twice; it is called once per round.
+		CrashSource source = CrashSource.configured();
+		CrashSource shared = () -> {
+			synchronized(source) {
+				return source.nextCrashMilli();
+			}
+		};
+		
+		int shardCount = Integer.getInteger("bustabit.shards", Runtime.getRuntime().availableProcessors());
+		RoomManager manager = new RoomManager(shardCount);
+		for(RoomConfig config : configs) {
+			GameRoom room = manager.createRoom(config, shared);
+			System.out.println("Room " + room + " listening on " + room.getAddress() + ".");
+		}
+		
+		long interval = Long.getLong("bustabit.metrics.interval", 60);
+		if(interval > 0) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "shard-dump");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.scheduleAtFixedRate(() -> System.out.print(manager.dump()), interval, interval, TimeUnit.SECONDS);
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private Placement getPlacement(String name) {
+		Placement placement = rooms.get(name);
+		if(placement == null) throw new IllegalArgumentException("No room '" + name + "'.");
+		return placement;
+	}
+	
+	/**
+	 * The shard a room is placed on. Only changed under the lock of the manager.
+	 */
+	private static final class Placement {
+		
+		/** The room. */
+		final GameRoom room;
+		
+		/** The index of the shard the room is placed on, or is being moved to. */
+		int shard;
+		
+		/** The future of the latest attach or move of the room. */
+		CompletableFuture<Void> pending;
+		
+		Placement(GameRoom room, int shard) {
+			this.room = room;
+			this.shard = shard;
+		}
+	}
+}
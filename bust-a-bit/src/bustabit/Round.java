@@ -1,20 +1,25 @@
 package bustabit;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
- * Encapsulates a single game round data.
+ * Encapsulates a single game round data. All of the values are exact
+ * integers: the bet in whole units and the multipliers in fixed-point
+ * thousandths ({@code x1.226} is {@code 1226}).
  * 
  * @author FICHEKK
  */
 public class Round {
 	
 	/** Holds this round's player bet value. */
-	private double bet;
+	private final long bet;
 	
-	/** Holds the multiplier that player cashed out on. */
-	private double cashOut;
+	/** Holds the multiplier (in thousandths) that player cashed out on, or 0. */
+	private final long cashOutMilli;
 	
-	/** Holds this round's crash multiplier value. */
-	private double crash;
+	/** Holds this round's crash multiplier value in thousandths. */
+	private final long crashMilli;
 	
 	//-----------------------------------------------------------------------
 	//							CONSTRUCTOR
@@ -24,13 +29,14 @@ public class Round {
 	 * Constructs a new round with the specified player bet.
 	 * 
 	 * @param bet the player's bet
-	 * @param cashOut the player's cash-out multiplier
-	 * @param crash the round's crash multiplier
+	 * @param cashOutMilli the player's cash-out multiplier in thousandths,
+	 * 		  or 0 if the player did not cash out
+	 * @param crashMilli the round's crash multiplier in thousandths
 	 */
-	public Round(double bet, double cashOut, double crash) {
+	public Round(long bet, long cashOutMilli, long crashMilli) {
 		this.bet = bet;
-		this.cashOut = cashOut;
-		this.crash = crash;
+		this.cashOutMilli = cashOutMilli;
+		this.crashMilli = crashMilli;
 	}
 	
 	//-----------------------------------------------------------------------
@@ -42,27 +48,37 @@ public class Round {
 	 * 
 	 * @return the player's bet for this round
 	 */
-	public double getBet() {
+	public long getBet() {
 		return bet;
 	}
 	
+	/**
+	 * Returns the multiplier that the player cashed out on.
+	 * 
+	 * @return the player's cash-out multiplier in thousandths, or 0 if the
+	 * 		   player did not cash out
+	 */
+	public long getCashOutMilli() {
+		return cashOutMilli;
+	}
+	
 	/**
 	 * Returns this round's crash value.
 	 * 
-	 * @return this round's crash value
+	 * @return this round's crash value in thousandths
 	 */
-	public double getCrash() {
-		return crash;
+	public long getCrashMilli() {
+		return crashMilli;
 	}
 	
 	/**
 	 * Returns a flag that indicates if the player has
 	 * cashed out this round (player won).
 	 * 
-	 * @return
+	 * @return {@code true} if the player cashed out
 	 */
 	public boolean hasCashedOut() {
-		return cashOut > 0;
+		return cashOutMilli > 0;
 	}
 	
 	/**
@@ -70,33 +86,39 @@ public class Round {
 	 * 
 	 * @return the player's profit for this round
 	 */
-	public double getProfit() {
-		return (cashOut - 1) * bet;
+	public long getProfit() {
+		return FixedPoint.profit(bet, cashOutMilli);
 	}
 	
 	@Override
 	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("BET: ").append(bet).append(" | CASH-OUT: ");
+		
 		if(hasCashedOut()) {
-			return String.format("BET: %.0f | CASH-OUT: %.3f | CRASH: %.3f | PROFIT: %.0f\r\n", bet, cashOut, crash, getProfit());
-			
+			FastFormat.appendMilli(sb, cashOutMilli, '.');
 		} else {
-			return String.format("BET: %.0f | CASH-OUT: - | CRASH: %.3f | PROFIT: %.0f\r\n", bet, crash, getProfit());
+			sb.append('-');
 		}
+		
+		sb.append(" | CRASH: ");
+		FastFormat.appendMilli(sb, crashMilli, '.');
+		sb.append(" | PROFIT: ").append(getProfit()).append("\r\n");
+		return sb.toString();
 	}
 	
 	/**
 	 * Returns the compressed representation of a this round.
 	 * This method should be used when storing large quantities
-	 * of rounds to the persistent memory.
+	 * of rounds to the persistent memory. Writing the same text
+	 * into a reusable buffer, without allocating, is done by
+	 * {@link RoundEncoder#encodeAscii(long, long, long, ByteBuffer)}.
 	 * 
 	 * @return the compressed representation of a this round
 	 */
 	public String toStringCompressed() {
-		if(hasCashedOut()) {
-			return String.format("%.0f %.3f %.3f %.0f\r\n", bet, cashOut, crash, getProfit());
-			
-		} else {
-			return String.format("%.0f - %.3f %.0f\r\n", bet, crash, getProfit());
-		}
+		byte[] text = new byte[RoundEncoder.MAX_ASCII_SIZE];
+		int length = RoundEncoder.encodeAscii(bet, cashOutMilli, crashMilli, ByteBuffer.wrap(text));
+		return new String(text, 0, length, StandardCharsets.US_ASCII);
 	}
 }
@@ -0,0 +1,149 @@
+package bustabit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes rounds straight into a caller-supplied {@link ByteBuffer}, either
+ * as the binary {@link RoundJournal} record or as the ASCII line of the
+ * legacy text history. Nothing is allocated, and the text does not depend
+ * on the default locale: the decimal separator is always a dot.
+ * <p>
+ * The ASCII line has the format of {@link Round#toStringCompressed()}:
+ * 
+ * <pre>
+ * bet cash-out crash profit\r\n
+ * </pre>
+ * 
+ * where the cash-out is {@code -} if the player did not cash out.
+ * 
+ * @author FICHEKK
+ */
+public final class RoundEncoder {
+	
+	/** The largest possible size of an encoded ASCII line, in bytes. */
+	public static final int MAX_ASCII_SIZE = 4 * 21 + 3 + 2;
+	
+	/** Utility class, no instances. */
+	private RoundEncoder() {
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Writes the binary record of the given round at the buffer's position.
+	 * 
+	 * @param round the round to be encoded
+	 * @param target the buffer to write to, with at least
+	 * 		  {@link RoundJournal#RECORD_SIZE} bytes remaining
+	 */
+	public static void encodeBinary(Round round, ByteBuffer target) {
+		encodeBinary(round.getBet(), round.getCashOutMilli(), round.getCrashMilli(), target);
+	}
+	
+	/**
+	 * Writes a binary round record at the buffer's position.
+	 * 
+	 * @param bet the player's bet
+	 * @param cashOutMilli the cash-out multiplier in thousandths, or 0
+	 * @param crashMilli the crash multiplier in thousandths
+	 * @param target the buffer to write to, with at least
+	 * 		  {@link RoundJournal#RECORD_SIZE} bytes remaining
+	 */
+	public static void encodeBinary(long bet, long cashOutMilli, long crashMilli, ByteBuffer target) {
+		target.putLong(bet).putLong(cashOutMilli).putLong(crashMilli);
+	}
+	
+	/**
+	 * Writes the ASCII line of the given round at the buffer's position.
+	 * 
+	 * @param round the round to be encoded
+	 * @param target the buffer to write to, with at least
+	 * 		  {@link #MAX_ASCII_SIZE} bytes remaining
+	 * @return the number of bytes written
+	 */
+	public static int encodeAscii(Round round, ByteBuffer target) {
+		return encodeAscii(round.getBet(), round.getCashOutMilli(), round.getCrashMilli(), target);
+	}
+	
+	/**
+	 * Writes the ASCII line of a round at the buffer's position.
+	 * 
+	 * @param bet the player's bet
+	 * @param cashOutMilli the cash-out multiplier in thousandths, or 0
+	 * @param crashMilli the crash multiplier in thousandths
+	 * @param target the buffer to write to, with at least
+	 * 		  {@link #MAX_ASCII_SIZE} bytes remaining
+	 * @return the number of bytes written
+	 */
+	public static int encodeAscii(long bet, long cashOutMilli, long crashMilli, ByteBuffer target) {
+		int start = target.position();
+		
+		putLong(target, bet);
+		target.put((byte) ' ');
+		
+		if(cashOutMilli > 0) {
+			putMilli(target, cashOutMilli);
+		} else {
+			target.put((byte) '-');
+		}
+		target.put((byte) ' ');
+		
+		putMilli(target, crashMilli);
+		target.put((byte) ' ');
+		
+		putLong(target, FixedPoint.profit(bet, cashOutMilli));
+		target.put((byte) '\r').put((byte) '\n');
+		
+		return target.position() - start;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Writes the decimal digits of the value; the digits are written from the
+	 * last one, at absolute positions, so no intermediate buffer is needed.
+	 */
+	private static void putLong(ByteBuffer target, long value) {
+		if(value < 0) {
+			target.put((byte) '-');
+			
+			if(value == Long.MIN_VALUE) {
+				// The magnitude does not fit into a long; write the last digit separately.
+				putLong(target, -(value / 10));
+				target.put((byte) ('0' - value % 10));
+				return;
+			}
+			value = -value;
+		}
+		
+		int end = target.position() + digits(value);
+		for(int i = end - 1; i >= target.position(); i--) {
+			target.put(i, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		target.position(end);
+	}
+	
+	private static void putMilli(ByteBuffer target, long milli) {
+		putLong(target, milli / 1000);
+		
+		int fraction = (int) (milli % 1000);
+		target.put((byte) '.');
+		target.put((byte) ('0' + fraction / 100));
+		target.put((byte) ('0' + fraction / 10 % 10));
+		target.put((byte) ('0' + fraction % 10));
+	}
+	
+	private static int digits(long value) {
+		int digits = 1;
+		while(value >= 10) {
+			value /= 10;
+			digits++;
+		}
+		return digits;
+	}
+}
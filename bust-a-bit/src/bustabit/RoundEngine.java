@@ -0,0 +1,326 @@
+package bustabit;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Round engine that carries any number of players in a single round.
+ * Every player occupies a slot in the preallocated primitive arrays that
+ * hold the bets, the auto cash-out values and the settled cash-outs.
+ * <p>
+ * The round itself is only ever advanced by a single thread (the tick
+ * thread). Other threads interact with a running round solely through
+ * {@link #requestCashOut(int)}, which timestamps the request and puts it
+ * into a lock-free {@link CashOutQueue}. The tick thread settles the
+ * request at the multiplier that the curve had at the instant of the
+ * request, so the settlement is exact no matter when the tick runs.
+ * <p>
+ * All of the multipliers are in fixed-point thousandths, and all of the
+ * arithmetic of a tick and of the settlement is done in integers.
+ * 
+ * @author FICHEKK
+ */
+public class RoundEngine implements CashOutQueue.RequestHandler {
+	
+	/**
+	 * Receives the outcomes of the round. Called on the tick thread.
+	 */
+	public interface Listener {
+		
+		/**
+		 * Called when a player cashes out.
+		 * 
+		 * @param slot the player's slot
+		 * @param bet the player's bet
+		 * @param multiplierMilli the cash-out multiplier in thousandths
+		 * @param payout the amount paid out to the player
+		 */
+		void cashedOut(int slot, long bet, long multiplierMilli, long payout);
+		
+		/**
+		 * Called when the round crashes.
+		 * 
+		 * @param crashMilli the crash multiplier in thousandths
+		 */
+		void crashed(long crashMilli);
+	}
+	
+	/** Marks a slot that has not cashed out. */
+	private static final long NOT_CASHED_OUT = 0;
+	
+	/** The maximum number of players in a round. */
+	private final int capacity;
+	
+	/** The players' bets. */
+	private final long[] bets;
+	
+	/** The players' auto cash-out multipliers, or 0 if not set. */
+	private final long[] autoCashOuts;
+	
+	/** The players' settled cash-out multipliers, or {@link #NOT_CASHED_OUT}. */
+	private final long[] cashOuts;
+	
+	/** The pending manual cash-out requests. */
+	private final CashOutQueue requests;
+	
+	/** The sorted auto cash-out thresholds. */
+	private final AutoCashOutIndex autoCashOutIndex;
+	
+	/** Settles the reached auto cash-outs; created once so that ticks do not allocate. */
+	private final AutoCashOutIndex.Settler autoCashOutSettler = this::settle;
+	
+	/** The receiver of the round outcomes. */
+	private final Listener listener;
+	
+	/** Records the metrics of the rounds. */
+	private Metrics.Recorder recorder = Metrics.sharedRecorder();
+	
+	/** The number of claimed slots. */
+	private final AtomicInteger players = new AtomicInteger();
+	
+	/** The crash multiplier of the current round. */
+	private long crashMilli;
+	
+	/** The {@link System#nanoTime()} instant at which the round started. */
+	private long startNanos;
+	
+	/** The time since the start at which the round crashes. */
+	private long crashNanos;
+	
+	/** The {@link System#nanoTime()} instant of the current tick. */
+	private long tickNanos;
+	
+	/** The multiplier at the latest tick. */
+	private volatile long multiplierMilli = 1000;
+	
+	/** Flag that indicates if the round is running. */
+	private volatile boolean running;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a new engine.
+	 * 
+	 * @param capacity the maximum number of players in a round
+	 * @param listener the receiver of the round outcomes
+	 */
+	public RoundEngine(int capacity, Listener listener) {
+		this.capacity = capacity;
+		this.listener = listener;
+		this.bets = new long[capacity];
+		this.autoCashOuts = new long[capacity];
+		this.cashOuts = new long[capacity];
+		this.requests = new CashOutQueue(capacity);
+		this.autoCashOutIndex = new AutoCashOutIndex(capacity);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							 BETTING PHASE
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Places a bet for the next round. Safe to call from any thread while
+	 * the round is not running.
+	 * 
+	 * @param bet the player's bet
+	 * @param autoCashOutMilli the player's auto cash-out in thousandths, or 0 if not set
+	 * @return the player's slot
+	 * @throws IllegalStateException if the round is running or full
+	 */
+	public int placeBet(long bet, long autoCashOutMilli) {
+		if(running) throw new IllegalStateException("Bets can not be placed while the round is running.");
+		if(bet <= 0) throw new IllegalArgumentException("Bet must be positive.");
+		if(autoCashOutMilli != 0 && autoCashOutMilli <= 1000) throw new IllegalArgumentException("Auto cash-out must be higher than x1.000");
+		if(autoCashOutMilli > AutoCashOutIndex.MAX_THRESHOLD) throw new IllegalArgumentException("Auto cash-out is too high.");
+		
+		int slot = players.getAndIncrement();
+		if(slot >= capacity) {
+			players.decrementAndGet();
+			throw new IllegalStateException("The round is full.");
+		}
+		
+		recorder.countBet(bet);
+		bets[slot] = bet;
+		autoCashOuts[slot] = autoCashOutMilli;
+		cashOuts[slot] = NOT_CASHED_OUT;
+		return slot;
+	}
+	
+	/**
+	 * Starts the round with the bets placed so far.
+	 * 
+	 * @param crashMilli the crash multiplier in thousandths
+	 * @param startNanos the {@link System#nanoTime()} instant of the start
+	 */
+	public void start(long crashMilli, long startNanos) {
+		if(running) throw new IllegalStateException("The round is already running.");
+		
+		this.crashMilli = crashMilli;
+		this.startNanos = startNanos;
+		this.crashNanos = MultiplierCurve.nanosToReach(crashMilli);
+		this.multiplierMilli = 1000;
+		
+		autoCashOutIndex.build(autoCashOuts, getPlayerCount());
+		this.running = true;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							  RUNNING PHASE
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Requests a manual cash-out. Safe to call from any thread; the request
+	 * is settled by the next tick, at the multiplier of this very instant.
+	 * 
+	 * @param slot the player's slot
+	 * @return {@code true} if the request was accepted
+	 */
+	public boolean requestCashOut(int slot) {
+		if(!running || slot < 0 || slot >= players.get()) return false;
+		return requests.offer(slot, System.nanoTime());
+	}
+	
+	/**
+	 * Advances the round to the given instant: settles the queued cash-out
+	 * requests, the reached auto cash-outs and, if its time has come, the crash.
+	 * Must only be called by the tick thread.
+	 * 
+	 * @param nowNanos the current {@link System#nanoTime()} instant
+	 * @return {@code true} if the round is still running after this tick
+	 */
+	public boolean tick(long nowNanos) {
+		if(!running) return false;
+		
+		long elapsed = nowNanos - startNanos;
+		tickNanos = nowNanos;
+		requests.drain(this);
+		
+		long current = elapsed >= crashNanos ? crashMilli : multiplierAt(elapsed);
+		autoCashOutIndex.settleUpTo(current, autoCashOutSettler);
+		
+		multiplierMilli = current;
+		
+		if(elapsed >= crashNanos) {
+			running = false;
+			recorder.countRound();
+			listener.crashed(crashMilli);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Settles a cash-out request at the multiplier of the request instant.
+	 * Requests made after the crash, or for players that already cashed
+	 * out, are ignored.
+	 * 
+	 * @param slot the player's slot
+	 * @param timeNanos the {@link System#nanoTime()} instant of the request
+	 */
+	@Override
+	public void handle(int slot, long timeNanos) {
+		long elapsed = timeNanos - startNanos;
+		
+		// Requests left over from the previous round are dropped as well.
+		if(elapsed < 0 || elapsed >= crashNanos || cashOuts[slot] != NOT_CASHED_OUT) return;
+		
+		// An auto cash-out that was reached before the request takes precedence.
+		long multiplier = multiplierAt(elapsed);
+		long auto = autoCashOuts[slot];
+		settle(slot, auto != 0 && auto <= multiplier ? auto : multiplier);
+		recorder.recordSettlement(tickNanos - timeNanos);
+		autoCashOutIndex.remove(slot);
+	}
+	
+	/**
+	 * Sets the recorder of the metrics of the rounds; by default, the shared
+	 * one of the {@link Metrics}. Called on the thread that plays the rounds.
+	 * 
+	 * @param recorder the recorder
+	 */
+	void setRecorder(Metrics.Recorder recorder) {
+		this.recorder = recorder;
+	}
+	
+	/**
+	 * Clears all of the bets, preparing the engine for the next round.
+	 */
+	public void reset() {
+		if(running) throw new IllegalStateException("The round is still running.");
+		
+		int count = Math.min(players.get(), capacity);
+		Arrays.fill(bets, 0, count, 0);
+		Arrays.fill(autoCashOuts, 0, count, 0);
+		Arrays.fill(cashOuts, 0, count, NOT_CASHED_OUT);
+		players.set(0);
+		multiplierMilli = 1000;
+	}
+	
+	//-----------------------------------------------------------------------
+	//								GETTERS
+	//-----------------------------------------------------------------------
+	
+	/** @return the multiplier at the latest tick, in thousandths */
+	public long getMultiplierMilli() {
+		return multiplierMilli;
+	}
+	
+	/** @return the flag indicating whether the round is running or not */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/** @return the number of players in the round */
+	public int getPlayerCount() {
+		return Math.min(players.get(), capacity);
+	}
+	
+	/** @return the time since the round start at which the round crashes, in nanoseconds */
+	public long getCrashNanos() {
+		return crashNanos;
+	}
+	
+	/**
+	 * Returns the time since the round start of the next instant at which
+	 * something happens on its own: the next auto cash-out or the crash.
+	 * Valid after a tick.
+	 * 
+	 * @return the time of the next event since the round start, in nanoseconds
+	 */
+	public long getNextEventNanos() {
+		long nextAutoCashOut = autoCashOutIndex.nextThreshold();
+		if(nextAutoCashOut > crashMilli) return crashNanos;
+		return Math.min(MultiplierCurve.nanosToReach(nextAutoCashOut), crashNanos);
+	}
+	
+	/**
+	 * Returns the settled cash-out multiplier of the given player.
+	 * 
+	 * @param slot the player's slot
+	 * @return the cash-out multiplier in thousandths, or 0 if the player
+	 * 		   did not cash out
+	 */
+	public long getCashOutMilli(int slot) {
+		return cashOuts[slot];
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private void settle(int slot, long multiplier) {
+		cashOuts[slot] = multiplier;
+		
+		// A payout too large for a long is capped instead of failing the whole round.
+		long bet = bets[slot];
+		long payout = FixedPoint.multiplySaturated(bet, multiplier);
+		recorder.countPayout(payout);
+		listener.cashedOut(slot, bet, multiplier, payout);
+	}
+	
+	private long multiplierAt(long elapsed) {
+		return Math.min(MultiplierCurve.milliAt(elapsed), crashMilli);
+	}
+}
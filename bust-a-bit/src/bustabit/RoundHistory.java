@@ -0,0 +1,36 @@
+package bustabit;
+
+import java.io.IOException;
+
+/**
+ * A round history whose rounds are found by their index: a single
+ * {@link RoundJournal} file, read through a {@link RoundJournalReader}, or
+ * the segments of a {@link SegmentedRoundStore}.
+ * 
+ * @author FICHEKK
+ */
+public interface RoundHistory {
+	
+	/** @return the number of rounds in the history */
+	long size();
+	
+	/**
+	 * Returns the round at the given index.
+	 * 
+	 * @param index the index of the round, the first round being 0
+	 * @return the round at the given index
+	 * @throws IndexOutOfBoundsException if there is no such round
+	 * @throws IOException if the round could not be read
+	 */
+	Round getRound(long index) throws IOException;
+	
+	/**
+	 * Visits the rounds from the given index to the end, in the order they
+	 * were played.
+	 * 
+	 * @param from the index of the first visited round
+	 * @param visitor the visitor that receives the rounds
+	 * @throws IOException if the rounds could not be read
+	 */
+	void forEach(long from, RoundJournalReader.RoundVisitor visitor) throws IOException;
+}
@@ -0,0 +1,292 @@
+package bustabit;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Binary, append-only journal of the played rounds. Every round is stored
+ * as a fixed-width record of three big-endian longs:
+ * 
+ * <pre>
+ * | bet | cash-out (milli) | crash (milli) |
+ * </pre>
+ * 
+ * Multipliers are stored in fixed-point thousandths ({@code x1.226} is
+ * stored as {@code 1226}), while a cash-out value of {@code 0} means the
+ * player did not cash out. The records are preceded by a small header
+ * that identifies the file format.
+ * <p>
+ * The journal keeps a single {@code FileChannel} open for its whole
+ * lifetime, so appending a round is a single positional write.
+ * 
+ * @author FICHEKK
+ */
+public class RoundJournal implements Closeable {
+	
+	/** The value that every journal file starts with ("BAJ1"). */
+	public static final int MAGIC = 0x42414A31;
+	
+	/** The current version of the journal format. */
+	public static final int VERSION = 1;
+	
+	/** The size of the journal header in bytes. */
+	public static final int HEADER_SIZE = 8;
+	
+	/** The size of a single round record in bytes. */
+	public static final int RECORD_SIZE = 3 * Long.BYTES;
+	
+	/** The channel that the records are appended through. */
+	private final FileChannel channel;
+	
+	/** Reusable buffer that the records are encoded into; grows with the largest batch. */
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+	
+	/** The position that the next record will be written to. */
+	private long position;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Opens (or creates) the journal at the given path. If the file ends
+	 * with a partially written record, that record is discarded.
+	 * 
+	 * @param path the path of the journal file
+	 * @throws IOException if the journal could not be opened or if the file
+	 * 		   is not a round journal
+	 */
+	public RoundJournal(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		try {
+			if(channel.size() == 0) {
+				writeHeader(channel);
+			} else {
+				checkHeader(channel, path);
+			}
+			
+			long size = channel.size();
+			long torn = (size - HEADER_SIZE) % RECORD_SIZE;
+			if(torn != 0) {
+				System.err.println("Discarding " + torn + " bytes of a partially written round in '" + path + "'.");
+				channel.truncate(size - torn);
+			}
+			
+			position = channel.size();
+			
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Appends the given round to the end of the journal.
+	 * 
+	 * @param round the round to be appended
+	 * @throws IOException if the round could not be written
+	 */
+	public void append(Round round) throws IOException {
+		append(round.getBet(), round.getCashOutMilli(), round.getCrashMilli());
+	}
+	
+	/**
+	 * Appends a single round record to the end of the journal.
+	 * 
+	 * @param bet the player's bet
+	 * @param cashOutMilli the cash-out multiplier in thousandths, or 0 if
+	 * 		  the player did not cash out
+	 * @param crashMilli the crash multiplier in thousandths
+	 * @throws IOException if the round could not be written
+	 */
+	public synchronized void append(long bet, long cashOutMilli, long crashMilli) throws IOException {
+		buffer.clear();
+		RoundEncoder.encodeBinary(bet, cashOutMilli, crashMilli, buffer);
+		buffer.flip();
+		
+		write();
+	}
+	
+	/**
+	 * Appends all of the given rounds to the end of the journal with a
+	 * single write.
+	 * 
+	 * @param rounds the rounds to be appended
+	 * @throws IOException if the rounds could not be written
+	 */
+	public synchronized void append(List<Round> rounds) throws IOException {
+		int required = rounds.size() * RECORD_SIZE;
+		if(buffer.capacity() < required) {
+			buffer = ByteBuffer.allocateDirect(Math.max(required, 2 * buffer.capacity())).order(ByteOrder.BIG_ENDIAN);
+		}
+		
+		buffer.clear();
+		for(Round round : rounds) {
+			RoundEncoder.encodeBinary(round, buffer);
+		}
+		buffer.flip();
+		
+		write();
+	}
+	
+	/**
+	 * Forces all of the appended records to the storage device.
+	 * 
+	 * @throws IOException if the records could not be forced
+	 */
+	public void sync() throws IOException {
+		channel.force(false);
+	}
+	
+	/**
+	 * Returns the number of records stored in this journal.
+	 * 
+	 * @return the number of records stored in this journal
+	 */
+	public synchronized long size() {
+		return (position - HEADER_SIZE) / RECORD_SIZE;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   MIGRATION
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Converts the legacy text round history (as written by
+	 * {@link Round#toStringCompressed()}) into a new journal. The journal
+	 * is first written to a temporary file and then moved to its final
+	 * location, so an interrupted migration can simply be run again. The
+	 * lines are parsed by {@link HistoryAnalyzer#parseRound(String)}, so
+	 * both the comma and the dot are accepted as decimal separators.
+	 * 
+	 * @param text the path of the legacy text history
+	 * @param journal the path of the journal to be created
+	 * @return the number of migrated rounds
+	 * @throws IOException if the history could not be read or the journal
+	 * 		   could not be written
+	 */
+	public static long migrate(Path text, Path journal) throws IOException {
+		Path temporary = journal.resolveSibling(journal.getFileName() + ".tmp");
+		Files.deleteIfExists(temporary);
+		
+		long migrated = 0;
+		try(BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8);
+			RoundJournal target = new RoundJournal(temporary)) {
+			
+			String line;
+			while((line = reader.readLine()) != null) {
+				// The parser of the analytics, so the journal holds exactly the rounds they read from the text.
+				Round round = HistoryAnalyzer.parseRound(line);
+				if(round == null) continue;
+				
+				target.append(round);
+				migrated++;
+			}
+			
+			target.sync();
+		}
+		
+		Files.move(temporary, journal, StandardCopyOption.ATOMIC_MOVE);
+		return migrated;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private void write() throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+	
+	/**
+	 * Parses a decimal multiplier (such as {@code 1,226} or {@code 1.226})
+	 * into the fixed-point thousandths, without going through a
+	 * {@code double}. Any digits past the third decimal place are truncated.
+	 * 
+	 * @param value the textual multiplier
+	 * @return the multiplier in thousandths
+	 * @throws NumberFormatException if the value is not a decimal number
+	 */
+	static long parseMilli(String value) {
+		long whole = 0;
+		long fraction = 0;
+		int fractionDigits = -1;
+		
+		for(int i = 0, len = value.length(); i < len; i++) {
+			char c = value.charAt(i);
+			
+			if(c == ',' || c == '.') {
+				if(fractionDigits >= 0) throw new NumberFormatException("Multiple decimal separators in '" + value + "'.");
+				fractionDigits = 0;
+				
+			} else if(c >= '0' && c <= '9') {
+				if(fractionDigits < 0) {
+					whole = Math.addExact(Math.multiplyExact(whole, 10), c - '0');
+				} else if(fractionDigits < 3) {
+					fraction = fraction * 10 + (c - '0');
+					fractionDigits++;
+				}
+				
+			} else {
+				throw new NumberFormatException("Invalid character '" + c + "' in '" + value + "'.");
+			}
+		}
+		
+		for(int i = Math.max(fractionDigits, 0); i < 3; i++) {
+			fraction *= 10;
+		}
+		
+		return Math.addExact(Math.multiplyExact(whole, FixedPoint.SCALE), fraction);
+	}
+	
+	private static void writeHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).flip();
+		
+		while(header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+	}
+	
+	static void checkHeader(FileChannel channel, Path path) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		
+		while(header.hasRemaining()) {
+			if(channel.read(header, header.position()) < 0) {
+				throw new IOException("File '" + path + "' is too short to be a round journal.");
+			}
+		}
+		header.flip();
+		
+		if(header.getInt() != MAGIC) {
+			throw new IOException("File '" + path + "' is not a round journal.");
+		}
+		
+		int version = header.getInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported round journal version " + version + " in '" + path + "'.");
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped, read-only view of a {@link RoundJournal}. The records
+ * are read straight from the mapped file, so scanning the whole history
+ * neither parses text nor allocates objects per round.
+ * <p>
+ * The reader sees the records that existed at the moment it was opened.
+ * 
+ * @author FICHEKK
+ */
+public class RoundJournalReader implements Closeable, RoundHistory {
+	
+	/** Maximum number of records per mapped region (a region is at most 2 GiB). */
+	private static final int RECORDS_PER_REGION = Integer.MAX_VALUE / RoundJournal.RECORD_SIZE;
+	
+	/**
+	 * Receives the records of a journal, one round at a time.
+	 */
+	public interface RoundVisitor {
+		
+		/**
+		 * Visits a single round record.
+		 * 
+		 * @param index the index of the round in the journal
+		 * @param bet the player's bet
+		 * @param cashOutMilli the cash-out multiplier in thousandths, or 0 if
+		 * 		  the player did not cash out
+		 * @param crashMilli the crash multiplier in thousandths
+		 */
+		void visit(long index, long bet, long cashOutMilli, long crashMilli);
+	}
+	
+	/** The channel of the mapped file. */
+	private final FileChannel channel;
+	
+	/** The mapped regions of the record area. */
+	private final MappedByteBuffer[] regions;
+	
+	/** The number of records visible to this reader. */
+	private final long size;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Maps the journal at the given path.
+	 * 
+	 * @param path the path of the journal file
+	 * @throws IOException if the journal could not be opened or mapped
+	 */
+	public RoundJournalReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		
+		try {
+			RoundJournal.checkHeader(channel, path);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		
+		// A partially written record at the end of the file is simply not visible.
+		size = (channel.size() - RoundJournal.HEADER_SIZE) / RoundJournal.RECORD_SIZE;
+		
+		int regionCount = (int) ((size + RECORDS_PER_REGION - 1) / RECORDS_PER_REGION);
+		regions = new MappedByteBuffer[regionCount];
+		
+		for(int i = 0; i < regionCount; i++) {
+			long first = (long) i * RECORDS_PER_REGION;
+			long records = Math.min(RECORDS_PER_REGION, size - first);
+			long offset = RoundJournal.HEADER_SIZE + first * RoundJournal.RECORD_SIZE;
+			
+			regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, records * RoundJournal.RECORD_SIZE);
+			regions[i].order(ByteOrder.BIG_ENDIAN);
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/** @return the number of records visible to this reader */
+	@Override
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the bet of the round at the given index.
+	 * 
+	 * @param index the index of the round
+	 * @return the bet of the round at the given index
+	 */
+	public long getBet(long index) {
+		return read(index, 0);
+	}
+	
+	/**
+	 * Returns the cash-out multiplier (in thousandths) of the round
+	 * at the given index.
+	 * 
+	 * @param index the index of the round
+	 * @return the cash-out multiplier in thousandths, or 0 if the player
+	 * 		   did not cash out
+	 */
+	public long getCashOutMilli(long index) {
+		return read(index, Long.BYTES);
+	}
+	
+	/**
+	 * Returns the crash multiplier (in thousandths) of the round at the
+	 * given index.
+	 * 
+	 * @param index the index of the round
+	 * @return the crash multiplier in thousandths
+	 */
+	public long getCrashMilli(long index) {
+		return read(index, 2 * Long.BYTES);
+	}
+	
+	@Override
+	public Round getRound(long index) {
+		return new Round(getBet(index), getCashOutMilli(index), getCrashMilli(index));
+	}
+	
+	/**
+	 * Visits every record of the journal, in the order they were written.
+	 * 
+	 * @param visitor the visitor that receives the records
+	 */
+	public void forEach(RoundVisitor visitor) {
+		forEach(0, visitor);
+	}
+	
+	/**
+	 * Visits the records of the journal from the given index to the end,
+	 * in the order they were written. Skipping the earlier records costs
+	 * nothing, as the position of any record is known from its index.
+	 * 
+	 * @param from the index of the first visited record
+	 * @param visitor the visitor that receives the records
+	 */
+	@Override
+	public void forEach(long from, RoundVisitor visitor) {
+		long index = Math.max(from, 0);
+		
+		for(int r = (int) (index / RECORDS_PER_REGION); r < regions.length; r++) {
+			MappedByteBuffer region = regions[r];
+			int start = (int) (index - (long) r * RECORDS_PER_REGION) * RoundJournal.RECORD_SIZE;
+			
+			for(int offset = start, limit = region.limit(); offset < limit; offset += RoundJournal.RECORD_SIZE) {
+				visitor.visit(index++,
+							  region.getLong(offset),
+							  region.getLong(offset + Long.BYTES),
+							  region.getLong(offset + 2 * Long.BYTES));
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private long read(long index, int field) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Round " + index + " is out of bounds for a journal of " + size + " rounds.");
+		}
+		
+		MappedByteBuffer region = regions[(int) (index / RECORDS_PER_REGION)];
+		int offset = (int) (index % RECORDS_PER_REGION) * RoundJournal.RECORD_SIZE;
+		return region.getLong(offset + field);
+	}
+}
@@ -0,0 +1,44 @@
+package bustabit;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared scheduler that drives the ticks of all of the running rounds.
+ * A round does not own a thread; it only schedules its next tick, so any
+ * number of concurrent rounds share the same small pool of threads and
+ * starting a round creates no threads at all.
+ * 
+ * @author FICHEKK
+ */
+public final class RoundScheduler {
+	
+	/** The executor that runs the ticks. */
+	private static final ScheduledThreadPoolExecutor executor;
+	
+	static {
+		executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "round-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+	}
+	
+	/** Utility class, no instances. */
+	private RoundScheduler() {
+	}
+	
+	/**
+	 * Runs the given task once the given absolute {@link System#nanoTime()}
+	 * instant is reached (or immediately, if it has already passed).
+	 * 
+	 * @param task the task to be run
+	 * @param deadlineNanos the instant at which the task should run
+	 * @return the future that can be used to cancel the task
+	 */
+	public static ScheduledFuture<?> scheduleAt(Runnable task, long deadlineNanos) {
+		return executor.schedule(task, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,255 @@
+package bustabit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incrementally maintained aggregates over a sequence of played rounds:
+ * the win rate, the total profit, the largest drawdown, the streaks and a
+ * histogram of the crash values. Recording a round updates every aggregate
+ * in constant time, so none of the statistics ever needs a rescan of the
+ * history.
+ * <p>
+ * The statistics are updated by the tick thread and read by the GUI, so
+ * every method is synchronized; all of them are constant-time.
+ * 
+ * @author FICHEKK
+ */
+public class RoundStatistics implements RoundJournalReader.RoundVisitor {
+	
+	/**
+	 * The number of crash histogram buckets. Bucket {@code i} counts the
+	 * crashes in {@code [2^i, 2^(i+1))}, the last one everything above.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 24;
+	
+	/** The number of bytes written by {@link #writeTo(ByteBuffer)}. */
+	public static final int SERIALIZED_SIZE = (10 + HISTOGRAM_BUCKETS) * Long.BYTES;
+	
+	/** The number of recorded rounds. */
+	private long rounds;
+	
+	/** The number of rounds the player cashed out in. */
+	private long wins;
+	
+	/** The sum of all of the bets. */
+	private long wagered;
+	
+	/** The sum of the profits of all of the rounds. */
+	private long profit;
+	
+	/** The highest total profit reached so far. */
+	private long peakProfit;
+	
+	/** The largest drop of the total profit from a preceding peak. */
+	private long maxDrawdown;
+	
+	/** The current streak; positive for wins, negative for losses. */
+	private long streak;
+	
+	/** The longest streak of wins. */
+	private long longestWinStreak;
+	
+	/** The longest streak of losses. */
+	private long longestLossStreak;
+	
+	/** The highest crash value, in thousandths. */
+	private long maxCrash;
+	
+	/** The crash histogram. */
+	private final long[] crashHistogram = new long[HISTOGRAM_BUCKETS];
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Records a single round.
+	 * 
+	 * @param bet the player's bet
+	 * @param cashOutMilli the cash-out multiplier in thousandths, or 0 if
+	 * 		  the player did not cash out
+	 * @param crashMilli the crash multiplier in thousandths
+	 */
+	public synchronized void record(long bet, long cashOutMilli, long crashMilli) {
+		rounds++;
+		wagered = FixedPoint.addSaturated(wagered, bet);
+		
+		boolean won = cashOutMilli > 0;
+		long roundProfit = FixedPoint.profit(bet, cashOutMilli);
+		
+		profit = FixedPoint.addSaturated(profit, roundProfit);
+		peakProfit = Math.max(peakProfit, profit);
+		maxDrawdown = Math.max(maxDrawdown, peakProfit - profit);
+		
+		if(won) {
+			wins++;
+			streak = streak > 0 ? streak + 1 : 1;
+			longestWinStreak = Math.max(longestWinStreak, streak);
+		} else {
+			streak = streak < 0 ? streak - 1 : -1;
+			longestLossStreak = Math.max(longestLossStreak, -streak);
+		}
+		
+		maxCrash = Math.max(maxCrash, crashMilli);
+		crashHistogram[bucketOf(crashMilli)]++;
+	}
+	
+	@Override
+	public void visit(long index, long bet, long cashOutMilli, long crashMilli) {
+		record(bet, cashOutMilli, crashMilli);
+	}
+	
+	/**
+	 * Writes all of the aggregates to the given buffer, the number of
+	 * rounds first. Together with {@link #readFrom(ByteBuffer)} this lets
+	 * the statistics be saved instead of being recomputed from the history.
+	 * 
+	 * @param buffer the buffer with at least {@link #SERIALIZED_SIZE} bytes remaining
+	 */
+	public synchronized void writeTo(ByteBuffer buffer) {
+		buffer.putLong(rounds);
+		buffer.putLong(wins);
+		buffer.putLong(wagered);
+		buffer.putLong(profit);
+		buffer.putLong(peakProfit);
+		buffer.putLong(maxDrawdown);
+		buffer.putLong(streak);
+		buffer.putLong(longestWinStreak);
+		buffer.putLong(longestLossStreak);
+		buffer.putLong(maxCrash);
+		for(long count : crashHistogram) {
+			buffer.putLong(count);
+		}
+	}
+	
+	/**
+	 * Replaces all of the aggregates with the ones read from the given
+	 * buffer, as written by {@link #writeTo(ByteBuffer)}.
+	 * 
+	 * @param buffer the buffer with at least {@link #SERIALIZED_SIZE} bytes remaining
+	 */
+	public synchronized void readFrom(ByteBuffer buffer) {
+		rounds = buffer.getLong();
+		wins = buffer.getLong();
+		wagered = buffer.getLong();
+		profit = buffer.getLong();
+		peakProfit = buffer.getLong();
+		maxDrawdown = buffer.getLong();
+		streak = buffer.getLong();
+		longestWinStreak = buffer.getLong();
+		longestLossStreak = buffer.getLong();
+		maxCrash = buffer.getLong();
+		for(int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+			crashHistogram[i] = buffer.getLong();
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//								GETTERS
+	//-----------------------------------------------------------------------
+	
+	/** @return the number of recorded rounds */
+	public synchronized long getRounds() {
+		return rounds;
+	}
+	
+	/** @return the number of rounds the player cashed out in */
+	public synchronized long getWins() {
+		return wins;
+	}
+	
+	/** @return the fraction of the rounds the player cashed out in, or 0 if there are none */
+	public synchronized double getWinRate() {
+		return rounds == 0 ? 0 : (double) wins / rounds;
+	}
+	
+	/** @return the sum of all of the bets */
+	public synchronized long getWagered() {
+		return wagered;
+	}
+	
+	/** @return the total profit of all of the rounds */
+	public synchronized long getProfit() {
+		return profit;
+	}
+	
+	/** @return the largest drop of the total profit from a preceding peak */
+	public synchronized long getMaxDrawdown() {
+		return maxDrawdown;
+	}
+	
+	/** @return the current streak; positive for wins, negative for losses */
+	public synchronized long getStreak() {
+		return streak;
+	}
+	
+	/** @return the longest streak of wins */
+	public synchronized long getLongestWinStreak() {
+		return longestWinStreak;
+	}
+	
+	/** @return the longest streak of losses */
+	public synchronized long getLongestLossStreak() {
+		return longestLossStreak;
+	}
+	
+	/** @return the highest crash value in thousandths, or 0 if there are no rounds */
+	public synchronized long getMaxCrash() {
+		return maxCrash;
+	}
+	
+	/**
+	 * Returns the number of crashes in the given histogram bucket.
+	 * 
+	 * @param bucket the bucket, see {@link #HISTOGRAM_BUCKETS}
+	 * @return the number of crashes in the bucket
+	 */
+	public synchronized long getCrashCount(int bucket) {
+		return crashHistogram[bucket];
+	}
+	
+	/**
+	 * Returns the lowest crash value (in thousandths) counted by the given bucket.
+	 * 
+	 * @param bucket the bucket, see {@link #HISTOGRAM_BUCKETS}
+	 * @return the lower bound of the bucket in thousandths
+	 */
+	public static long bucketLowerBound(int bucket) {
+		return FixedPoint.SCALE << bucket;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Rounds:              %,d\r\n", rounds));
+		sb.append(String.format("Win rate:            %.2f%% (%,d won)\r\n", getWinRate() * 100, wins));
+		sb.append(String.format("Wagered:             %,d\r\n", wagered));
+		sb.append(String.format("Profit:              %,d\r\n", profit));
+		sb.append(String.format("Max drawdown:        %,d\r\n", maxDrawdown));
+		sb.append(String.format("Current streak:      %d %s\r\n", Math.abs(streak), streak >= 0 ? "won" : "lost"));
+		sb.append(String.format("Longest win streak:  %,d\r\n", longestWinStreak));
+		sb.append(String.format("Longest loss streak: %,d\r\n", longestLossStreak));
+		sb.append(String.format("Highest crash:       x%.3f\r\n", maxCrash / 1000.0));
+		
+		sb.append("\r\nCRASH | ROUNDS\r\n");
+		for(int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+			if(crashHistogram[i] == 0) continue;
+			
+			String range = i == HISTOGRAM_BUCKETS - 1
+						 ? "x" + (bucketLowerBound(i) / 1000) + "+"
+						 : "x" + (bucketLowerBound(i) / 1000) + "-" + (bucketLowerBound(i + 1) / 1000);
+			sb.append(String.format("%s | %,d\r\n", range, crashHistogram[i]));
+		}
+		
+		return sb.toString();
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private static int bucketOf(long crashMilli) {
+		long whole = Math.max(1, crashMilli / FixedPoint.SCALE);
+		return Math.min(63 - Long.numberOfLeadingZeros(whole), HISTOGRAM_BUCKETS - 1);
+	}
+}
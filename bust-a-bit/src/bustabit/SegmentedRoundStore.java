@@ -0,0 +1,745 @@
+package bustabit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The round history as a directory of bounded segments. The rounds are
+ * appended to the active segment, an ordinary {@link RoundJournal} file;
+ * once it holds {@code bustabit.segment.rounds} rounds (65,536 by default)
+ * it is closed, a new one is started, and the closed one is compressed by a
+ * background thread.
+ * <p>
+ * A compressed segment is a sequence of blocks of {@value #BLOCK_ROUNDS}
+ * rounds each, every block deflated on its own. A block is stored column by
+ * column (all of the bets, then all of the cash-outs, then all of the
+ * crashes), so similar bytes sit next to each other and compress well. The
+ * offsets of the blocks form the sparse index of the segment, read into
+ * memory when the segment is first read, so reading any round or range of
+ * rounds takes one read of a single block and one decompression; the most
+ * recently read block is kept for the rounds next to it.
+ * <pre>
+ * | magic | version | first round | rounds | blocks... | block offsets... |
+ * </pre>
+ * The segments are named after their first round, so the history needs no
+ * other index file: it is rebuilt from the directory when the store opens,
+ * and a segment ends where the next one starts, so only the last segment
+ * has to be opened to find the size of the history.
+ * A segment is compressed to a temporary file that is renamed when
+ * complete, and only then is the raw segment deleted; a crash at any point
+ * leaves at least one whole copy of every segment.
+ * 
+ * @author FICHEKK
+ */
+public class SegmentedRoundStore implements Closeable, RoundHistory {
+	
+	/** The value that every compressed segment starts with ("BABZ"). */
+	public static final int MAGIC = 0x4241425A;
+	
+	/** The current version of the compressed segment format. */
+	public static final int VERSION = 1;
+	
+	/** The default number of rounds in a segment. */
+	public static final int DEFAULT_SEGMENT_ROUNDS = 65_536;
+	
+	/** The number of rounds compressed together; the unit of a lookup. */
+	public static final int BLOCK_ROUNDS = 4096;
+	
+	/** The size of the header of a compressed segment in bytes. */
+	private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+	
+	/** The size of an uncompressed block in bytes. */
+	private static final int BLOCK_SIZE = BLOCK_ROUNDS * RoundJournal.RECORD_SIZE;
+	
+	/** The suffix of a raw segment. */
+	private static final String RAW = ".bin";
+	
+	/** The suffix of a compressed segment. */
+	private static final String COMPRESSED = ".z";
+	
+	/** Matches the file names of the segments. */
+	private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{19})(\\.bin|\\.z)(\\.tmp)?");
+	
+	/** The directory of the segments. */
+	private final Path directory;
+	
+	/** The maximum number of rounds in a segment. */
+	private final int segmentRounds;
+	
+	/** The segments, oldest first; the last one is the active one. */
+	private final List<Segment> segments = new ArrayList<>();
+	
+	/** The journal of the active segment, or {@code null} if the store is read-only. */
+	private RoundJournal active;
+	
+	/** Compresses the closed segments, or {@code null} if the store is read-only. */
+	private final ExecutorService compressor;
+	
+	/** Decompresses the blocks. */
+	private final Inflater inflater = new Inflater();
+	
+	/** The number of rounds in the store. */
+	private long size;
+	
+	/** The segment of the block in {@link #cachedColumns}. */
+	private Segment cachedSegment;
+	
+	/** The index of the block in {@link #cachedColumns} within its segment. */
+	private int cachedBlock = -1;
+	
+	/** The most recently read block: the bets, the cash-outs and the crashes, {@value #BLOCK_ROUNDS} each. */
+	private final long[] cachedColumns = new long[3 * BLOCK_ROUNDS];
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Opens (or creates) the store in the given directory. The segments that
+	 * were closed but not yet compressed, for example because the game was
+	 * stopped, are compressed in the background.
+	 * 
+	 * @param directory the directory of the segments
+	 * @throws IOException if the store could not be opened or its segments are inconsistent
+	 */
+	public SegmentedRoundStore(Path directory) throws IOException {
+		this(directory, Integer.getInteger("bustabit.segment.rounds", DEFAULT_SEGMENT_ROUNDS), true);
+	}
+	
+	/**
+	 * Opens the store in the given directory.
+	 * 
+	 * @param directory the directory of the segments
+	 * @param segmentRounds the maximum number of rounds in a segment
+	 * @param writable {@code false} to only read the segments as they are
+	 * @throws IOException if the store could not be opened or its segments are inconsistent
+	 */
+	SegmentedRoundStore(Path directory, int segmentRounds, boolean writable) throws IOException {
+		if(segmentRounds <= 0) throw new IllegalArgumentException("Segment rounds must be positive.");
+		
+		this.directory = directory;
+		this.segmentRounds = segmentRounds;
+		this.compressor = writable ? createCompressor() : null;
+		
+		try {
+			if(writable) Files.createDirectories(directory);
+			load(writable);
+			
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Opens the store in the given directory for reading only; nothing is
+	 * written, created or compressed.
+	 * 
+	 * @param directory the directory of the segments
+	 * @return the read-only store
+	 * @throws IOException if the store could not be opened or its segments are inconsistent
+	 */
+	public static SegmentedRoundStore openReadOnly(Path directory) throws IOException {
+		return new SegmentedRoundStore(directory, DEFAULT_SEGMENT_ROUNDS, false);
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Appends the given rounds, starting new segments as needed.
+	 * 
+	 * @param rounds the rounds to be appended
+	 * @throws IOException if the rounds could not be written
+	 * @throws IllegalStateException if the store is read-only
+	 */
+	public synchronized void append(List<Round> rounds) throws IOException {
+		if(active == null) throw new IllegalStateException("The round store is read-only.");
+		
+		for(int from = 0; from < rounds.size(); ) {
+			Segment last = segments.get(segments.size() - 1);
+			if(last.count >= segmentRounds) {
+				roll();
+				last = segments.get(segments.size() - 1);
+			}
+			
+			int to = (int) Math.min(rounds.size(), from + segmentRounds - last.count);
+			try {
+				active.append(rounds.subList(from, to));
+			} finally {
+				// A write that failed half-way still leaves whole records behind.
+				long appended = active.size() - last.count;
+				last.count += appended;
+				size += appended;
+			}
+			from = to;
+		}
+	}
+	
+	/**
+	 * Forces the active segment to the storage device.
+	 * 
+	 * @throws IOException if the segment could not be forced
+	 */
+	public synchronized void sync() throws IOException {
+		if(active != null) active.sync();
+	}
+	
+	@Override
+	public synchronized long size() {
+		return size;
+	}
+	
+	@Override
+	public synchronized Round getRound(long index) throws IOException {
+		List<Round> rounds = read(index, 1);
+		if(rounds.isEmpty()) {
+			throw new IndexOutOfBoundsException("Round " + index + " is out of bounds for a history of " + size + " rounds.");
+		}
+		return rounds.get(0);
+	}
+	
+	/**
+	 * Reads a range of rounds. A range within a single block takes one read
+	 * and one decompression.
+	 * 
+	 * @param from the index of the first round
+	 * @param count the maximum number of rounds
+	 * @return the rounds of the range that exist, oldest first
+	 * @throws IOException if the rounds could not be read
+	 */
+	public synchronized List<Round> read(long from, int count) throws IOException {
+		from = Math.max(from, 0);
+		long to = Math.min(size, from + Math.max(count, 0));
+		
+		List<Round> rounds = new ArrayList<>((int) Math.max(0, to - from));
+		visit(from, to, (index, bet, cashOutMilli, crashMilli) -> rounds.add(new Round(bet, cashOutMilli, crashMilli)));
+		return rounds;
+	}
+	
+	@Override
+	public synchronized void forEach(long from, RoundJournalReader.RoundVisitor visitor) throws IOException {
+		visit(Math.max(from, 0), size, visitor);
+	}
+	
+	/**
+	 * Waits for the pending compressions and closes the active segment.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(compressor != null) {
+			compressor.shutdown();
+			try {
+				if(!compressor.awaitTermination(1, TimeUnit.MINUTES)) {
+					System.err.println("Round segments are still being compressed; they will be compressed on the next start.");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		synchronized(this) {
+			inflater.end();
+			if(active != null) active.close();
+		}
+	}
+	
+	/**
+	 * Returns the disk space taken by the segments.
+	 * 
+	 * @return the size of all of the segment files in bytes
+	 * @throws IOException if the directory could not be listed
+	 */
+	public long diskUsage() throws IOException {
+		long bytes = 0;
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+			for(Path file : files) {
+				bytes += Files.size(file);
+			}
+		}
+		return bytes;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   MIGRATION
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Copies the rounds of a {@link RoundJournal} into a new store. The store
+	 * is first written to a temporary directory, which is then moved to its
+	 * final location, so an interrupted migration can simply be run again.
+	 * The journal itself is left in place.
+	 * 
+	 * @param journal the path of the round journal
+	 * @param directory the directory of the store to be created
+	 * @return the number of migrated rounds
+	 * @throws IOException if the journal could not be read or the store could not be written
+	 */
+	public static long migrate(Path journal, Path directory) throws IOException {
+		Path temporary = directory.resolveSibling(directory.getFileName() + ".tmp");
+		if(Files.isDirectory(temporary)) {
+			try(DirectoryStream<Path> files = Files.newDirectoryStream(temporary)) {
+				for(Path file : files) {
+					Files.delete(file);
+				}
+			}
+		}
+		
+		long migrated;
+		try(RoundJournalReader reader = new RoundJournalReader(journal);
+			SegmentedRoundStore target = new SegmentedRoundStore(temporary)) {
+			
+			List<Round> batch = new ArrayList<>(BLOCK_ROUNDS);
+			for(long i = 0; i < reader.size(); i++) {
+				batch.add(reader.getRound(i));
+				if(batch.size() == BLOCK_ROUNDS) {
+					target.append(batch);
+					batch.clear();
+				}
+			}
+			target.append(batch);
+			target.sync();
+			migrated = target.size();
+		}
+		
+		Files.move(temporary, directory, StandardCopyOption.ATOMIC_MOVE);
+		return migrated;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   SEGMENTS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Rebuilds the list of the segments from the directory, finishing
+	 * whatever a crash interrupted.
+	 */
+	private void load(boolean writable) throws IOException {
+		TreeMap<Long, Boolean> found = new TreeMap<>();
+		Set<Long> raws = new HashSet<>();
+		
+		if(Files.isDirectory(directory)) {
+			try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+				for(Path file : files) {
+					Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+					if(!matcher.matches()) continue;
+					
+					if(matcher.group(3) != null) {
+						// An interrupted compression; the raw segment is still there.
+						if(writable) Files.delete(file);
+						continue;
+					}
+					
+					long first = Long.parseLong(matcher.group(1));
+					boolean compressed = matcher.group(2).equals(COMPRESSED);
+					found.merge(first, compressed, Boolean::logicalOr);
+					if(!compressed) raws.add(first);
+				}
+			}
+		}
+		
+		for(Map.Entry<Long, Boolean> entry : found.entrySet()) {
+			long first = entry.getKey();
+			if(first != size) {
+				throw new IOException("The round history in '" + directory + "' has no segment for round " + size + ".");
+			}
+			
+			Segment segment = new Segment(first);
+			if(entry.getValue()) {
+				segment.compressed = true;
+				Long next = found.higherKey(first);
+				segment.count = next != null ? next - first : readCount(segment);
+				// The compression completed; the raw copy is no longer needed.
+				if(writable && raws.contains(first)) Files.delete(rawPath(first));
+			} else {
+				segment.count = rawCount(rawPath(first));
+			}
+			
+			segments.add(segment);
+			size += segment.count;
+		}
+		
+		if(!writable) return;
+		
+		Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		if(last == null || last.compressed) {
+			last = new Segment(size);
+			segments.add(last);
+		}
+		active = new RoundJournal(rawPath(last.first));
+		size += active.size() - last.count;
+		last.count = active.size();
+		
+		for(int i = 0; i < segments.size() - 1; i++) {
+			if(!segments.get(i).compressed) {
+				scheduleCompression(segments.get(i));
+			}
+		}
+	}
+	
+	/**
+	 * Closes the active segment, starts a new one and compresses the closed
+	 * one in the background.
+	 */
+	private void roll() throws IOException {
+		Segment closed = segments.get(segments.size() - 1);
+		Segment next = new Segment(size);
+		RoundJournal journal = new RoundJournal(rawPath(next.first));
+		
+		active.sync();
+		active.close();
+		active = journal;
+		segments.add(next);
+		
+		scheduleCompression(closed);
+	}
+	
+	private void scheduleCompression(Segment segment) {
+		compressor.execute(() -> {
+			try {
+				compress(segment);
+			} catch (IOException e) {
+				System.err.println("Could not compress the round segment " + segment.first + ": " + e.getMessage());
+			}
+		});
+	}
+	
+	/**
+	 * Compresses a closed raw segment. The raw segment no longer changes, so
+	 * it is read without the lock of the store; the lock is only taken to
+	 * switch the segment over to the compressed file.
+	 */
+	private void compress(Segment segment) throws IOException {
+		Path raw = rawPath(segment.first);
+		Path target = compressedPath(segment.first);
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		
+		long[] offsets;
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		try(FileChannel in = FileChannel.open(raw, StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			
+			RoundJournal.checkHeader(in, raw);
+			long count = (in.size() - RoundJournal.HEADER_SIZE) / RoundJournal.RECORD_SIZE;
+			int blocks = (int) ((count + BLOCK_ROUNDS - 1) / BLOCK_ROUNDS);
+			offsets = new long[blocks + 1];
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putLong(segment.first).putLong(count).flip();
+			long position = writeFully(out, header, 0);
+			
+			ByteBuffer records = ByteBuffer.allocate(BLOCK_SIZE);
+			ByteBuffer columns = ByteBuffer.allocate(BLOCK_SIZE);
+			ByteBuffer deflated = ByteBuffer.allocate(BLOCK_SIZE + 1024);
+			
+			for(int block = 0; block < blocks; block++) {
+				int rounds = (int) Math.min(BLOCK_ROUNDS, count - (long) block * BLOCK_ROUNDS);
+				records.clear().limit(rounds * RoundJournal.RECORD_SIZE);
+				readFully(in, records, RoundJournal.HEADER_SIZE + (long) block * BLOCK_SIZE);
+				
+				columns.clear();
+				for(int field = 0; field < 3; field++) {
+					for(int i = 0; i < rounds; i++) {
+						columns.putLong(records.getLong(i * RoundJournal.RECORD_SIZE + field * Long.BYTES));
+					}
+				}
+				
+				offsets[block] = position;
+				deflater.reset();
+				deflater.setInput(columns.array(), 0, columns.position());
+				deflater.finish();
+				deflated.clear();
+				while(!deflater.finished()) {
+					if(!deflated.hasRemaining()) {
+						deflated.flip();
+						position += writeFully(out, deflated, position);
+						deflated.clear();
+					}
+					int length = deflater.deflate(deflated.array(), deflated.position(), deflated.remaining());
+					deflated.position(deflated.position() + length);
+				}
+				deflated.flip();
+				position += writeFully(out, deflated, position);
+			}
+			offsets[blocks] = position;
+			
+			ByteBuffer footer = ByteBuffer.allocate(offsets.length * Long.BYTES);
+			for(long offset : offsets) {
+				footer.putLong(offset);
+			}
+			footer.flip();
+			writeFully(out, footer, position);
+			out.force(true);
+			
+		} catch (IOException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+			
+		} finally {
+			deflater.end();
+		}
+		
+		Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+		synchronized(this) {
+			segment.blockOffsets = offsets;
+			segment.compressed = true;
+			Files.delete(raw);
+		}
+	}
+	
+	/**
+	 * Reads the number of rounds from the header of a compressed segment.
+	 */
+	private long readCount(Segment segment) throws IOException {
+		try(FileChannel channel = FileChannel.open(compressedPath(segment.first), StandardOpenOption.READ)) {
+			return readHeader(channel, segment);
+		}
+	}
+	
+	/**
+	 * Reads the sparse index of a compressed segment, checking that its
+	 * header agrees with the segment.
+	 */
+	private void readIndex(Segment segment) throws IOException {
+		try(FileChannel channel = FileChannel.open(compressedPath(segment.first), StandardOpenOption.READ)) {
+			if(readHeader(channel, segment) != segment.count) {
+				throw new IOException("Round segment " + segment.first + " does not end where the next one starts.");
+			}
+			
+			int blocks = (int) ((segment.count + BLOCK_ROUNDS - 1) / BLOCK_ROUNDS);
+			ByteBuffer footer = ByteBuffer.allocate((blocks + 1) * Long.BYTES);
+			readFully(channel, footer, channel.size() - footer.capacity());
+			
+			segment.blockOffsets = new long[blocks + 1];
+			for(int i = 0; i <= blocks; i++) {
+				segment.blockOffsets[i] = footer.getLong();
+			}
+		}
+	}
+	
+	/** @return the number of rounds in the compressed segment, as stated by its header */
+	private long readHeader(FileChannel channel, Segment segment) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		
+		if(header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != segment.first) {
+			throw new IOException("File '" + compressedPath(segment.first) + "' is not a compressed round segment.");
+		}
+		return header.getLong();
+	}
+	
+	/** @return the number of whole records in the raw segment at the given path */
+	private static long rawCount(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			RoundJournal.checkHeader(channel, path);
+			return (channel.size() - RoundJournal.HEADER_SIZE) / RoundJournal.RECORD_SIZE;
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//								READING
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Visits the rounds in the given range, segment by segment.
+	 */
+	private void visit(long from, long to, RoundJournalReader.RoundVisitor visitor) throws IOException {
+		if(from >= to) return;
+		
+		for(int s = segmentOf(from); s < segments.size() && from < to; s++) {
+			Segment segment = segments.get(s);
+			int start = (int) (from - segment.first);
+			int end = (int) Math.min(segment.count, to - segment.first);
+			
+			if(!segment.compressed) {
+				visitRaw(segment, start, end, visitor);
+			} else {
+				visitCompressed(segment, start, end, visitor);
+			}
+			from = segment.first + end;
+		}
+	}
+	
+	/**
+	 * Visits the rounds of a raw segment, reading a block's worth of records at a time.
+	 */
+	private void visitRaw(Segment segment, int start, int end, RoundJournalReader.RoundVisitor visitor) throws IOException {
+		ByteBuffer records = ByteBuffer.allocate(Math.min(BLOCK_ROUNDS, end - start) * RoundJournal.RECORD_SIZE);
+		
+		try(FileChannel channel = FileChannel.open(rawPath(segment.first), StandardOpenOption.READ)) {
+			for(int i = start; i < end; ) {
+				int rounds = Math.min(BLOCK_ROUNDS, end - i);
+				records.clear().limit(rounds * RoundJournal.RECORD_SIZE);
+				readFully(channel, records, RoundJournal.HEADER_SIZE + (long) i * RoundJournal.RECORD_SIZE);
+				
+				for(int offset = 0; offset < records.limit(); offset += RoundJournal.RECORD_SIZE, i++) {
+					visitor.visit(segment.first + i,
+								  records.getLong(offset),
+								  records.getLong(offset + Long.BYTES),
+								  records.getLong(offset + 2 * Long.BYTES));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Visits the rounds of a compressed segment, decompressing one block at a time.
+	 */
+	private void visitCompressed(Segment segment, int start, int end, RoundJournalReader.RoundVisitor visitor) throws IOException {
+		for(int i = start; i < end; ) {
+			int block = i / BLOCK_ROUNDS;
+			int rounds = loadBlock(segment, block);
+			int base = block * BLOCK_ROUNDS;
+			
+			for(int last = Math.min(end - base, rounds); i - base < last; i++) {
+				int j = i - base;
+				visitor.visit(segment.first + i, cachedColumns[j], cachedColumns[BLOCK_ROUNDS + j], cachedColumns[2 * BLOCK_ROUNDS + j]);
+			}
+		}
+	}
+	
+	/**
+	 * Reads and decompresses a block into {@link #cachedColumns}, unless it
+	 * is already there: a single positioned read of the block's bytes, found
+	 * through the sparse index, and a single inflation.
+	 * 
+	 * @return the number of rounds in the block
+	 */
+	private int loadBlock(Segment segment, int block) throws IOException {
+		int rounds = (int) Math.min(BLOCK_ROUNDS, segment.count - (long) block * BLOCK_ROUNDS);
+		if(cachedSegment == segment && cachedBlock == block) return rounds;
+		if(segment.blockOffsets == null) readIndex(segment);
+		
+		long start = segment.blockOffsets[block];
+		ByteBuffer compressed = ByteBuffer.allocate((int) (segment.blockOffsets[block + 1] - start));
+		try(FileChannel channel = FileChannel.open(compressedPath(segment.first), StandardOpenOption.READ)) {
+			readFully(channel, compressed, start);
+		}
+		
+		byte[] columns = new byte[rounds * RoundJournal.RECORD_SIZE];
+		inflater.reset();
+		inflater.setInput(compressed.array());
+		try {
+			int length = 0;
+			while(length < columns.length && !inflater.finished()) {
+				int inflated = inflater.inflate(columns, length, columns.length - length);
+				if(inflated == 0 && inflater.needsInput()) break;
+				length += inflated;
+			}
+			if(length != columns.length) throw new IOException("Round segment " + segment.first + " has a truncated block " + block + ".");
+			
+		} catch (DataFormatException e) {
+			throw new IOException("Round segment " + segment.first + " has a corrupt block " + block + ".", e);
+		}
+		
+		cachedSegment = null;
+		ByteBuffer buffer = ByteBuffer.wrap(columns);
+		for(int field = 0; field < 3; field++) {
+			for(int i = 0; i < rounds; i++) {
+				cachedColumns[field * BLOCK_ROUNDS + i] = buffer.getLong();
+			}
+		}
+		cachedSegment = segment;
+		cachedBlock = block;
+		return rounds;
+	}
+	
+	/** @return the index of the segment holding the round at the given index */
+	private int segmentOf(long index) {
+		int low = 0;
+		int high = segments.size() - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(segments.get(middle).first <= index) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							HELPER METHODS
+	//-----------------------------------------------------------------------
+	
+	private Path rawPath(long first) {
+		return directory.resolve(String.format("segment-%019d%s", first, RAW));
+	}
+	
+	private Path compressedPath(long first) {
+		return directory.resolve(String.format("segment-%019d%s", first, COMPRESSED));
+	}
+	
+	private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long written = 0;
+		while(buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+		return written;
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long read = 0;
+		while(buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + read);
+			if(n < 0) throw new IOException("Unexpected end of a round segment.");
+			read += n;
+		}
+		buffer.flip();
+	}
+	
+	private static ExecutorService createCompressor() {
+		return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "segment-compressor");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+	
+	/**
+	 * A segment of the history.
+	 */
+	private static final class Segment {
+		
+		/** The index of the first round of the segment. */
+		final long first;
+		
+		/** The number of rounds in the segment. */
+		long count;
+		
+		/** Flag that indicates if the segment is compressed. */
+		boolean compressed;
+		
+		/** The offsets of the compressed blocks followed by the end of the last one, or {@code null} until first read. */
+		long[] blockOffsets;
+		
+		Segment(long first) {
+			this.first = first;
+		}
+	}
+}
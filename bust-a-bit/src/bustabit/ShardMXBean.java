@@ -0,0 +1,49 @@
+package bustabit;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link ShardMetrics} of a single shard,
+ * registered as {@code bustabit:type=Shard,name=<shard>}. Every histogram
+ * is summarized as a map of its count, mean, maximum and percentiles.
+ * 
+ * @author FICHEKK
+ */
+public interface ShardMXBean {
+	
+	/** @return the number of rooms the shard drives */
+	int getRooms();
+	
+	/** @return the number of open connections of the rooms of the shard */
+	int getConnections();
+	
+	/** @return the number of iterations of the loop */
+	long getIterations();
+	
+	/** @return the share of the time the loop spent working rather than waiting, from 0 to 1 */
+	double getUtilization();
+	
+	/** @return the number of ticks of all of the rooms */
+	long getTicks();
+	
+	/** @return the number of crashed rounds of all of the rooms */
+	long getRounds();
+	
+	/** @return the number of placed bets */
+	long getBets();
+	
+	/** @return the number of received messages */
+	long getMessages();
+	
+	/** @return the number of rooms moved to the shard */
+	long getMigrationsIn();
+	
+	/** @return the number of rooms moved away from the shard */
+	long getMigrationsOut();
+	
+	/** @return the time by which the ticks were late, in nanoseconds */
+	Map<String, Long> getTickLatenessNanos();
+	
+	/** @return the time an iteration of the loop worked, in nanoseconds */
+	Map<String, Long> getIterationBusyNanos();
+}
@@ -0,0 +1,250 @@
+package bustabit;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of a single {@link EventLoop}: how busy the loop is, how late
+ * the ticks of its rooms come, and the counters of its rooms, connections,
+ * rounds and bets.
+ * <p>
+ * Every counter is written by the thread of the loop only, so it is a plain
+ * volatile field: no atomic instructions and no cache line shared with
+ * another shard. Any thread can read them; the histograms are
+ * {@link LatencyHistogram}s.
+ * 
+ * @author FICHEKK
+ */
+public final class ShardMetrics implements ShardMXBean {
+	
+	/** The name of the shard. */
+	private final String name;
+	
+	/** The time by which the ticks were late. */
+	private final LatencyHistogram tickLateness = new LatencyHistogram();
+	
+	/** The time an iteration of the loop worked. */
+	private final LatencyHistogram iterationBusy = new LatencyHistogram();
+	
+	/** Records the metrics of the rounds of the shard, included in the {@link Metrics}. */
+	private final Metrics.Recorder recorder = Metrics.newRecorder();
+	
+	/** The number of rooms the shard drives. */
+	private volatile int rooms;
+	
+	/** The number of open connections of the rooms of the shard. */
+	private volatile int connections;
+	
+	/** The number of iterations of the loop. */
+	private volatile long iterations;
+	
+	/** The total time the loop worked. */
+	private volatile long busyNanos;
+	
+	/** The number of ticks of all of the rooms. */
+	private volatile long ticks;
+	
+	/** The number of crashed rounds of all of the rooms. */
+	private volatile long rounds;
+	
+	/** The number of placed bets. */
+	private volatile long bets;
+	
+	/** The number of received messages. */
+	private volatile long messages;
+	
+	/** The number of rooms moved to the shard. */
+	private volatile long migrationsIn;
+	
+	/** The number of rooms moved away from the shard. */
+	private volatile long migrationsOut;
+	
+	/** The {@link System#nanoTime()} instant at which the metrics were created. */
+	private final long createdNanos = System.nanoTime();
+	
+	/**
+	 * Constructs the metrics of the named shard.
+	 * 
+	 * @param name the name of the shard
+	 */
+	public ShardMetrics(String name) {
+		this.name = name;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							  RECORDING
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Records an iteration of the loop.
+	 * 
+	 * @param busyNanos the time the iteration worked, not counting the wait
+	 */
+	void recordIteration(long busyNanos) {
+		iterations++;
+		this.busyNanos += busyNanos;
+		iterationBusy.record(busyNanos);
+	}
+	
+	/**
+	 * Records a tick of a room.
+	 * 
+	 * @param latenessNanos the time by which the tick came after its deadline
+	 */
+	void recordTick(long latenessNanos) {
+		ticks++;
+		tickLateness.record(latenessNanos);
+	}
+	
+	/** Counts a crashed round. */
+	void countRound() {
+		rounds++;
+	}
+	
+	/** Counts a placed bet. */
+	void countBet() {
+		bets++;
+	}
+	
+	/** Counts a received message. */
+	void countMessage() {
+		messages++;
+	}
+	
+	/**
+	 * Counts a room that started or stopped being driven by the shard.
+	 * 
+	 * @param delta 1 for a new room, -1 for a removed one
+	 * @param migration whether the room was moved from or to another shard
+	 */
+	void addRoom(int delta, boolean migration) {
+		rooms += delta;
+		if(!migration) return;
+		
+		if(delta > 0) {
+			migrationsIn++;
+		} else {
+			migrationsOut++;
+		}
+	}
+	
+	/**
+	 * Counts the opened or the closed connections.
+	 * 
+	 * @param delta the number of the opened connections, negative for the closed ones
+	 */
+	void addConnections(int delta) {
+		connections += delta;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							  PUBLISHING
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Registers the metrics with the platform MBean server as
+	 * {@code bustabit:type=Shard,name=<shard>}.
+	 */
+	public void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName());
+		} catch (JMException e) {
+			System.err.println("Could not register the metrics of " + name + " with JMX: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Removes the metrics from the platform MBean server, if registered.
+	 */
+	public void unregister() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName());
+		} catch (JMException ignorable) {
+		}
+	}
+	
+	private ObjectName objectName() throws JMException {
+		return new ObjectName("bustabit:type=Shard,name=" + name);
+	}
+	
+	/** @return the recorder of the metrics of the rounds of the shard */
+	Metrics.Recorder getRecorder() {
+		return recorder;
+	}
+	
+	/** @return the name of the shard */
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public int getRooms() {
+		return rooms;
+	}
+	
+	@Override
+	public int getConnections() {
+		return connections;
+	}
+	
+	@Override
+	public long getIterations() {
+		return iterations;
+	}
+	
+	@Override
+	public double getUtilization() {
+		return (double) busyNanos / Math.max(1, System.nanoTime() - createdNanos);
+	}
+	
+	@Override
+	public long getTicks() {
+		return ticks;
+	}
+	
+	@Override
+	public long getRounds() {
+		return rounds;
+	}
+	
+	@Override
+	public long getBets() {
+		return bets;
+	}
+	
+	@Override
+	public long getMessages() {
+		return messages;
+	}
+	
+	@Override
+	public long getMigrationsIn() {
+		return migrationsIn;
+	}
+	
+	@Override
+	public long getMigrationsOut() {
+		return migrationsOut;
+	}
+	
+	@Override
+	public Map<String, Long> getTickLatenessNanos() {
+		return tickLateness.summary();
+	}
+	
+	@Override
+	public Map<String, Long> getIterationBusyNanos() {
+		return iterationBusy.summary();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s: %d rooms, %,d connections, %.1f%% busy | Ticks: %,d | Rounds: %,d | Bets: %,d | "
+				+ "Migrations: %d in, %d out\r\n  Tick lateness (ns): %s",
+				name, rooms, connections, getUtilization() * 100, ticks, rounds, bets,
+				migrationsIn, migrationsOut, tickLateness);
+	}
+}
@@ -0,0 +1,202 @@
+package bustabit;
+
+/**
+ * The outcome of a {@link Simulator} run: a histogram of the crash values
+ * and the number of rounds that every simulated auto cash-out target won.
+ * <p>
+ * Crash values below {@link #LINEAR_LIMIT} are counted with the full
+ * thousandth precision. Larger values are counted in buckets that double
+ * in width, starting from {@link #LINEAR_LIMIT}.
+ * 
+ * @author FICHEKK
+ */
+public class SimulationResult {
+	
+	/** The smallest possible crash value, in thousandths. */
+	public static final long MIN_CRASH = 1000;
+	
+	/** Crash values below this limit (x100) are counted exactly. */
+	public static final long LINEAR_LIMIT = 100_000;
+	
+	/** The number of the exact histogram buckets. */
+	private static final int LINEAR_BUCKETS = (int) (LINEAR_LIMIT - MIN_CRASH);
+	
+	/** The number of the doubling histogram buckets. */
+	private static final int LOG_BUCKETS = 64;
+	
+	/** The number of simulated rounds. */
+	private long rounds;
+	
+	/** The largest simulated crash value, in thousandths. */
+	private long maxCrash;
+	
+	/** Exact counts of the crash values below {@link #LINEAR_LIMIT}. */
+	private final long[] linear = new long[LINEAR_BUCKETS];
+	
+	/** Counts of the crash values in the doubling buckets. */
+	private final long[] log = new long[LOG_BUCKETS];
+	
+	/** The simulated auto cash-out targets, in thousandths. */
+	private final long[] targets;
+	
+	/** The number of rounds in which every target was reached. */
+	private final long[] wins;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs an empty result for the given auto cash-out targets.
+	 * 
+	 * @param targets the auto cash-out targets in thousandths
+	 */
+	SimulationResult(long[] targets) {
+		this.targets = targets;
+		this.wins = new long[targets.length];
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   RECORDING
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Records a single round.
+	 * 
+	 * @param crash the crash value in thousandths
+	 */
+	void record(long crash) {
+		rounds++;
+		if(crash > maxCrash) maxCrash = crash;
+		
+		if(crash < LINEAR_LIMIT) {
+			linear[(int) (crash - MIN_CRASH)]++;
+		} else {
+			log[63 - Long.numberOfLeadingZeros(crash / LINEAR_LIMIT)]++;
+			
+			// Targets below the exact limit are derived from the histogram.
+			for(int i = 0; i < targets.length; i++) {
+				if(targets[i] >= LINEAR_LIMIT && crash >= targets[i]) {
+					wins[i]++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds all of the rounds of the other result to this result.
+	 * 
+	 * @param other the result to be merged into this one
+	 * @return this result
+	 */
+	SimulationResult merge(SimulationResult other) {
+		rounds += other.rounds;
+		maxCrash = Math.max(maxCrash, other.maxCrash);
+		
+		for(int i = 0; i < LINEAR_BUCKETS; i++) linear[i] += other.linear[i];
+		for(int i = 0; i < LOG_BUCKETS; i++) log[i] += other.log[i];
+		for(int i = 0; i < wins.length; i++) wins[i] += other.wins[i];
+		
+		return this;
+	}
+	
+	//-----------------------------------------------------------------------
+	//								GETTERS
+	//-----------------------------------------------------------------------
+	
+	/** @return the number of simulated rounds */
+	public long getRounds() {
+		return rounds;
+	}
+	
+	/** @return the largest simulated crash value, in thousandths */
+	public long getMaxCrash() {
+		return maxCrash;
+	}
+	
+	/**
+	 * Returns the number of rounds that crashed at or above the given value.
+	 * 
+	 * @param crash the crash value in thousandths
+	 * @return the number of rounds that crashed at or above the given value
+	 */
+	public long countAtLeast(long crash) {
+		for(int i = 0; i < targets.length; i++) {
+			if(targets[i] == crash && crash >= LINEAR_LIMIT) return wins[i];
+		}
+		
+		if(crash >= LINEAR_LIMIT) {
+			throw new IllegalArgumentException("Exact counts above x" + LINEAR_LIMIT / 1000 + " are only kept for the simulated targets.");
+		}
+		
+		long below = 0;
+		for(int i = 0, end = (int) (Math.max(crash, MIN_CRASH) - MIN_CRASH); i < end; i++) {
+			below += linear[i];
+		}
+		return rounds - below;
+	}
+	
+	/**
+	 * Returns the crash value below which the given fraction of rounds crashed.
+	 * For values in the doubling buckets, the lower bound of the bucket is returned.
+	 * 
+	 * @param fraction the fraction of rounds, from {@code [0, 1]}
+	 * @return the percentile of the crash values, in thousandths
+	 */
+	public long percentile(double fraction) {
+		if(fraction < 0 || fraction > 1) throw new IllegalArgumentException("Fraction must be in [0, 1].");
+		if(rounds == 0) throw new IllegalStateException("No rounds were simulated.");
+		
+		long rank = Math.max(1, (long) Math.ceil(fraction * rounds));
+		long seen = 0;
+		
+		for(int i = 0; i < LINEAR_BUCKETS; i++) {
+			seen += linear[i];
+			if(seen >= rank) return MIN_CRASH + i;
+		}
+		
+		for(int i = 0; i < LOG_BUCKETS; i++) {
+			seen += log[i];
+			if(seen >= rank) return LINEAR_LIMIT << i;
+		}
+		
+		return maxCrash;
+	}
+	
+	/**
+	 * Returns the probability that a round reaches the given auto cash-out target.
+	 * 
+	 * @param target the auto cash-out target in thousandths
+	 * @return the probability that a round reaches the target
+	 */
+	public double winProbability(long target) {
+		return (double) countAtLeast(target) / rounds;
+	}
+	
+	/**
+	 * Returns the expected profit of a single round played with the given
+	 * bet and auto cash-out target.
+	 * 
+	 * @param bet the bet
+	 * @param target the auto cash-out target in thousandths
+	 * @return the expected profit per round
+	 */
+	public double expectedProfit(long bet, long target) {
+		double p = winProbability(target);
+		return bet * (p * target / 1000.0 - 1);
+	}
+	
+	/**
+	 * Returns the count of the rounds that crashed at exactly the given value.
+	 * Only values below {@link #LINEAR_LIMIT} are supported.
+	 * 
+	 * @param crash the crash value in thousandths
+	 * @return the number of rounds that crashed at exactly the given value
+	 */
+	public long countExactly(long crash) {
+		if(crash < MIN_CRASH || crash >= LINEAR_LIMIT) {
+			throw new IllegalArgumentException("Exact counts are only kept from x1.000 to x" + LINEAR_LIMIT / 1000 + ".");
+		}
+		return linear[(int) (crash - MIN_CRASH)];
+	}
+}
@@ -0,0 +1,151 @@
+package bustabit;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless Monte Carlo simulator of the crash distribution. The rounds are
+ * split across all of the cores with the fork/join framework, every task
+ * drawing from its own {@link SplittableRandom} stream and counting into
+ * its own primitive histogram.
+ * <p>
+ * The tasks are always split the same way and every child stream is split
+ * off its parent's stream before the child is forked, so a run is fully
+ * reproducible from its seed, regardless of how the tasks are scheduled.
+ * 
+ * @author FICHEKK
+ */
+public class Simulator {
+	
+	/** The number of rounds a single task simulates without splitting. */
+	private static final long LEAF_ROUNDS = 1 << 24;
+	
+	/** The pool that runs the simulation. */
+	private final ForkJoinPool pool;
+	
+	//-----------------------------------------------------------------------
+	//							  CONSTRUCTOR
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Constructs a simulator that uses all of the available cores.
+	 */
+	public Simulator() {
+		this(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Constructs a simulator that runs in the given pool.
+	 * 
+	 * @param pool the pool that runs the simulation
+	 */
+	public Simulator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	//-----------------------------------------------------------------------
+	//							PUBLIC METHODS
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Simulates the given number of rounds.
+	 * 
+	 * @param rounds the number of rounds to be simulated
+	 * @param seed the seed that the simulation is reproducible from
+	 * @param targets the auto cash-out targets (in thousandths) whose
+	 * 		  outcome should be counted
+	 * @return the result of the simulation
+	 */
+	public SimulationResult simulate(long rounds, long seed, long... targets) {
+		if(rounds <= 0) throw new IllegalArgumentException("Number of rounds must be positive.");
+		for(long target : targets) {
+			if(target <= SimulationResult.MIN_CRASH) throw new IllegalArgumentException("Auto cash-out must be higher than x1.000");
+		}
+		
+		return pool.invoke(new SimulationTask(rounds, new SplittableRandom(seed), targets.clone()));
+	}
+	
+	//-----------------------------------------------------------------------
+	//							   ENTRY POINT
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Runs a simulation from the command line and prints the results.
+	 * 
+	 * @param args the number of rounds, the seed and any number of auto
+	 * 		  cash-out targets (such as {@code 2.0})
+	 */
+	public static void main(String[] args) {
+		long rounds = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 100_000_000L;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		
+		long[] targets = args.length > 2
+					   ? Arrays.stream(args, 2, args.length).mapToLong(RoundJournal::parseMilli).toArray()
+					   : new long[] {1_500, 2_000, 5_000, 10_000, 100_000};
+		
+		long start = System.nanoTime();
+		SimulationResult result = new Simulator().simulate(rounds, seed, targets);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println(String.format("Simulated %,d rounds in %.2f s (%,.0f rounds/s), seed %d", rounds, seconds, rounds / seconds, seed));
+		System.out.println(String.format("Highest crash: x%.3f", result.getMaxCrash() / 1000.0));
+		
+		System.out.println();
+		System.out.println("PERCENTILE | CRASH");
+		for(double p : new double[] {0.01, 0.10, 0.25, 0.50, 0.75, 0.90, 0.99, 0.999, 0.9999}) {
+			System.out.println(String.format("%10s | x%.3f", p * 100 + "%", result.percentile(p) / 1000.0));
+		}
+		
+		System.out.println();
+		System.out.println("AUTO CASH-OUT | WIN CHANCE | EXPECTED PROFIT PER 1000 BET");
+		for(long target : targets) {
+			System.out.println(String.format("%13s | %9.4f%% | %.3f",
+											 "x" + target / 1000.0,
+											 result.winProbability(target) * 100,
+											 result.expectedProfit(1000, target)));
+		}
+	}
+	
+	//-----------------------------------------------------------------------
+	//							SIMULATION TASK
+	//-----------------------------------------------------------------------
+	
+	/**
+	 * Simulates a range of rounds, splitting it in half until it is small
+	 * enough to be simulated directly.
+	 */
+	@SuppressWarnings("serial")
+	private static class SimulationTask extends RecursiveTask<SimulationResult> {
+		
+		private final long rounds;
+		private final SplittableRandom random;
+		private final long[] targets;
+		
+		SimulationTask(long rounds, SplittableRandom random, long[] targets) {
+			this.rounds = rounds;
+			this.random = random;
+			this.targets = targets;
+		}
+		
+		@Override
+		protected SimulationResult compute() {
+			if(rounds <= LEAF_ROUNDS) {
+				SimulationResult result = new SimulationResult(targets);
+				for(long i = 0; i < rounds; i++) {
+					result.record(GameManager.crashMilli(random.nextDouble()));
+				}
+				return result;
+			}
+			
+			long half = rounds / 2;
+			SimulationTask left = new SimulationTask(half, random.split(), targets);
+			SimulationTask right = new SimulationTask(rounds - half, random, targets);
+			
+			left.fork();
+			SimulationResult result = right.compute();
+			return result.merge(left.join());
+		}
+	}
+}